@@ -2,8 +2,6 @@ package com.zuehlke.carrera.javapilot;
 
 
 import akka.actor.ActorRef;
-import com.zuehlke.carrera.api.PilotApi;
-import com.zuehlke.carrera.api.PilotApiImpl;
 import com.zuehlke.carrera.api.channel.PilotToRelayChannelNames;
 import com.zuehlke.carrera.api.client.Client;
 import com.zuehlke.carrera.api.client.rabbit.RabbitClient;
@@ -11,9 +9,15 @@ import com.zuehlke.carrera.api.seralize.JacksonSerializer;
 import com.zuehlke.carrera.api.seralize.Serializer;
 import com.zuehlke.carrera.connection.*;
 import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.config.RabbitProperties;
+import com.zuehlke.carrera.javapilot.io.CompactRelaySerializer;
+import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
 import com.zuehlke.carrera.javapilot.services.PilotService;
-import com.zuehlke.carrera.javapilot.services.PilotToRelayConnection;
+import com.zuehlke.carrera.javapilot.services.RabbitPilotLink;
+import com.zuehlke.carrera.javapilot.services.RabbitRelayConnection;
 import com.zuehlke.carrera.javapilot.services.SimulatorService;
+import com.zuehlke.carrera.javapilot.services.WebSocketPilotLink;
+import com.zuehlke.carrera.javapilot.services.WebSocketRelayConnection;
 import com.zuehlke.carrera.relayapi.messages.TrainingRequest;
 import com.zuehlke.carrera.relayapi.messages.TrainingResponse;
 import com.zuehlke.carrera.simulator.config.SimulatorProperties;
@@ -49,6 +53,9 @@ public class PilotApplication implements CommandLineRunner{
     @Autowired
     private PilotProperties settings;
 
+    @Autowired
+    private WebSocketPilotLink pilotLink;
+
     private enum Function {
         simulator,
         pilot,
@@ -70,7 +77,8 @@ public class PilotApplication implements CommandLineRunner{
 
         Options options = new Options();
         options.addOption("p", true, "Protocol: any of 'memory' (default), 'rabbit', or 'ws'");
-        options.addOption("f", true, "either of 'simulator', 'pilot'. Defaults to 'both'. Requires rabbit");
+        options.addOption("f", true, "either of 'simulator', 'pilot'. Defaults to 'both'. Requires rabbit or ws");
+        options.addOption("r", true, "replay the recorded race with the given tag as fast as possible");
 
         List<String> arglist = new ArrayList<>();
         for (String arg : args) {
@@ -92,19 +100,37 @@ public class PilotApplication implements CommandLineRunner{
 
         connectWithProtocol ( protocol, function );
 
+        if ( cmd.hasOption("r")) {
+            pilotService.replay(cmd.getOptionValue("r"), StartReplayCommand.MAX_SPEED);
+        }
+
     }
 
     private void connectWithProtocol(Protocol protocol, Function function ) {
 
         switch ( protocol ) {
             case rabbit:
+                boolean compact = settings.getRabbit().getSerializer() == RabbitProperties.SerializerType.compact;
                 // if not "only simulator", then connect the pilot
                 if (!function.equals(Function.simulator)) {
                     connectPilotWithRabbit(pilotService.getPilotActor());
                 }
                 // if not "only pilot", then connect the simulator
                 if (!function.equals(Function.pilot)) {
-                    connectSimulatorWithRabbit(simulatorService.getSystem());
+                    if (compact) {
+                        connectSimulatorWithCompactRabbit(simulatorService.getSystem());
+                    } else {
+                        connectSimulatorWithRabbit(simulatorService.getSystem());
+                    }
+                }
+                break;
+            case ws:
+                // the simulator drives the pilots connected to its pilot link endpoint
+                if (!function.equals(Function.pilot)) {
+                    simulatorService.connectRemotePilots(pilotLink);
+                }
+                if (!function.equals(Function.simulator)) {
+                    connectPilotWithWebSocket(pilotService.getPilotActor());
                 }
         }
     }
@@ -112,22 +138,17 @@ public class PilotApplication implements CommandLineRunner{
 
     private void connectPilotWithRabbit(ActorRef pilot) {
 
-        Client client = new RabbitClient();
-        client.connect(settings.getRabbitUrl());
-        Serializer serializer = new JacksonSerializer();
-        PilotApi pilotApi = new PilotApiImpl(client, new PilotToRelayChannelNames(settings.getName()), serializer);
+        RabbitRelayConnection pilotConnection = new RabbitRelayConnection(pilot, pilotService.getLatencyTracker(),
+                pilotService.getConfirmCounters(), settings, new CompactRelaySerializer());
+
+        pilotConnection.ensureConnection();
+        pilot.tell(pilotConnection, ActorRef.noSender());
+    }
 
-        ConnectionFactoryFromPilots factory = new RabbitConnectionFactoryFromPilots(pilotApi,
-                settings.getName(), settings.getAccessCode(), settings.getRabbitUrl());
+    private void connectPilotWithWebSocket(ActorRef pilot) {
 
-        PilotToRelayConnection pilotConnection = factory.create(
-                (start)->pilot.tell(start, ActorRef.noSender()),
-                (stop)->pilot.tell(stop, ActorRef.noSender()),
-                (sensor)->pilot.tell(sensor, ActorRef.noSender()),
-                (velo)->pilot.tell(velo, ActorRef.noSender()),
-                (penalty)->pilot.tell(penalty, ActorRef.noSender()),
-                (roundPassed)->pilot.tell(roundPassed, ActorRef.noSender())
-        );
+        WebSocketRelayConnection pilotConnection = new WebSocketRelayConnection(pilot, pilotService.getLatencyTracker(),
+                settings);
 
         pilotConnection.ensureConnection();
         pilot.tell(pilotConnection, ActorRef.noSender());
@@ -151,4 +172,13 @@ public class PilotApplication implements CommandLineRunner{
 
         simulatorService.setPilotConnection ( towardsPilotsConnection );
     }
+
+    private void connectSimulatorWithCompactRabbit (RaceTrackSimulatorSystem system ) {
+
+        RabbitPilotLink pilotLink = new RabbitPilotLink(system, settings, new CompactRelaySerializer());
+
+        pilotLink.ensureConnection();
+
+        simulatorService.connectRemotePilots ( pilotLink );
+    }
 }
@@ -0,0 +1,31 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import com.zuehlke.carrera.javapilot.services.EndpointAnnouncement;
+import com.zuehlke.carrera.javapilot.services.PilotToRelayConnection;
+
+/**
+ * Announces the pilot's endpoint to the relay, away from the decision path: announcing may block on the network.
+ */
+public class AnnouncerActor extends UntypedActor {
+
+    private PilotToRelayConnection relayConnection;
+
+    public static Props props() {
+        return Props.create(AnnouncerActor.class, AnnouncerActor::new);
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+        if (message instanceof EndpointAnnouncement) {
+            if (relayConnection != null) {
+                relayConnection.announce(((EndpointAnnouncement) message).getUrl());
+            }
+        } else if (message instanceof PilotToRelayConnection) {
+            relayConnection = (PilotToRelayConnection) message;
+        } else {
+            unhandled(message);
+        }
+    }
+}
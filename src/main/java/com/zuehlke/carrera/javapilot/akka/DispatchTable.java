@@ -0,0 +1,81 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Dispatches the messages of an actor to handlers registered per message class. The handler of a message is
+ * found by comparing its class to the registered classes by identity, in the order of registration - so the
+ * high-volume messages should be registered first - which is as cheap as an instanceof check of a final class.
+ * Messages of subclasses or implementations of registered interfaces are resolved once against the
+ * registrations and then looked up by their class in an identity map.
+ * A table belongs to a single actor and is not thread-safe.
+ */
+public class DispatchTable {
+
+    @FunctionalInterface
+    public interface Handler<T> {
+        void handle(T message) throws Exception;
+    }
+
+    private static final Handler<Object> NO_HANDLER = message -> {
+    };
+
+    private Class<?>[] types = new Class<?>[0];
+    private Handler<Object>[] handlers = newHandlers(0);
+    private final Map<Class<?>, Handler<Object>> resolved = new IdentityHashMap<>();
+    private final Handler<Object> unhandled;
+
+    /**
+     * @param unhandled called for messages without a handler, typically UntypedActor::unhandled
+     */
+    public DispatchTable(Handler<Object> unhandled) {
+        this.unhandled = unhandled;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> DispatchTable on(Class<T> type, Handler<? super T> handler) {
+        int size = types.length;
+        types = Arrays.copyOf(types, size + 1);
+        handlers = Arrays.copyOf(handlers, size + 1);
+        types[size] = type;
+        handlers[size] = (Handler<Object>) handler;
+        resolved.clear();
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Handler<Object>[] newHandlers(int size) {
+        return (Handler<Object>[]) new Handler<?>[size];
+    }
+
+    public void dispatch(Object message) throws Exception {
+        Class<?> type = message.getClass();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) {
+                handlers[i].handle(message);
+                return;
+            }
+        }
+        Handler<Object> handler = resolved.get(type);
+        if (handler == null) {
+            handler = resolve(type);
+            resolved.put(type, handler);
+        }
+        if (handler == NO_HANDLER) {
+            unhandled.handle(message);
+        } else {
+            handler.handle(message);
+        }
+    }
+
+    private Handler<Object> resolve(Class<?> type) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].isAssignableFrom(type)) {
+                return handlers[i];
+            }
+        }
+        return NO_HANDLER;
+    }
+}
@@ -0,0 +1,7 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+/**
+ * tells the {@link JavaPilotActor} to send the power value its {@link PowerEgress} deferred
+ */
+public class FlushPowerCommand {
+}
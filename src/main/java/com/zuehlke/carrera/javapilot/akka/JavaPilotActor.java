@@ -7,12 +7,19 @@ import akka.japi.Creator;
 import com.zuehlke.carrera.javapilot.config.PilotProperties;
 import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
 import com.zuehlke.carrera.javapilot.io.StopReplayCommand;
+import com.zuehlke.carrera.javapilot.metrics.EgressCounters;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker.Stage;
+import com.zuehlke.carrera.javapilot.metrics.RecorderCounters;
 import com.zuehlke.carrera.javapilot.services.EndpointAnnouncement;
 import com.zuehlke.carrera.javapilot.services.PilotToRelayConnection;
 import com.zuehlke.carrera.relayapi.messages.*;
 import org.joda.time.LocalDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  *  Central actor responsible for driving the car. All data gets here and all decisions are finally made here.
@@ -21,28 +28,71 @@ public class JavaPilotActor extends UntypedActor {
 
     private final Logger LOGGER = LoggerFactory.getLogger(JavaPilotActor.class);
     private final PilotProperties properties;
+    private final LatencyTracker latency;
+    private final RecorderCounters recorderCounters;
 
     private ActorRef strategy;
     private ActorRef recorder;
+    private final ActorRef announcer;
     private boolean replaying;
 
+    private static final FlushPowerCommand FLUSH = new FlushPowerCommand();
+    private final PowerEgress egress;
+    private boolean flushScheduled;
+    private final PilotClock clock = new PilotClock();
+
     private PilotToRelayConnection relayConnection;
 
-    public JavaPilotActor(PilotProperties properties ) {
+    private final DispatchTable dispatch = createDispatchTable();
+
+    public JavaPilotActor(PilotProperties properties, LatencyTracker latency, EgressCounters egressCounters,
+                          RecorderCounters recorderCounters ) {
 
         this.properties = properties;
-        strategy = getContext().actorOf(PowerUpUntilPenalty.props(getSelf(), 1500));
-        recorder = getContext().actorOf(RaceRecorderActor.props(getSelf()));
+        this.latency = latency;
+        this.recorderCounters = recorderCounters;
+        egress = new PowerEgress(properties.getEgress(), egressCounters);
+        strategy = createStrategy();
+        recorder = createRecorder();
+        announcer = getContext().actorOf(PilotDispatchers.on(getContext().system(),
+                AnnouncerActor.props(), PilotDispatchers.ANNOUNCER));
+    }
+
+    private ActorRef createStrategy() {
+        return getContext().actorOf(PilotDispatchers.on(getContext().system(),
+                PowerUpUntilPenalty.props(getSelf(), properties.getStrategy(), latency), PilotDispatchers.PILOT));
+    }
+
+    private ActorRef createRecorder() {
+        return getContext().actorOf(PilotDispatchers.on(getContext().system(),
+                RaceRecorderActor.props(getSelf(), properties.getRecorder(), recorderCounters), PilotDispatchers.RECORDER));
     }
 
 
     public static Props props ( PilotProperties properties) {
+        return props(properties, LatencyTracker.DISABLED);
+    }
+
+    /**
+     * @param latency the tracker of this pilot's sensor-to-power latencies, fed by its relay connection
+     */
+    public static Props props ( PilotProperties properties, LatencyTracker latency) {
+        return props(properties, latency, new EgressCounters(), new RecorderCounters());
+    }
+
+    /**
+     * @param latency the tracker of this pilot's sensor-to-power latencies, fed by its relay connection
+     * @param egressCounters the counters of this pilot's sent and suppressed power controls
+     * @param recorderCounters the counters of this pilot's recorded and dropped messages
+     */
+    public static Props props ( PilotProperties properties, LatencyTracker latency, EgressCounters egressCounters,
+                                RecorderCounters recorderCounters) {
         return Props.create(new Creator<JavaPilotActor>() {
             private static final long serialVersionUID = 1L;
 
             @Override
             public JavaPilotActor create() throws Exception {
-                return new JavaPilotActor( properties );
+                return new JavaPilotActor( properties, latency, egressCounters, recorderCounters );
             }
         });
     }
@@ -53,72 +103,109 @@ public class JavaPilotActor extends UntypedActor {
         }
     }
 
+    /**
+     * message handlers, by message type. The high-volume messages are registered first.
+     */
+    private DispatchTable createDispatchTable() {
+        return new DispatchTable(this::unhandled)
+                .on(SensorEvent.class, message -> {
+                    latency.record(Stage.PILOT, message.getTimeStamp());
+                    record(message);
+                    handleSensorEvent(message);
+                })
+                .on(TracedPowerAction.class, message -> {
+                    latency.record(Stage.POWER_ACTION, message.getSensorTimestamp());
+                    advanceClock(message.getSensorTimestamp());
+                    if (handlePowerAction(message.getPowerValue())) {
+                        latency.record(Stage.EGRESS, message.getSensorTimestamp());
+                    }
+                })
+                .on(PowerAction.class, message -> handlePowerAction(message.getPowerValue()))
+                .on(FlushPowerCommand.class, message -> handleFlushPower())
+                .on(VelocityMessage.class, message -> {
+                    record(message);
+                    handleVelocityMessage(message);
+                })
+                .on(RoundTimeMessage.class, message -> {
+                    record(message);
+                    handleRoundTime(message);
+                })
+                .on(PenaltyMessage.class, message -> {
+                    record(message);
+                    handlePenaltyMessage(message);
+                })
+                .on(RaceStartMessage.class, message -> {
+                    record(message);
+                    handleRaceStart();
+                })
+                .on(RaceStopMessage.class, message -> {
+                    record(message);
+                    handleRaceStop();
+                })
+                .on(StartReplayCommand.class, this::handleStartReplay)
+                .on(StopReplayCommand.class, message -> handleStopReplay())
+                .on(PilotToRelayConnection.class, message -> {
+                    relayConnection = message;
+                    announcer.tell(message, getSelf());
+                })
+                .on(EndpointAnnouncement.class, message -> announcer.forward(message, getContext()))
+                .on(String.class, message -> {
+                    // simply ignore this if there is no connection.
+                    if ("ENSURE_CONNECTION".equals(message)) {
+                        if (relayConnection != null) {
+                            relayConnection.ensureConnection();
+                        }
+                    }
+                });
+    }
+
     @Override
     public void onReceive(Object message) throws Exception {
 
         try {
+            dispatch.dispatch(message);
+        } catch ( Exception e ) {
+            LOGGER.error("Caught exception: {}", e.getMessage(), e);
+        }
 
-            if (message instanceof StartReplayCommand ) {
-                if ( ! replaying ) {
-                    recorder = getContext().actorOf(RaceRecorderActor.props(getSelf()));
-                    recorder.forward(message, getContext());
-                    replaying = true;
-                }
-            } else if ( message instanceof StopReplayCommand ) {
-                replaying = false;
-
-            } else if (message instanceof RaceStartMessage) {
-                record(message);
-                handleRaceStart();
-
-            } else if (message instanceof RaceStopMessage) {
-                record(message);
-                handleRaceStop();
-
-            } else if (message instanceof SensorEvent) {
-                record(message);
-                handleSensorEvent((SensorEvent) message);
-
-            } else if (message instanceof VelocityMessage) {
-                record(message);
-                handleVelocityMessage((VelocityMessage) message);
-
-            } else if (message instanceof PilotToRelayConnection) {
-                this.relayConnection = (PilotToRelayConnection) message;
-
-            } else if (message instanceof EndpointAnnouncement) {
-                handleEndpointAnnouncement((EndpointAnnouncement) message);
-
-            } else if (message instanceof PowerAction) {
-                handlePowerAction(((PowerAction) message).getPowerValue());
-
-            } else if (message instanceof PenaltyMessage ) {
-                record(message);
-                handlePenaltyMessage ((PenaltyMessage) message );
+    }
 
-            } else if ( message instanceof RoundTimeMessage ) {
-                handleRoundTime((RoundTimeMessage) message);
+    private void handleStartReplay(StartReplayCommand message) {
+        if ( ! replaying ) {
+            recorder = createRecorder();
+            recorder.forward(message, getContext());
+            replaying = true;
+            clock.useVirtualClock(0);
+            // the last value was sent on the wall clock's time line
+            egress.reset();
+            flushScheduled = false;
+        }
+    }
 
-            } else if (message instanceof String) {
+    private void handleStopReplay() {
+        replaying = false;
+        clock.useWallClock();
+        egress.reset();
+        flushScheduled = false;
+    }
 
-                // simply ignore this if there is no connection.
-                if ("ENSURE_CONNECTION".equals(message)) {
-                    if (relayConnection != null) {
-                        relayConnection.ensureConnection();
-                    }
-                }
-            } else {
-                unhandled(message);
+    /**
+     * the virtual clock of a replay follows the sensor events the strategy has answered, however far the replay
+     * is ahead. A deferred power value is due with the first answer after its time.
+     */
+    private void advanceClock(long timestamp) {
+        clock.advanceTo(timestamp);
+        if (clock.isVirtual() && flushScheduled) {
+            long now = clock.now();
+            if (egress.flush(now)) {
+                flushScheduled = false;
+                sendPower(egress.lastPower(), now);
             }
-        } catch ( Exception e ) {
-            LOGGER.error("Caught exception: " + e.getMessage());
-            e.printStackTrace();
         }
-
     }
 
     private void handleRoundTime(RoundTimeMessage message) {
-        LOGGER.info ( "Round Time in ms: " + message.getRoundDuration());
+        LOGGER.info("Round Time in ms: {}", message.getRoundDuration());
     }
 
     private void handlePenaltyMessage(PenaltyMessage message) {
@@ -128,22 +215,55 @@ public class JavaPilotActor extends UntypedActor {
     /**
      * Action request from the processing topology
      * @param powerValue the new power value to be requested on the track
+     * @return true, if the value has been sent right away
      */
-    private void handlePowerAction(int powerValue) {
-
-        long now = System.currentTimeMillis();
-
-        record(new PowerControl(powerValue, "starterkit", "tikretrats", now));
+    private boolean handlePowerAction(int powerValue) {
+
+        long now = clock.now();
+
+        switch (egress.offer(powerValue, now)) {
+            case SEND:
+                sendPower(powerValue, now);
+                return true;
+            case DEFER:
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    // the virtual clock flushes with the next sensor event, see advanceClock
+                    if (!clock.isVirtual()) {
+                        getContext().system().scheduler().scheduleOnce(
+                                Duration.create(egress.delay(now), TimeUnit.MILLISECONDS),
+                                getSelf(), FLUSH, getContext().dispatcher(), getSelf());
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
 
-        if (!replaying) {
-            relayConnection.send(new PowerControl(powerValue, properties.getName(),
-                    properties.getAccessCode(), now));
+    private void handleFlushPower() {
+        // a timer from before the replay. Its value is flushed in replay time, see advanceClock
+        if (clock.isVirtual()) {
+            return;
+        }
+        flushScheduled = false;
+        long now = clock.now();
+        if (egress.flush(now)) {
+            sendPower(egress.lastPower(), now);
         }
     }
 
-    private void handleEndpointAnnouncement(EndpointAnnouncement message) {
-        if ( relayConnection != null ) {
-            relayConnection.announce(message.getUrl());
+    /**
+     * the same command is recorded and sent. Recordings don't keep the name and access code, see RaceRecordCodec.
+     */
+    private void sendPower(int powerValue, long now) {
+
+        PowerControl command = new PowerControl(powerValue, properties.getName(), properties.getAccessCode(), now);
+
+        record(command);
+
+        if (!replaying) {
+            relayConnection.send(command);
         }
     }
 
@@ -174,7 +294,8 @@ public class JavaPilotActor extends UntypedActor {
      * @param message the sample event
      */
     private void handleSample(SensorEvent message) {
-        LOGGER.info("received sample SensorEvent: " + message.toString());
+        LOGGER.info("received sample SensorEvent: {}", message);
+        egress.reset();
         long now = System.currentTimeMillis();
         relayConnection.send (new PowerControl(0, properties.getName(), properties.getAccessCode(), now));
     }
@@ -184,7 +305,8 @@ public class JavaPilotActor extends UntypedActor {
      * @param message the sample velocity
      */
     private void handleSample(VelocityMessage message) {
-        LOGGER.info("received sample velocity message: " + message.toString());
+        LOGGER.info("received sample velocity message: {}", message);
+        egress.reset();
         long now = System.currentTimeMillis();
         relayConnection.send (new PowerControl(0, properties.getName(), properties.getAccessCode(), now));
     }
@@ -195,8 +317,11 @@ public class JavaPilotActor extends UntypedActor {
     }
 
     private void handleRaceStart() {
-        strategy = getContext().actorOf(PowerUpUntilPenalty.props(getSelf(), 1500));
+        strategy = createStrategy();
+        egress.reset();
         long now = System.currentTimeMillis();
-        LOGGER.info("received race start at " + new LocalDateTime(now).toString());
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("received race start at {}", new LocalDateTime(now));
+        }
     }
 }
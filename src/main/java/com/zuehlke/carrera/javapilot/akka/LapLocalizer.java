@@ -0,0 +1,147 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import java.util.Arrays;
+
+/**
+ * Finds the position on a known lap from the sections observed since the pilot got lost. The lap positions
+ * that are consistent with the observed sections are kept as a bitset: a new section moves every candidate one
+ * position ahead (a rotation of the bitset) and keeps only the positions where the lap has that section (a mask
+ * precomputed per symbol). This takes O(lap length / 64) per symbol and allocates nothing after construction.
+ */
+public class LapLocalizer {
+
+    private static final int SYMBOLS = 128;
+
+    private final int lapLength;
+    private final int words;
+    private final long[][] masks = new long[SYMBOLS][];
+    private final long[] noMatch;
+
+    private final long[] candidates;
+    private final long[] rotated;
+    private int count;
+    private int observed;
+
+    public LapLocalizer(String lap) {
+        if (lap.isEmpty()) {
+            throw new IllegalArgumentException("Can't localize on an empty lap");
+        }
+        lapLength = lap.length();
+        words = (lapLength + 63) / 64;
+        noMatch = new long[words];
+        candidates = new long[words];
+        rotated = new long[words];
+        for (int i = 0; i < lapLength; i++) {
+            char symbol = lap.charAt(i);
+            if (symbol < SYMBOLS) {
+                if (masks[symbol] == null) {
+                    masks[symbol] = new long[words];
+                }
+                masks[symbol][i >>> 6] |= 1L << i;
+            }
+        }
+        reset();
+    }
+
+    /**
+     * forget all observed sections: every position on the lap is a candidate again
+     */
+    public void reset() {
+        Arrays.fill(candidates, -1L);
+        clearUnusedBits(candidates);
+        count = lapLength;
+        observed = 0;
+    }
+
+    /**
+     * @param symbol the section observed next
+     * @return the number of lap positions that are consistent with all sections observed since the last reset
+     */
+    public int accept(char symbol) {
+        long[] mask = symbol < SYMBOLS && masks[symbol] != null ? masks[symbol] : noMatch;
+        rotateByOne();
+        count = 0;
+        for (int w = 0; w < words; w++) {
+            candidates[w] = rotated[w] & mask[w];
+            count += Long.bitCount(candidates[w]);
+        }
+        observed++;
+        return count;
+    }
+
+    /**
+     * accept the section observed next. If the sections observed since the last reset don't fit the lap anywhere
+     * anymore, start over with this section alone: it's the most recent observation and the likeliest to be
+     * right. The string matching this replaces dropped this section, too, and only used the one after it.
+     * @param symbol the section observed next
+     * @return the number of lap positions that are consistent with the sections kept
+     */
+    public int acceptOrRestart(char symbol) {
+        if (accept(symbol) == 0) {
+            reset();
+            accept(symbol);
+        }
+        return count;
+    }
+
+    // moves every candidate to the next position on the lap, wrapping around at the end
+    private void rotateByOne() {
+        int last = lapLength - 1;
+        long wrapped = (candidates[last >>> 6] >>> last) & 1L;
+        long carry = wrapped;
+        for (int w = 0; w < words; w++) {
+            rotated[w] = (candidates[w] << 1) | carry;
+            carry = candidates[w] >>> 63;
+        }
+        clearUnusedBits(rotated);
+    }
+
+    private void clearUnusedBits(long[] bits) {
+        int used = lapLength & 63;
+        if (used != 0) {
+            bits[words - 1] &= (1L << used) - 1;
+        }
+    }
+
+    /**
+     * @return the number of lap positions consistent with the observed sections
+     */
+    public int candidates() {
+        return count;
+    }
+
+    public boolean isLocalized() {
+        return observed > 0 && count == 1;
+    }
+
+    /**
+     * @return 1 if the position is known, 1/n for n candidate positions and 0 if the observed sections
+     * don't match the lap anywhere
+     */
+    public double confidence() {
+        return count == 0 ? 0 : 1.0 / count;
+    }
+
+    /**
+     * @return the index in the lap of the section expected next, or -1 if the position isn't unique
+     */
+    public int nextIndex() {
+        if (!isLocalized()) {
+            return -1;
+        }
+        for (int w = 0; w < words; w++) {
+            if (candidates[w] != 0) {
+                int position = (w << 6) + Long.numberOfTrailingZeros(candidates[w]);
+                return (position + 1) % lapLength;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of sections observed since the last reset
+     */
+    public int observed() {
+        return observed;
+    }
+}
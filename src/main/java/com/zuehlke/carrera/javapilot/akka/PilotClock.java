@@ -0,0 +1,47 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+/**
+ * The pilot's notion of now. On the track that's the wall clock. During a replay it's the recorded time line:
+ * the clock follows the timestamps of the replayed sensor events the strategy has answered, so that
+ * time-dependent decisions like those of the {@link PowerEgress} come out the same at any replay speed,
+ * including as fast as possible.
+ * Not thread-safe, owned by the {@link JavaPilotActor}.
+ */
+public class PilotClock {
+
+    private boolean virtual;
+    private long now;
+
+    public void useWallClock() {
+        virtual = false;
+    }
+
+    /**
+     * @param start the time to start from, in ms
+     */
+    public void useVirtualClock(long start) {
+        virtual = true;
+        now = start;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * move the virtual clock forward. Time never goes backwards, and the wall clock isn't affected
+     * @param timestamp the time of the latest event, in ms
+     */
+    public void advanceTo(long timestamp) {
+        if (virtual && timestamp > now) {
+            now = timestamp;
+        }
+    }
+
+    /**
+     * @return the current time in ms
+     */
+    public long now() {
+        return virtual ? now : System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,60 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.zuehlke.carrera.javapilot.config.DispatcherProperties;
+
+/**
+ * The dispatchers of the pilot's actor tree: the decision path from JavaPilotActor to the strategy and back
+ * runs on the pilot dispatcher, recording and endpoint announcements run on dispatchers of their own, so that
+ * neither file nor network I/O delays a power decision.
+ */
+public final class PilotDispatchers {
+
+    public static final String PILOT = "pilot-dispatcher";
+    public static final String RECORDER = "recorder-dispatcher";
+    public static final String ANNOUNCER = "announcer-dispatcher";
+
+    private PilotDispatchers() {
+    }
+
+    /**
+     * @return the akka configuration of the three dispatchers, to be used with a fallback to ConfigFactory.load()
+     */
+    public static Config config(DispatcherProperties properties) {
+        String pilot = PILOT + " {\n"
+                + "  type = " + properties.getPilotType() + "\n"
+                + "  executor = thread-pool-executor\n"
+                + "  throughput = 1\n"
+                + "  mailbox-type = \"" + properties.getPilotMailbox() + "\"\n"
+                + "}\n";
+        return ConfigFactory.parseString(pilot
+                + threadPool(RECORDER, properties.getRecorderThreads())
+                + threadPool(ANNOUNCER, properties.getAnnouncerThreads()));
+    }
+
+    private static String threadPool(String id, int threads) {
+        return id + " {\n"
+                + "  type = Dispatcher\n"
+                + "  executor = thread-pool-executor\n"
+                + "  thread-pool-executor {\n"
+                + "    core-pool-size-min = " + threads + "\n"
+                + "    core-pool-size-max = " + threads + "\n"
+                + "  }\n"
+                + "  throughput = 100\n"
+                + "}\n";
+    }
+
+    /**
+     * @return the props running on the given dispatcher, or on the default dispatcher if the actor system
+     * doesn't configure it - as in tests and benchmarks
+     */
+    public static Props on(ActorSystem system, Props props, String dispatcher) {
+        if (system.dispatchers().hasDispatcher(dispatcher)) {
+            return props.withDispatcher(dispatcher);
+        }
+        return props;
+    }
+}
@@ -0,0 +1,111 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import com.zuehlke.carrera.javapilot.config.EgressProperties;
+import com.zuehlke.carrera.javapilot.metrics.EgressCounters;
+
+/**
+ * Decides which of the strategy's power values actually leave the pilot. A value equal to the one sent last is
+ * suppressed, unless the last command is older than the refresh interval. A changed value that comes too early for
+ * the max. command rate is deferred: it is kept until the rate allows it, and superseded by any later value.
+ * When disabled, every value is sent. Not thread-safe, owned by the {@link JavaPilotActor}.
+ */
+public class PowerEgress {
+
+    public enum Decision {
+        /** send the value now */
+        SEND,
+        /** the value doesn't change anything */
+        SUPPRESS,
+        /** the value is kept for {@link #flush(long)} */
+        DEFER
+    }
+
+    private final boolean enabled;
+    private final long minInterval;
+    private final long refreshInterval;
+    private final EgressCounters counters;
+
+    private boolean sentAny;
+    private int lastPower;
+    private long lastSent;
+    private boolean pending;
+    private int pendingPower;
+
+    public PowerEgress(EgressProperties properties, EgressCounters counters) {
+        this.enabled = properties.isEnabled();
+        this.minInterval = properties.getMaxRate() > 0 ? 1000L / properties.getMaxRate() : 0;
+        this.refreshInterval = properties.getRefreshInterval();
+        this.counters = counters;
+    }
+
+    /**
+     * @param power the power value the strategy decided on
+     * @param now the current time in ms
+     */
+    public Decision offer(int power, long now) {
+        if (!enabled || !sentAny) {
+            return send(power, now);
+        }
+        long elapsed = now - lastSent;
+        if (power == lastPower) {
+            pending = false;
+            if (refreshInterval > 0 && elapsed >= refreshInterval) {
+                counters.refreshed();
+                markSent(power, now);
+                return Decision.SEND;
+            }
+            counters.suppressed();
+            return Decision.SUPPRESS;
+        }
+        if (elapsed >= minInterval) {
+            return send(power, now);
+        }
+        pending = true;
+        pendingPower = power;
+        counters.deferred();
+        return Decision.DEFER;
+    }
+
+    /**
+     * @return ms until a deferred value may be sent
+     */
+    public long delay(long now) {
+        return Math.max(0, lastSent + minInterval - now);
+    }
+
+    /**
+     * @return true, if the deferred value is due now. It is then considered sent, see {@link #lastPower()}.
+     */
+    public boolean flush(long now) {
+        if (!pending || now - lastSent < minInterval) {
+            return false;
+        }
+        send(pendingPower, now);
+        return true;
+    }
+
+    public int lastPower() {
+        return lastPower;
+    }
+
+    /**
+     * forgets the last value, so that the next one is sent in any case
+     */
+    public void reset() {
+        sentAny = false;
+        pending = false;
+    }
+
+    private Decision send(int power, long now) {
+        counters.sent();
+        markSent(power, now);
+        return Decision.SEND;
+    }
+
+    private void markSent(int power, long now) {
+        sentAny = true;
+        pending = false;
+        lastPower = power;
+        lastSent = now;
+    }
+}
@@ -4,20 +4,34 @@ import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.actor.UntypedActor;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import com.zuehlke.carrera.javapilot.analysis.DoubleRingBuffer;
+import com.zuehlke.carrera.javapilot.analysis.SensorAxis;
+import com.zuehlke.carrera.javapilot.analysis.WindowStatistics;
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
 import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
 import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
 import com.zuehlke.carrera.relayapi.messages.SensorEvent;
-import com.zuehlke.carrera.timeseries.FloatingHistory;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 
 public class PowerUpUntilPenalty extends UntypedActor {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PowerUpUntilPenalty.class);
+
     private final ActorRef kobayashi;
+    private final LatencyTracker latency;
 
     // Parameters
-    private final int INITIAL_POWER = 105;
+    private final int initialPower;
+    private final int increasePeriod;
+    private final double upgradeFactor;
+    private final double downgradeFactor;
+    private final double gyroThreshold;
+    private final long brakingLead;
 
     // Current state variables
     private double currentPower = 0;
@@ -29,20 +43,22 @@ public class PowerUpUntilPenalty extends UntypedActor {
     private PHASE_E currentPhase = PHASE_E.DISCOVERY;
 
     // Safe power computation variables
-    private double safePower = INITIAL_POWER;
+    private double safePower;
     private boolean TryingToIncreaseSafePower = true;
     private long lastIncreaseTimeToSafePower = 0;
 
     // Track related variable
-    private String track = "";
+    private final TrackPatternRecognizer lapRecognizer = new TrackPatternRecognizer();
     private String lap = "";
     private ArrayList<Section> map = new ArrayList<>();
-    private String lostTrack = "";
+    private LapLocalizer lapLocalizer;
+    private SectionLookahead lookahead;
 
     // GyroZ variables
     private final int NB_GYROZ_VALUES_TO_CONSIDER_FOR_SECTION = 10;
-    private FloatingHistory gyrozHistory = new FloatingHistory(8);
-    private ArrayList<Double> lastGyrozValuesAcquired = new ArrayList<>();
+    private final WindowStatistics gyrozHistory = new WindowStatistics(SensorAxis.GYR_Z, 8);
+    private final DoubleRingBuffer lastGyrozValuesAcquired =
+            new DoubleRingBuffer(NB_GYROZ_VALUES_TO_CONSIDER_FOR_SECTION);
 
     public class Section {
         String direction;
@@ -73,20 +89,37 @@ public class PowerUpUntilPenalty extends UntypedActor {
 
     /**
      * @param pilotActor The central pilot actor
-     * @param duration   the period between two increases
+     * @param parameters the tunables of the strategy. They are copied, so later changes don't affect the actor
      * @return the actor props
      */
-    public static Props props(ActorRef pilotActor, int duration) {
+    public static Props props(ActorRef pilotActor, StrategyProperties parameters) {
+        return props(pilotActor, parameters, LatencyTracker.DISABLED);
+    }
+
+    /**
+     * @param latency the latency tracker of the pilot
+     */
+    public static Props props(ActorRef pilotActor, StrategyProperties parameters, LatencyTracker latency) {
+        StrategyProperties copy = new StrategyProperties(parameters);
         return Props.create(
-                PowerUpUntilPenalty.class, () -> new PowerUpUntilPenalty(pilotActor, duration));
+                PowerUpUntilPenalty.class, () -> new PowerUpUntilPenalty(pilotActor, copy, latency));
     }
 
-    private final int duration;
+    public PowerUpUntilPenalty(ActorRef pilotActor, StrategyProperties parameters) {
+        this(pilotActor, parameters, LatencyTracker.DISABLED);
+    }
 
-    public PowerUpUntilPenalty(ActorRef pilotActor, int duration) {
+    public PowerUpUntilPenalty(ActorRef pilotActor, StrategyProperties parameters, LatencyTracker latency) {
         lastIncreaseTimeToSafePower = System.currentTimeMillis();
         this.kobayashi = pilotActor;
-        this.duration = duration;
+        this.latency = latency;
+        this.initialPower = parameters.getInitialPower();
+        this.increasePeriod = parameters.getIncreasePeriod();
+        this.upgradeFactor = parameters.getUpgradeFactor();
+        this.downgradeFactor = parameters.getDowngradeFactor();
+        this.gyroThreshold = parameters.getGyroThreshold();
+        this.brakingLead = parameters.getBrakingLead();
+        this.safePower = initialPower;
     }
 
 
@@ -114,19 +147,20 @@ public class PowerUpUntilPenalty extends UntypedActor {
         currentSectionIndex = 0;
 
         // Safe power computation variables
-        safePower = INITIAL_POWER;
+        safePower = initialPower;
         TryingToIncreaseSafePower = true;
         lastIncreaseTimeToSafePower = 0;
 
         // Track related variable
-        track = "";
+        lapRecognizer.reset();
         lap = "";
         map = new ArrayList<>();
-        lostTrack = "";
+        lapLocalizer = null;
+        lookahead = null;
 
         // GyroZ variables
-        gyrozHistory = new FloatingHistory(8);
-        lastGyrozValuesAcquired = new ArrayList<>();
+        gyrozHistory.clear();
+        lastGyrozValuesAcquired.clear();
 
         //discover
         discovSkipFirstSection = true;
@@ -135,61 +169,46 @@ public class PowerUpUntilPenalty extends UntypedActor {
     }
 
     private void handlePenaltyMessage() {
-        System.out.println("Pilot: Oh shit, I got a penalty at speed: " + currentPower);
+        LOG.info("Penalty at power {}", currentPower);
         if (currentPower <= safePower) {
             currentPower -= 10;
             safePower = currentPower;
         }
-        System.out.println("Pilot: Reducing safe power and current power to " + safePower);
+        LOG.info("Reducing safe power and current power to {}", safePower);
         kobayashi.tell(new PowerAction((int) currentPower), getSelf());
         TryingToIncreaseSafePower = false;
         handleLastSection();
     }
 
     private boolean isLeftCurveComingNext() {
-        if (lastGyrozValuesAcquired.size() < NB_GYROZ_VALUES_TO_CONSIDER_FOR_SECTION)
+        if (!lastGyrozValuesAcquired.isFull())
             return false; // We don't know yet
 
         if (currentSection == SECTION_E.LEFT_CURVE || currentSection == SECTION_E.RIGHT_CURVE)
             return false;
 
-        for (Double f : lastGyrozValuesAcquired) {
-            if (f >= -500)
-                return false;
-        }
-
-        return true;
+        return lastGyrozValuesAcquired.max() < -gyroThreshold;
     }
 
     private boolean isRightCurveComingNext() {
-        if (lastGyrozValuesAcquired.size() < NB_GYROZ_VALUES_TO_CONSIDER_FOR_SECTION)
+        if (!lastGyrozValuesAcquired.isFull())
             return false; // We don't know yet
 
         if (currentSection == SECTION_E.RIGHT_CURVE || currentSection == SECTION_E.LEFT_CURVE)
             return false;
 
-        for (Double f : lastGyrozValuesAcquired) {
-            if (f <= 500)
-                return false;
-        }
-
-        return true;
+        return lastGyrozValuesAcquired.min() > gyroThreshold;
     }
 
     private boolean isStraightComingNext() {
-        if (lastGyrozValuesAcquired.size() < NB_GYROZ_VALUES_TO_CONSIDER_FOR_SECTION)
+        if (!lastGyrozValuesAcquired.isFull())
             return false; // We don't know yet
 
         if (currentSection == SECTION_E.STRAIGHT) {
             return false;
         }
 
-        for (Double f : lastGyrozValuesAcquired) {
-            if (f < -500 || f > 500)
-                return false;
-        }
-
-        return true;
+        return lastGyrozValuesAcquired.min() >= -gyroThreshold && lastGyrozValuesAcquired.max() <= gyroThreshold;
     }
 
     /**
@@ -200,11 +219,10 @@ public class PowerUpUntilPenalty extends UntypedActor {
      */
     private void handleSensorEvent(SensorEvent message) {
 
+        latency.record(LatencyTracker.Stage.STRATEGY, message.getTimeStamp());
+
         // Add new gyroZ values to the last values to consider to determine the next section
-        double gyrz = gyrozHistory.shift(message.getG()[2]);
-        if (lastGyrozValuesAcquired.size() == NB_GYROZ_VALUES_TO_CONSIDER_FOR_SECTION) {
-            lastGyrozValuesAcquired.remove(0);
-        }
+        double gyrz = gyrozHistory.add(message);
         lastGyrozValuesAcquired.add(gyrz);
 
         // Do we want to show gyro values ?
@@ -224,7 +242,7 @@ public class PowerUpUntilPenalty extends UntypedActor {
                 optimize(message);
                 break;
         }
-        kobayashi.tell(new PowerAction((int) currentPower), getSelf());
+        kobayashi.tell(new TracedPowerAction((int) currentPower, message.getTimeStamp()), getSelf());
     }
 
     boolean discovSkipFirstSection = true;
@@ -232,7 +250,7 @@ public class PowerUpUntilPenalty extends UntypedActor {
     long discoverBegin;
 
     private void discover(SensorEvent message) {
-        if (isStandingStill() || currentPower < INITIAL_POWER) {
+        if (isStandingStill() || currentPower < initialPower) {
             increase(1);
         }
 
@@ -242,19 +260,24 @@ public class PowerUpUntilPenalty extends UntypedActor {
                 handleRaceStart();
             }
             discov_times.add(message.getTimeStamp());
-            track = track + directionChange;
-            System.out.println(discov_times);
             addMap(directionChange, 0, currentPower);
-            System.out.println(map);
-            System.out.println(track);
-            System.out.println(directionChange);
-            lap = TrackPattern.recognize(track);
-            if (!lap.isEmpty()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Discovered section {} at {}, map: {}", directionChange, discov_times, map);
+            }
+            if (lapRecognizer.accept(directionChange.charAt(0))) {
+                lap = lapRecognizer.lap();
+                lapLocalizer = new LapLocalizer(lap);
+
+                // drop the noisy sections discovered before the first of the two recognized laps
+                int skipped = lapRecognizer.lapOffset();
+                map.subList(0, skipped).clear();
+                discov_times.subList(0, skipped).clear();
 
                 currentPhase = PHASE_E.SAFESPEED;
                 addDelays(map, discov_times);
-                System.out.println(map);
-                System.out.println(lap);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Recognized lap {}, map: {}", lap, map);
+                }
                 currentSectionIndex = 0;
             }
         } else if (!directionChange.isEmpty()) {
@@ -289,14 +312,15 @@ public class PowerUpUntilPenalty extends UntypedActor {
 
         if (!currentStringDirection.isEmpty()) { // If we change direction
             if (lap.charAt(currentSectionIndex) != currentStringDirection.charAt(0)) {
-                System.out.println("Got lost ! " + lap.charAt(currentSectionIndex) + " vs " + currentStringDirection.charAt(0));
+                LOG.info("Got lost: expected {} but got {}", lap.charAt(currentSectionIndex),
+                        currentStringDirection.charAt(0));
                 prevPhase = PHASE_E.SAFESPEED;
                 lostRecovery(currentStringDirection);
             } else {
                 if (TryingToIncreaseSafePower) {
                     if (isStandingStill()) {
                         increase(1);
-                    } else if (message.getTimeStamp() > lastIncreaseTimeToSafePower + duration) {
+                    } else if (message.getTimeStamp() > lastIncreaseTimeToSafePower + increasePeriod) {
                         lastIncreaseTimeToSafePower = message.getTimeStamp();
                         increase(3);
                     }
@@ -311,23 +335,29 @@ public class PowerUpUntilPenalty extends UntypedActor {
     }
 
     private void optMap() {
-        for(Section s : map) {
+        long[] durations = new long[map.size()];
+        for (int i = 0; i < map.size(); i++) {
+            Section s = map.get(i);
             if(s.direction == "S") {
-                s.entry_power = (safePower)*1.1;
-                s.leaving_power = (INITIAL_POWER);
+                s.entry_power = (safePower)*upgradeFactor;
+                s.leaving_power = (initialPower);
                 s.dt = (long) (s.lengthInSeconds * 0.2);
                 s.downgraded = false;
             }
+            durations[i] = s.lengthInSeconds;
         }
+        lookahead = new SectionLookahead(durations);
     }
 
     private void lostRecovery(String direction) {
-        lostTrack = lostTrack + direction;
         currentPhase = PHASE_E.LOST;
-        int i = findIndex();
-        if (i > -1) {
-            currentSectionIndex = (i + lostTrack.length()) % lap.length();
-            lostTrack = "";
+        lapLocalizer.acceptOrRestart(direction.charAt(0));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Position confidence {} after {} sections", lapLocalizer.confidence(), lapLocalizer.observed());
+        }
+        if (lapLocalizer.isLocalized()) {
+            currentSectionIndex = lapLocalizer.nextIndex();
+            lapLocalizer.reset();
             currentPhase = prevPhase;
         }
     }
@@ -339,27 +369,7 @@ public class PowerUpUntilPenalty extends UntypedActor {
         }
     }
 
-    private int findIndex() {
-        int k = -2;
-        int n = lostTrack.length();
-        String lap2 = lap + lap;
-        for (int i = 0; i < lap.length(); i++) {
-            if (lap2.substring(i, i + n).equals(lostTrack)) {
-                if (k == -2) {
-                    k = i;
-                } else {
-                    k = -1;
-                }
-            }
-        }
-        if (k == -2) {
-            lostTrack = "";
-        }
-        return k;
-    }
-
     long wait_timestamp = 0;
-    final int BIG_STRAIGHT_LENGTH_THRESHOLD = 1500;
     //final long BIG_STRAIGHT_TIMESTAMP_WAIT = 100;
 
     long optimizeBeginTimestamp;
@@ -377,6 +387,7 @@ public class PowerUpUntilPenalty extends UntypedActor {
 
             Section s = map.get(currentSectionIndex);
             lastSection = s;
+            lookahead.enter(currentSectionIndex, message.getTimeStamp());
             currentSectionIndex = (currentSectionIndex + 1) % lap.length();
 
             if (s.direction.equals("S")) {
@@ -390,7 +401,10 @@ public class PowerUpUntilPenalty extends UntypedActor {
             }
         } else {
             long optimizeTimestampCurrent = message.getTimeStamp();
-            if (optimizeTimestampCurrent - optimizeBeginTimestamp > wait_timestamp) {
+            // brake before the curve after the straight, not when its detection comes in
+            boolean curveAhead = optimizeBeginTimestamp != 0
+                    && lookahead.remaining(optimizeTimestampCurrent) <= brakingLead;
+            if (optimizeTimestampCurrent - optimizeBeginTimestamp > wait_timestamp || curveAhead) {
                 optimizeBeginTimestamp = 0;
                 wait_timestamp = 0;
                 currentPower = next_power_value;
@@ -399,14 +413,14 @@ public class PowerUpUntilPenalty extends UntypedActor {
     }
 
     private void upgrade(Section s) {
-        s.dt = (long) (s.dt*1.1);
-        s.entry_power = s.entry_power*1.1;
+        s.dt = (long) (s.dt*upgradeFactor);
+        s.entry_power = s.entry_power*upgradeFactor;
     }
 
     private void downgrade(Section s) {
-        s.dt = (long) (s.dt*0.9);
+        s.dt = (long) (s.dt*downgradeFactor);
         s.downgraded = true;
-        s.entry_power = s.entry_power*0.9;
+        s.entry_power = s.entry_power*downgradeFactor;
     }
 
     private void handleLastSection() {
@@ -439,12 +453,14 @@ public class PowerUpUntilPenalty extends UntypedActor {
 
     private boolean isStandingStill() {
         int STANDBY_THRESH = 5;
-        return gyrozHistory.currentStDev() < STANDBY_THRESH;
+        return gyrozHistory.stDev() < STANDBY_THRESH;
     }
 
     private void show(int gyr2) {
-        int scale = 120 * (gyr2 - (-10000)) / 20000;
-        System.out.println(StringUtils.repeat(" ", scale) + gyr2);
+        if (LOG.isTraceEnabled()) {
+            int scale = 120 * (gyr2 - (-10000)) / 20000;
+            LOG.trace("{}{}", StringUtils.repeat(" ", scale), gyr2);
+        }
     }
 
 
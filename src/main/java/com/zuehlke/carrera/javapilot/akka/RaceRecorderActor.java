@@ -2,37 +2,55 @@ package com.zuehlke.carrera.javapilot.akka;
 
 import akka.actor.*;
 import akka.japi.Creator;
+import com.zuehlke.carrera.javapilot.config.RecorderProperties;
 import com.zuehlke.carrera.javapilot.io.*;
+import com.zuehlke.carrera.javapilot.metrics.RecorderCounters;
 import com.zuehlke.carrera.relayapi.messages.*;
 import scala.concurrent.duration.Duration;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Supplier;
 
 public class RaceRecorderActor extends UntypedActor {
 
     public static final String DATA_DIRECTORY = "data";
-    public static final int FREQUENCY = 1; // ms between two reads
+    public static final int MAX_BATCH = 500; // max. number of messages replayed in one go
 
-    private final RaceRecorderPlayer recorder = new RaceRecorderPlayer(DATA_DIRECTORY);
+    private static final NextEventCommand NEXT = new NextEventCommand();
+
+    private final RaceRecorderPlayer recorder;
+    private final RecorderProperties properties;
+    private final RecorderCounters counters;
+    private WriteBehindRecorder writeBehind;
     private ActorRef pilot;
     private boolean replaying = false;
-    private Supplier<Object> supplier;
+    private RaceReplay replay;
+    private ReplayClock clock;
     private Cancellable schedule;
 
-    public RaceRecorderActor(ActorRef pilot) {
+    public RaceRecorderActor(ActorRef pilot, RecorderProperties properties, RecorderCounters counters) {
+        this(pilot, properties, counters, new RaceRecorderPlayer(DATA_DIRECTORY));
+    }
+
+    public RaceRecorderActor(ActorRef pilot, RecorderProperties properties, RecorderCounters counters,
+                             RaceRecorderPlayer recorder) {
         this.pilot = pilot;
+        this.properties = properties;
+        this.counters = counters;
+        this.recorder = recorder;
     }
 
 
-    public static Props props ( ActorRef pilot ) {
+    /**
+     * @param counters the pilot's counters of recorded and dropped messages
+     */
+    public static Props props ( ActorRef pilot, RecorderProperties properties, RecorderCounters counters ) {
         return Props.create(new Creator<RaceRecorderActor>() {
             private static final long serialVersionUID = 1L;
 
             @Override
             public RaceRecorderActor create() throws Exception {
-                return new RaceRecorderActor( pilot );
+                return new RaceRecorderActor( pilot, properties, counters );
             }
         });
     }
@@ -49,62 +67,102 @@ public class RaceRecorderActor extends UntypedActor {
             return;
         }
 
-        if ( message instanceof RaceStartMessage ) {
-            recorder.record((RaceStartMessage) message);
-        } else if ( message instanceof RaceStopMessage ) {
-            recorder.close();
-        } else if ( message instanceof SensorEvent) {
-            recorder.record((SensorEvent) message );
-        } else if ( message instanceof VelocityMessage) {
-            recorder.record((VelocityMessage) message );
+        if ( message instanceof SensorEvent || message instanceof PowerControl
+                || message instanceof VelocityMessage || message instanceof RaceStartMessage
+                || message instanceof RoundTimeMessage || message instanceof RaceStopMessage ) {
+            store(message);
         } else if ( message instanceof PenaltyMessage) {
-            recorder.record((PenaltyMessage) message, System.currentTimeMillis() );
-        } else if ( message instanceof PowerControl) {
-            recorder.record((PowerControl) message);
+            store(new TimedPenaltyMessage((PenaltyMessage) message, System.currentTimeMillis()));
         } else if ( message instanceof StartReplayCommand) {
-            handleReplay(((StartReplayCommand)message).getTag());
+            handleReplay((StartReplayCommand) message);
         } else {
             unhandled(message);
         }
     }
 
+    /**
+     * record the message either right away or - in write-behind mode - on the recorder's own thread
+     */
+    private void store(Object message) {
+        if ( properties.isWriteBehind() ) {
+            if ( writeBehind == null ) {
+                writeBehind = new WriteBehindRecorder(recorder, properties, counters);
+            }
+            writeBehind.record(message);
+        } else {
+            recorder.recordMessage(message);
+        }
+    }
+
+    @Override
+    public void postStop() {
+        if ( writeBehind != null ) {
+            writeBehind.close();
+        }
+    }
+
     private void stopReplaying() {
         recorder.close();
         replaying = false;
-        schedule.cancel();
+        if ( schedule != null ) {
+            schedule.cancel();
+        }
+        if ( replay != null ) {
+            replay.close();
+        }
         getSelf().tell (PoisonPill.getInstance(), getSelf());
     }
 
+    /**
+     * replay all messages that are due according to the replay clock - at most MAX_BATCH of them, so that
+     * a StopReplayCommand is never held up for long - and come back when the next one is due.
+     */
     private void handleNextMessage() {
+        schedule = null;
         try {
-            Object nextMessage = supplier.get();
-            if ( nextMessage instanceof PowerControl) {
-                return;
+            if ( replay.isAtStart() ) {
+                replayNext();
+            }
+            for ( int i = 0; i < MAX_BATCH; i++ ) {
+                long delay = clock.delayOf(replay.peekTimestamp());
+                if ( delay > 0 ) {
+                    schedulePlay(delay);
+                    return;
+                }
+                replayNext();
             }
-            pilot.tell(nextMessage, getSelf());
+            getSelf().tell(NEXT, getSelf());
         } catch (EndOfStreamException eose ) {
             pilot.tell(new StopReplayCommand(), getSelf());
             stopReplaying();
         }
     }
 
-    private void handleReplay(String tag) {
+    private void replayNext() {
+        Object nextMessage = replay.get();
+        if ( nextMessage instanceof PowerControl) {
+            return;
+        }
+        pilot.tell(nextMessage, getSelf());
+    }
+
+    private void handleReplay(StartReplayCommand command) {
         replaying = true;
         try {
-            supplier = recorder.getSupplier(tag);
+            replay = recorder.getSupplier(command.getTag(), command.getWindow());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        schedulePlay(FREQUENCY);
+        clock = new ReplayClock(command.getSpeed());
+        getSelf().tell(NEXT, getSelf());
     }
 
-    protected void schedulePlay(int millies) {
+    protected void schedulePlay(long millies) {
         schedule =
-        getContext().system().scheduler().schedule(
-                Duration.create(millies, TimeUnit.MILLISECONDS),
+        getContext().system().scheduler().scheduleOnce(
                 Duration.create(millies, TimeUnit.MILLISECONDS),
-                getSelf(), new NextEventCommand(),
-                getContext().system().dispatcher(), null);
+                getSelf(), NEXT,
+                getContext().dispatcher(), null);
     }
 
 
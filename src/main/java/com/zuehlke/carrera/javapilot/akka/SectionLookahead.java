@@ -0,0 +1,61 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+/**
+ * Predicts the next section boundary of a known lap from the time elapsed since the last one. The expected
+ * duration of every section starts with the one measured during discovery and follows the durations observed
+ * since, as the car gets faster. The sections are detected a fixed number of sensor events late, the
+ * boundaries between them too, so the detection lag cancels out of the durations, and a prediction is as late
+ * as the detection of the boundary it predicts would be.
+ * A prediction takes O(1) and allocates nothing, so it can be asked on every sensor event.
+ */
+public class SectionLookahead {
+
+    /**
+     * weight of a newly observed duration against the expected one
+     */
+    private static final double SMOOTHING = 0.5;
+
+    private final long[] expected;
+
+    private int current = -1;
+    private long enteredAt;
+
+    /**
+     * @param durations the ms between the boundaries of the lap's sections, by section index
+     */
+    public SectionLookahead(long[] durations) {
+        if (durations.length == 0) {
+            throw new IllegalArgumentException("Can't look ahead on an empty lap");
+        }
+        expected = durations.clone();
+    }
+
+    /**
+     * the car has entered a section. If it's the one after the previous section, the previous section's duration
+     * is learned
+     * @param index the lap index of the section
+     * @param timestamp the time of the detection, in ms
+     */
+    public void enter(int index, long timestamp) {
+        if (current >= 0 && index == (current + 1) % expected.length) {
+            long observed = timestamp - enteredAt;
+            if (observed > 0) {
+                expected[current] = Math.round(SMOOTHING * observed + (1 - SMOOTHING) * expected[current]);
+            }
+        }
+        current = index;
+        enteredAt = timestamp;
+    }
+
+    /**
+     * @param now the time of the latest sensor event, in ms
+     * @return ms until the boundary of the current section is expected to be detected, negative if it's overdue,
+     * or Long.MAX_VALUE if the current section isn't known
+     */
+    public long remaining(long now) {
+        if (current < 0) {
+            return Long.MAX_VALUE;
+        }
+        return expected[current] - (now - enteredAt);
+    }
+}
@@ -0,0 +1,18 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+/**
+ * A PowerAction that remembers the SensorEvent it answers, so that its latency can be tracked up to the relay
+ */
+public class TracedPowerAction extends PowerAction {
+
+    private final long sensorTimestamp;
+
+    public TracedPowerAction(int powerValue, long sensorTimestamp) {
+        super(powerValue);
+        this.sensorTimestamp = sensorTimestamp;
+    }
+
+    public long getSensorTimestamp() {
+        return sensorTimestamp;
+    }
+}
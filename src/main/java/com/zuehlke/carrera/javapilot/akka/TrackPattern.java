@@ -4,9 +4,11 @@ public class TrackPattern {
     public static String recognize(String input) {
         // Find shortest common sub-sequence in input of size at least 8
 
-        for(int i = 8; i <= input.length()/2; i++) {
-            if (input.substring(0, i).equals(input.substring(i, 2*i)))
-                return input.substring(0, i);
+        TrackPatternRecognizer recognizer = new TrackPatternRecognizer(TrackPatternRecognizer.MIN_LAP_LENGTH, 0);
+        for (int i = 0; i < input.length(); i++) {
+            if (recognizer.accept(input.charAt(i))) {
+                return recognizer.lap();
+            }
         }
 
         return "";
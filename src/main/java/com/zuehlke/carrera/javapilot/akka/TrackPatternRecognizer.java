@@ -0,0 +1,142 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import java.util.Arrays;
+
+/**
+ * Recognizes the lap of a track from the stream of section symbols ('L', 'R', 'S') observed during discovery.
+ * A lap of length p is recognized as soon as 2p symbols repeat the same p symbols twice. Each anchor keeps the
+ * prefix function of the symbols seen since it started, which tells in O(1) amortized time per symbol whether
+ * the symbols seen so far are a square.
+ * To tolerate noisy symbols at the beginning of discovery, e.g. a partially driven first section, further
+ * anchors start recognition after skipping up to maxSkippedSymbols symbols.
+ */
+public class TrackPatternRecognizer {
+
+    public static final int MIN_LAP_LENGTH = 8;
+    public static final int DEFAULT_MAX_SKIPPED_SYMBOLS = 2;
+
+    private final int minLapLength;
+    private final Anchor[] anchors;
+
+    private char[] symbols = new char[64];
+    private int length;
+
+    private String lap = "";
+    private int lapOffset = -1;
+
+    public TrackPatternRecognizer() {
+        this(MIN_LAP_LENGTH, DEFAULT_MAX_SKIPPED_SYMBOLS);
+    }
+
+    public TrackPatternRecognizer(int minLapLength, int maxSkippedSymbols) {
+        if (minLapLength < 1 || maxSkippedSymbols < 0) {
+            throw new IllegalArgumentException("Invalid lap length " + minLapLength
+                    + " or number of skipped symbols " + maxSkippedSymbols);
+        }
+        this.minLapLength = minLapLength;
+        this.anchors = new Anchor[maxSkippedSymbols + 1];
+        for (int i = 0; i < anchors.length; i++) {
+            anchors[i] = new Anchor(i);
+        }
+    }
+
+    /**
+     * @param symbol the next section symbol
+     * @return true if the lap has been recognized, with this symbol or earlier
+     */
+    public boolean accept(char symbol) {
+        if (isRecognized()) {
+            return true;
+        }
+        if (length == symbols.length) {
+            symbols = Arrays.copyOf(symbols, 2 * length);
+        }
+        symbols[length++] = symbol;
+
+        for (Anchor anchor : anchors) {
+            if (anchor.offset < length) {
+                int period = anchor.accept(symbols, symbol);
+                if (period >= minLapLength) {
+                    lap = new String(symbols, anchor.offset, period);
+                    lapOffset = anchor.offset;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean isRecognized() {
+        return lapOffset >= 0;
+    }
+
+    /**
+     * @return the recognized lap, or the empty string if it isn't recognized yet. The symbol following the
+     * last accepted one is the first symbol of the lap.
+     */
+    public String lap() {
+        return lap;
+    }
+
+    /**
+     * @return the number of leading symbols that are not part of the recognized laps, or -1
+     */
+    public int lapOffset() {
+        return lapOffset;
+    }
+
+    /**
+     * @return the number of symbols accepted so far
+     */
+    public int length() {
+        return length;
+    }
+
+    public void reset() {
+        length = 0;
+        lap = "";
+        lapOffset = -1;
+        for (Anchor anchor : anchors) {
+            anchor.length = 0;
+        }
+    }
+
+    private static final class Anchor {
+
+        private final int offset;
+        // prefix function of the symbols since offset: the length of the longest proper border of each prefix
+        private int[] prefix = new int[64];
+        private int length;
+
+        Anchor(int offset) {
+            this.offset = offset;
+        }
+
+        /**
+         * @return the length of the repeated half if the symbols since offset form a square, 0 otherwise
+         */
+        int accept(char[] symbols, char symbol) {
+            if (length == prefix.length) {
+                prefix = Arrays.copyOf(prefix, 2 * length);
+            }
+            int border = 0;
+            if (length > 0) {
+                border = prefix[length - 1];
+                while (border > 0 && symbols[offset + border] != symbol) {
+                    border = prefix[border - 1];
+                }
+                if (symbols[offset + border] == symbol) {
+                    border++;
+                }
+            }
+            prefix[length++] = border;
+
+            // the shortest period divides every other period that is at most half of the length
+            int half = length / 2;
+            if (length % 2 == 0 && half % (length - border) == 0) {
+                return half;
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.zuehlke.carrera.javapilot.analysis;
+
+/**
+ * A sliding window over the most recent values of a sensor, backed by a primitive array. Adding a value evicts
+ * the oldest one once the window is full. Minimum, maximum and mean of the window are maintained incrementally,
+ * so that every operation is O(1) (amortized for min/max) and nothing is allocated after construction.
+ */
+public class DoubleRingBuffer {
+
+    private final double[] values;
+    private final int capacity;
+
+    // sequence number of the next value to be added. The window holds the values [next - size, next)
+    private long next;
+    private int size;
+    private double sum;
+
+    // monotonic queues of sequence numbers: their values decrease (max) or increase (min) from head to tail
+    private final long[] maxQueue;
+    private int maxHead;
+    private int maxSize;
+    private final long[] minQueue;
+    private int minHead;
+    private int minSize;
+
+    public DoubleRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, but was " + capacity);
+        }
+        this.capacity = capacity;
+        this.values = new double[capacity];
+        this.maxQueue = new long[capacity];
+        this.minQueue = new long[capacity];
+    }
+
+    /**
+     * add a value to the window, evicting the oldest one if the window is full
+     */
+    public void add(double value) {
+        if (size == capacity) {
+            long evicted = next - capacity;
+            sum -= valueAt(evicted);
+            if (maxSize > 0 && maxQueue[maxHead] == evicted) {
+                maxHead = (maxHead + 1) % capacity;
+                maxSize--;
+            }
+            if (minSize > 0 && minQueue[minHead] == evicted) {
+                minHead = (minHead + 1) % capacity;
+                minSize--;
+            }
+        } else {
+            size++;
+        }
+
+        values[(int) (next % capacity)] = value;
+        sum += value;
+
+        while (maxSize > 0 && valueAt(maxQueue[(maxHead + maxSize - 1) % capacity]) <= value) {
+            maxSize--;
+        }
+        maxQueue[(maxHead + maxSize++) % capacity] = next;
+
+        while (minSize > 0 && valueAt(minQueue[(minHead + minSize - 1) % capacity]) >= value) {
+            minSize--;
+        }
+        minQueue[(minHead + minSize++) % capacity] = next;
+
+        next++;
+    }
+
+    /**
+     * sums the window up again, dropping the rounding errors the running sum has accumulated. O(size)
+     */
+    protected void recomputeSum() {
+        sum = 0;
+        for (long sequence = next - size; sequence < next; sequence++) {
+            sum += valueAt(sequence);
+        }
+    }
+
+    private double valueAt(long sequence) {
+        return values[(int) (sequence % capacity)];
+    }
+
+    /**
+     * @param index 0 for the oldest value in the window, size()-1 for the most recent one
+     */
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " outside window of size " + size);
+        }
+        return valueAt(next - size + index);
+    }
+
+    /**
+     * @return the value added most recently
+     */
+    public double last() {
+        return get(size - 1);
+    }
+
+    public double min() {
+        return minSize == 0 ? Double.NaN : valueAt(minQueue[minHead]);
+    }
+
+    public double max() {
+        return maxSize == 0 ? Double.NaN : valueAt(maxQueue[maxHead]);
+    }
+
+    public double mean() {
+        return size == 0 ? Double.NaN : sum / size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public void clear() {
+        next = 0;
+        size = 0;
+        sum = 0;
+        maxHead = maxSize = 0;
+        minHead = minSize = 0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.zuehlke.carrera.javapilot.analysis;
+
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+/**
+ * One axis of one of the sensors of a {@link SensorEvent}: accelerometer, gyroscope or magnetometer
+ */
+public enum SensorAxis {
+    ACC_X, ACC_Y, ACC_Z,
+    GYR_X, GYR_Y, GYR_Z,
+    MAG_X, MAG_Y, MAG_Z;
+
+    private final int index = ordinal() % 3;
+
+    /**
+     * @return the value of this axis in the event
+     */
+    public double of(SensorEvent event) {
+        switch (this) {
+            case ACC_X:
+            case ACC_Y:
+            case ACC_Z:
+                return event.getA()[index];
+            case GYR_X:
+            case GYR_Y:
+            case GYR_Z:
+                return event.getG()[index];
+            default:
+                return event.getM()[index];
+        }
+    }
+}
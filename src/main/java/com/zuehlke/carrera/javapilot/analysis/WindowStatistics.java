@@ -0,0 +1,92 @@
+package com.zuehlke.carrera.javapilot.analysis;
+
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+/**
+ * A {@link DoubleRingBuffer} over one sensor axis that also maintains the variance of its window. The variance
+ * follows Welford's update, extended to sliding windows: adding a value to a full window replaces the evicted
+ * one in a single O(1) step, without the cancellation of a sum of squares. The mean it takes is the ring
+ * buffer's own, so there is only one. The rounding errors that still accumulate over a long race are dropped by
+ * recomputing sum and variance from the window now and then, which is O(1) amortized. Nothing is allocated
+ * after construction.
+ */
+public class WindowStatistics extends DoubleRingBuffer {
+
+    private static final int RECOMPUTE_PERIOD = 1 << 16;
+
+    private final SensorAxis axis;
+
+    // sum of the squared differences from the mean
+    private double m2;
+    private int updates;
+
+    public WindowStatistics(SensorAxis axis, int capacity) {
+        super(capacity);
+        this.axis = axis;
+    }
+
+    /**
+     * add the event's value of this window's axis
+     * @return the mean of the window, with the new value
+     */
+    public double add(SensorEvent event) {
+        add(axis.of(event));
+        return mean();
+    }
+
+    @Override
+    public void add(double value) {
+        double previousMean = size() == 0 ? 0 : mean();
+        if (isFull()) {
+            double evicted = get(0);
+            super.add(value);
+            m2 += (value - evicted) * (value - mean() + evicted - previousMean);
+        } else {
+            super.add(value);
+            m2 += (value - previousMean) * (value - mean());
+        }
+        if (++updates == RECOMPUTE_PERIOD) {
+            recompute();
+        } else if (m2 < 0) {
+            m2 = 0;
+        }
+    }
+
+    private void recompute() {
+        updates = 0;
+        recomputeSum();
+        int n = size();
+        double mean = mean();
+        m2 = 0;
+        for (int i = 0; i < n; i++) {
+            double delta = get(i) - mean;
+            m2 += delta * delta;
+        }
+    }
+
+    public SensorAxis axis() {
+        return axis;
+    }
+
+    /**
+     * @return the sample variance of the window, 0 for a single value
+     */
+    public double variance() {
+        int n = size();
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return n == 1 ? 0 : m2 / (n - 1);
+    }
+
+    public double stDev() {
+        return Math.sqrt(variance());
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        m2 = 0;
+        updates = 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.zuehlke.carrera.javapilot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Properties of the browser dashboard's STOMP streams, loaded from /resources/application.yml
+ */
+@ConfigurationProperties(prefix="dashboard")
+public class DashboardProperties {
+
+    private int frameRate = 10;
+    private List<String> trackDesigns = new ArrayList<>(
+            Arrays.asList("Dubai", "Berlin", "Oerlikon", "Hollywood", "Budapest"));
+
+    /**
+     * @return the max. number of frames per second and topic sent to the browsers. 0 sends every update.
+     */
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public void setFrameRate(int frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * @return the track designs to prepare for the browsers at startup
+     */
+    public List<String> getTrackDesigns() {
+        return trackDesigns;
+    }
+
+    public void setTrackDesigns(List<String> trackDesigns) {
+        this.trackDesigns = trackDesigns;
+    }
+}
@@ -0,0 +1,52 @@
+package com.zuehlke.carrera.javapilot.config;
+
+/**
+ * Dispatchers of the pilot's actors loaded from /resources/application.yml (javapilot.dispatchers)
+ */
+public class DispatcherProperties {
+
+    private String pilotType = "PinnedDispatcher";
+    private String pilotMailbox = "akka.dispatch.SingleConsumerOnlyUnboundedMailbox";
+    private int recorderThreads = 1;
+    private int announcerThreads = 1;
+
+    /**
+     * @return the akka dispatcher type of the decision path: PinnedDispatcher gives each actor its own thread,
+     * Dispatcher shares a thread pool
+     */
+    public String getPilotType() {
+        return pilotType;
+    }
+
+    public void setPilotType(String pilotType) {
+        this.pilotType = pilotType;
+    }
+
+    /**
+     * @return the mailbox type of the decision path. SingleConsumerOnlyUnboundedMailbox works with either
+     * dispatcher type: an actor's mailbox is only ever drained by the one thread running the actor at a time
+     */
+    public String getPilotMailbox() {
+        return pilotMailbox;
+    }
+
+    public void setPilotMailbox(String pilotMailbox) {
+        this.pilotMailbox = pilotMailbox;
+    }
+
+    public int getRecorderThreads() {
+        return recorderThreads;
+    }
+
+    public void setRecorderThreads(int recorderThreads) {
+        this.recorderThreads = recorderThreads;
+    }
+
+    public int getAnnouncerThreads() {
+        return announcerThreads;
+    }
+
+    public void setAnnouncerThreads(int announcerThreads) {
+        this.announcerThreads = announcerThreads;
+    }
+}
@@ -0,0 +1,45 @@
+package com.zuehlke.carrera.javapilot.config;
+
+/**
+ * Shaping of the power controls the pilot sends to the relay, loaded from /resources/application.yml
+ * (javapilot.egress)
+ */
+public class EgressProperties {
+
+    private boolean enabled = true;
+    private int maxRate = 50;
+    private long refreshInterval = 1000;
+
+    /**
+     * @return false to send every power value the strategy decides on
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return max. number of power controls per second. Changes beyond that are delayed and superseded. 0 for no limit
+     */
+    public int getMaxRate() {
+        return maxRate;
+    }
+
+    public void setMaxRate(int maxRate) {
+        this.maxRate = maxRate;
+    }
+
+    /**
+     * @return ms after which an unchanged power value is sent again. 0 to send unchanged values never again
+     */
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+}
@@ -0,0 +1,33 @@
+package com.zuehlke.carrera.javapilot.config;
+
+/**
+ * Properties of the WebSocket link between a pilot and a remote simulator (-p ws), loaded from
+ * /resources/application.yml (javapilot.link)
+ */
+public class LinkProperties {
+
+    private String url = "ws://localhost:8081/pilot-link";
+    private long keepAliveInterval = 5000;
+
+    /**
+     * @return the pilot link endpoint of the simulator the pilot connects to
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return ms between two pings, which also reconnect a lost link
+     */
+    public long getKeepAliveInterval() {
+        return keepAliveInterval;
+    }
+
+    public void setKeepAliveInterval(long keepAliveInterval) {
+        this.keepAliveInterval = keepAliveInterval;
+    }
+}
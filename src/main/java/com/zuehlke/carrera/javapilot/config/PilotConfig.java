@@ -4,7 +4,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
-@EnableConfigurationProperties({PilotProperties.class})  // loaded from /resources/application.yml
+@EnableConfigurationProperties({PilotProperties.class, DashboardProperties.class})  // loaded from /resources/application.yml
 public class PilotConfig {
 
 }
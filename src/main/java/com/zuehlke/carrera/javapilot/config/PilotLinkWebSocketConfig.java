@@ -0,0 +1,27 @@
+package com.zuehlke.carrera.javapilot.config;
+
+import com.zuehlke.carrera.javapilot.services.WebSocketPilotLink;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Binary WebSocket endpoint for remote pilots (-p ws), next to the STOMP endpoint of {@link StompWebSocketConfig}
+ * that serves the browsers.
+ */
+@Configuration
+@EnableWebSocket
+public class PilotLinkWebSocketConfig implements WebSocketConfigurer {
+
+    @Autowired
+    private WebSocketPilotLink pilotLink;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+
+        // ws://myserver.com/pilot-link
+        registry.addHandler(pilotLink, WebSocketPilotLink.PATH);
+    }
+}
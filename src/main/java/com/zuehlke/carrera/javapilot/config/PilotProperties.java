@@ -11,6 +11,12 @@ public class PilotProperties {
     private String name;
     private String accessCode;
     private String rabbitUrl;
+    private RecorderProperties recorder = new RecorderProperties();
+    private DispatcherProperties dispatchers = new DispatcherProperties();
+    private LinkProperties link = new LinkProperties();
+    private RabbitProperties rabbit = new RabbitProperties();
+    private EgressProperties egress = new EgressProperties();
+    private StrategyProperties strategy = new StrategyProperties();
 
     public String getRelayUrl() {
         return relayUrl;
@@ -40,4 +46,52 @@ public class PilotProperties {
     public void setRabbitUrl(String rabbitUrl) {
         this.rabbitUrl = rabbitUrl;
     }
+
+    public RecorderProperties getRecorder() {
+        return recorder;
+    }
+
+    public void setRecorder(RecorderProperties recorder) {
+        this.recorder = recorder;
+    }
+
+    public DispatcherProperties getDispatchers() {
+        return dispatchers;
+    }
+
+    public void setDispatchers(DispatcherProperties dispatchers) {
+        this.dispatchers = dispatchers;
+    }
+
+    public LinkProperties getLink() {
+        return link;
+    }
+
+    public void setLink(LinkProperties link) {
+        this.link = link;
+    }
+
+    public RabbitProperties getRabbit() {
+        return rabbit;
+    }
+
+    public void setRabbit(RabbitProperties rabbit) {
+        this.rabbit = rabbit;
+    }
+
+    public EgressProperties getEgress() {
+        return egress;
+    }
+
+    public void setEgress(EgressProperties egress) {
+        this.egress = egress;
+    }
+
+    public StrategyProperties getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(StrategyProperties strategy) {
+        this.strategy = strategy;
+    }
 }
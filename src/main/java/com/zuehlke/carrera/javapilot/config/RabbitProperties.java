@@ -0,0 +1,53 @@
+package com.zuehlke.carrera.javapilot.config;
+
+/**
+ * Properties of the rabbitmq queues between pilot and relay or simulator (-p rabbit), loaded from
+ * /resources/application.yml (javapilot.rabbit)
+ */
+public class RabbitProperties {
+
+    public enum SerializerType {
+        /** JSON only, like the relay */
+        json,
+        /** compact binary sensor events and power controls with peers that accept them, JSON otherwise */
+        compact
+    }
+
+    private SerializerType serializer = SerializerType.json;
+    private boolean confirms = true;
+    private int maxInFlight = 8;
+
+    /**
+     * @return json by default. compact is opt-in: it sends compact power controls only to peers that sent
+     * compact sensor events, and JSON to the relay
+     */
+    public SerializerType getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(SerializerType serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * @return true, if the broker confirms the pilot's power controls
+     */
+    public boolean isConfirms() {
+        return confirms;
+    }
+
+    public void setConfirms(boolean confirms) {
+        this.confirms = confirms;
+    }
+
+    /**
+     * @return max. number of unconfirmed power controls. Later ones supersede each other until a confirm arrives
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+}
@@ -0,0 +1,60 @@
+package com.zuehlke.carrera.javapilot.config;
+
+/**
+ * Race recorder properties loaded from /resources/application.yml (javapilot.recorder)
+ */
+public class RecorderProperties {
+
+    public enum OverflowPolicy {
+        /** discard events that don't fit into the queue anymore */
+        DROP,
+        /** wait for the writer to make room. Never loses an event, but may stall the recording actor */
+        BLOCK
+    }
+
+    private boolean writeBehind = true;
+    private int queueSize = 8192;
+    private int flushSize = 256;
+    private long flushInterval = 200;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public void setFlushSize(int flushSize) {
+        this.flushSize = flushSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+}
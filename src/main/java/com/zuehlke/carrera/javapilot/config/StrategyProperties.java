@@ -0,0 +1,100 @@
+package com.zuehlke.carrera.javapilot.config;
+
+/**
+ * Tunables of the PowerUpUntilPenalty strategy, loaded from /resources/application.yml (javapilot.strategy)
+ */
+public class StrategyProperties {
+
+    private int initialPower = 105;
+    private int increasePeriod = 1500;
+    private double upgradeFactor = 1.1;
+    private double downgradeFactor = 0.9;
+    private double gyroThreshold = 500;
+    private long brakingLead = 300;
+
+    public StrategyProperties() {
+    }
+
+    public StrategyProperties(StrategyProperties other) {
+        this.initialPower = other.initialPower;
+        this.increasePeriod = other.increasePeriod;
+        this.upgradeFactor = other.upgradeFactor;
+        this.downgradeFactor = other.downgradeFactor;
+        this.gyroThreshold = other.gyroThreshold;
+        this.brakingLead = other.brakingLead;
+    }
+
+    /**
+     * @return the power to start with and to fall back to after a straight
+     */
+    public int getInitialPower() {
+        return initialPower;
+    }
+
+    public void setInitialPower(int initialPower) {
+        this.initialPower = initialPower;
+    }
+
+    /**
+     * @return ms between two increases of the safe power
+     */
+    public int getIncreasePeriod() {
+        return increasePeriod;
+    }
+
+    public void setIncreasePeriod(int increasePeriod) {
+        this.increasePeriod = increasePeriod;
+    }
+
+    /**
+     * @return factor of the entry power and duration of a straight, after it has been passed without penalty
+     */
+    public double getUpgradeFactor() {
+        return upgradeFactor;
+    }
+
+    public void setUpgradeFactor(double upgradeFactor) {
+        this.upgradeFactor = upgradeFactor;
+    }
+
+    /**
+     * @return factor of the entry power and duration of a straight, after it has caused a penalty
+     */
+    public double getDowngradeFactor() {
+        return downgradeFactor;
+    }
+
+    public void setDowngradeFactor(double downgradeFactor) {
+        this.downgradeFactor = downgradeFactor;
+    }
+
+    /**
+     * @return the smoothed gyro-z value beyond which the car is in a curve
+     */
+    public double getGyroThreshold() {
+        return gyroThreshold;
+    }
+
+    public void setGyroThreshold(double gyroThreshold) {
+        this.gyroThreshold = gyroThreshold;
+    }
+
+    /**
+     * @return ms before the predicted detection of a curve at which to leave the straight's power. Covers the
+     * detection lag, about 200 ms at 50 Hz, and the braking distance
+     */
+    public long getBrakingLead() {
+        return brakingLead;
+    }
+
+    public void setBrakingLead(long brakingLead) {
+        this.brakingLead = brakingLead;
+    }
+
+    @Override
+    public String toString() {
+        return "initialPower=" + initialPower + ", increasePeriod=" + increasePeriod
+                + ", upgradeFactor=" + upgradeFactor + ", downgradeFactor=" + downgradeFactor
+                + ", gyroThreshold=" + gyroThreshold + ", brakingLead=" + brakingLead;
+    }
+}
@@ -0,0 +1,172 @@
+package com.zuehlke.carrera.javapilot.evaluation;
+
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Searches the tunables of the strategy: every candidate parameter set drives a race, all races run in parallel,
+ * and the results are ranked by {@link RaceResult#RANKING}. Candidates come from a grid over the given values
+ * of each tunable, or are drawn at random between the smallest and the largest of them.
+ */
+public class ParameterSweep {
+
+    public enum Tunable {
+        INITIAL_POWER {
+            @Override
+            void set(StrategyProperties parameters, double value) {
+                parameters.setInitialPower((int) Math.round(value));
+            }
+        },
+        INCREASE_PERIOD {
+            @Override
+            void set(StrategyProperties parameters, double value) {
+                parameters.setIncreasePeriod((int) Math.round(value));
+            }
+        },
+        UPGRADE_FACTOR {
+            @Override
+            void set(StrategyProperties parameters, double value) {
+                parameters.setUpgradeFactor(value);
+            }
+        },
+        DOWNGRADE_FACTOR {
+            @Override
+            void set(StrategyProperties parameters, double value) {
+                parameters.setDowngradeFactor(value);
+            }
+        },
+        GYRO_THRESHOLD {
+            @Override
+            void set(StrategyProperties parameters, double value) {
+                parameters.setGyroThreshold(value);
+            }
+        };
+
+        abstract void set(StrategyProperties parameters, double value);
+    }
+
+    private final Function<StrategyProperties, RaceResult> race;
+    private final int parallelism;
+
+    /**
+     * @param race drives a race with the given parameters and waits for its end
+     * @param parallelism the number of races at the same time
+     */
+    public ParameterSweep(Function<StrategyProperties, RaceResult> race, int parallelism) {
+        this.race = race;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param base the values of the tunables that are not swept
+     * @param values the values of every swept tunable
+     * @return all combinations of the values
+     */
+    public static List<StrategyProperties> grid(StrategyProperties base, Map<Tunable, double[]> values) {
+        List<StrategyProperties> candidates = new ArrayList<>();
+        candidates.add(new StrategyProperties(base));
+        for (Map.Entry<Tunable, double[]> tunable : values.entrySet()) {
+            List<StrategyProperties> combined = new ArrayList<>();
+            for (StrategyProperties candidate : candidates) {
+                for (double value : tunable.getValue()) {
+                    StrategyProperties next = new StrategyProperties(candidate);
+                    tunable.getKey().set(next, value);
+                    combined.add(next);
+                }
+            }
+            candidates = combined;
+        }
+        return candidates;
+    }
+
+    /**
+     * @param base the values of the tunables that are not swept
+     * @param values the range of every swept tunable, from its smallest to its largest value
+     * @param samples the number of candidates
+     * @param seed of the random numbers, for repeatable sweeps
+     * @return candidates with uniformly distributed values
+     */
+    public static List<StrategyProperties> random(StrategyProperties base, Map<Tunable, double[]> values,
+                                                  int samples, long seed) {
+        Random random = new Random(seed);
+        List<StrategyProperties> candidates = new ArrayList<>();
+        for (int i = 0; i < samples; i++) {
+            StrategyProperties candidate = new StrategyProperties(base);
+            for (Map.Entry<Tunable, double[]> tunable : values.entrySet()) {
+                double min = Double.MAX_VALUE;
+                double max = -Double.MAX_VALUE;
+                for (double value : tunable.getValue()) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                tunable.getKey().set(candidate, min + random.nextDouble() * (max - min));
+            }
+            candidates.add(candidate);
+        }
+        return candidates;
+    }
+
+    /**
+     * @param base the values to sweep around
+     * @param spread the relative distance of the outermost values, e.g. 0.1 for +/-10%
+     * @param steps the number of values per tunable
+     * @return the values of all tunables, evenly spread around the base values
+     */
+    public static Map<Tunable, double[]> around(StrategyProperties base, double spread, int steps) {
+        Map<Tunable, double[]> values = new EnumMap<>(Tunable.class);
+        values.put(Tunable.INITIAL_POWER, spread(base.getInitialPower(), spread, steps));
+        values.put(Tunable.INCREASE_PERIOD, spread(base.getIncreasePeriod(), spread, steps));
+        values.put(Tunable.UPGRADE_FACTOR, spread(base.getUpgradeFactor(), spread, steps));
+        values.put(Tunable.DOWNGRADE_FACTOR, spread(base.getDowngradeFactor(), spread, steps));
+        values.put(Tunable.GYRO_THRESHOLD, spread(base.getGyroThreshold(), spread, steps));
+        return values;
+    }
+
+    private static double[] spread(double value, double spread, int steps) {
+        if (steps < 2) {
+            return new double[]{value};
+        }
+        double[] values = new double[steps];
+        for (int i = 0; i < steps; i++) {
+            values[i] = value * (1 - spread + 2 * spread * i / (steps - 1));
+        }
+        return values;
+    }
+
+    /**
+     * drive a race for every candidate
+     * @return the results, best first
+     */
+    public List<RaceResult> run(List<StrategyProperties> candidates) {
+        ExecutorService races = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<RaceResult>> pending = new ArrayList<>();
+            for (StrategyProperties candidate : candidates) {
+                pending.add(races.submit(() -> race.apply(candidate)));
+            }
+            List<RaceResult> results = new ArrayList<>();
+            for (Future<RaceResult> result : pending) {
+                results.add(result.get());
+            }
+            results.sort(RaceResult.RANKING);
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            races.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.zuehlke.carrera.javapilot.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of running a strategy against one recorded race, see {@link StrategyEvaluator}.
+ * Penalties and round times are the ones of the recording.
+ */
+public class RaceEvaluation {
+
+    private final String tag;
+    private long messages;
+    private long sensorEvents;
+    private long powerActions;
+    private long powerSum;
+    private int maxPower;
+    private int penalties;
+    private final List<Long> roundTimes = new ArrayList<>();
+    private long cpuNanos;
+    private long wallNanos;
+    private String error;
+
+    public RaceEvaluation(String tag) {
+        this.tag = tag;
+    }
+
+    void message() {
+        messages++;
+    }
+
+    void sensorEvent() {
+        sensorEvents++;
+    }
+
+    void powerAction(int power) {
+        powerActions++;
+        powerSum += power;
+        maxPower = Math.max(maxPower, power);
+    }
+
+    void penalty() {
+        penalties++;
+    }
+
+    void roundTime(long duration) {
+        roundTimes.add(duration);
+    }
+
+    void times(long cpuNanos, long wallNanos) {
+        this.cpuNanos = cpuNanos;
+        this.wallNanos = wallNanos;
+    }
+
+    void failed(Exception e) {
+        error = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    public long getSensorEvents() {
+        return sensorEvents;
+    }
+
+    public long getPowerActions() {
+        return powerActions;
+    }
+
+    public double getAveragePower() {
+        return powerActions == 0 ? 0 : (double) powerSum / powerActions;
+    }
+
+    public int getMaxPower() {
+        return maxPower;
+    }
+
+    public int getPenalties() {
+        return penalties;
+    }
+
+    public List<Long> getRoundTimes() {
+        return roundTimes;
+    }
+
+    /**
+     * @return the fastest round in ms, or 0 if no round has been completed
+     */
+    public long getBestRoundTime() {
+        return roundTimes.stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+
+    /**
+     * @return the CPU time the strategy took for the race in ms, or -1 if the JVM doesn't measure thread CPU time
+     */
+    public double getCpuMillis() {
+        return cpuNanos < 0 ? -1 : cpuNanos / 1e6;
+    }
+
+    public double getWallMillis() {
+        return wallNanos / 1e6;
+    }
+
+    /**
+     * @return why the race couldn't be evaluated completely, or null
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d events, %d power actions (avg %.1f, max %d), %d penalties, best round %d ms, "
+                        + "cpu %.1f ms, wall %.1f ms%s", tag, sensorEvents, powerActions, getAveragePower(), maxPower,
+                penalties, getBestRoundTime(), getCpuMillis(), getWallMillis(), error == null ? "" : ", " + error);
+    }
+}
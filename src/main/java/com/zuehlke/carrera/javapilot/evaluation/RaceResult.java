@@ -0,0 +1,111 @@
+package com.zuehlke.carrera.javapilot.evaluation;
+
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The outcome of a race the strategy drove with the given parameters against a simulator, see {@link SimulatedRace}.
+ * Updated by the race's pilot actor, read when the race is over.
+ */
+public class RaceResult {
+
+    /**
+     * the fastest round first. Races without a complete round come last, equal round times are ranked by penalties
+     */
+    public static final Comparator<RaceResult> RANKING = Comparator
+            .comparingLong(RaceResult::rankedRoundTime)
+            .thenComparingInt(RaceResult::getPenalties);
+
+    private final String name;
+    private final String trackDesign;
+    private final StrategyProperties parameters;
+    private final List<Long> roundTimes = new ArrayList<>();
+    private int penalties;
+    private long powerActions;
+    private String error;
+
+    /**
+     * @param trackDesign the track the race was driven on, or null for the simulator's default
+     */
+    public RaceResult(String name, String trackDesign, StrategyProperties parameters) {
+        this.name = name;
+        this.trackDesign = trackDesign;
+        this.parameters = parameters;
+    }
+
+    synchronized void roundTime(long duration) {
+        roundTimes.add(duration);
+    }
+
+    synchronized void penalty() {
+        penalties++;
+    }
+
+    synchronized void powerAction() {
+        powerActions++;
+    }
+
+    synchronized void failed(Exception e) {
+        error = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTrackDesign() {
+        return trackDesign;
+    }
+
+    public StrategyProperties getParameters() {
+        return parameters;
+    }
+
+    public synchronized List<Long> getRoundTimes() {
+        return new ArrayList<>(roundTimes);
+    }
+
+    /**
+     * @return the fastest round in ms, or 0 if no round has been completed
+     */
+    public synchronized long getBestRoundTime() {
+        return roundTimes.stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+
+    private long rankedRoundTime() {
+        long best = getBestRoundTime();
+        return best > 0 ? best : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the average round in ms, or 0 if no round has been completed
+     */
+    public synchronized double getAverageRoundTime() {
+        return roundTimes.stream().mapToLong(Long::longValue).average().orElse(0);
+    }
+
+    public synchronized int getPenalties() {
+        return penalties;
+    }
+
+    public synchronized long getPowerActions() {
+        return powerActions;
+    }
+
+    /**
+     * @return why the race couldn't be driven completely, or null
+     */
+    public synchronized String getError() {
+        return error;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s%s: best round %d ms, avg %.0f ms, %d rounds, %d penalties [%s]%s", name,
+                trackDesign == null ? "" : " on " + trackDesign, getBestRoundTime(), getAverageRoundTime(),
+                roundTimes.size(), penalties, parameters, error == null ? "" : ", " + error);
+    }
+}
@@ -0,0 +1,158 @@
+package com.zuehlke.carrera.javapilot.evaluation;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import com.zuehlke.carrera.javapilot.akka.PowerAction;
+import com.zuehlke.carrera.javapilot.akka.PowerUpUntilPenalty;
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import com.zuehlke.carrera.javapilot.services.DiscardingMessagingTemplate;
+import com.zuehlke.carrera.javapilot.services.RacetrackToPilotConnector;
+import com.zuehlke.carrera.relayapi.messages.*;
+import com.zuehlke.carrera.simulator.config.SimulatorProperties;
+import com.zuehlke.carrera.simulator.model.RaceTrackSimulatorSystem;
+import com.zuehlke.carrera.simulator.model.akka.communication.StompNewsInterface;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A race of the strategy against a simulator of its own, closed loop: the strategy's power values drive the
+ * simulated car, and the round times and penalties are the strategy's. Neither the simulator nor the pilot talk
+ * to the browsers or the relay, so any number of races can run in the same process. Their pilots share the
+ * given actor system, see {@link SimulatorFarm}.
+ */
+public class SimulatedRace {
+
+    private final String name;
+    private final ActorSystem pilots;
+    private final SimulatorProperties simulator;
+    private final String trackDesign;
+    private final StrategyProperties parameters;
+    private final long duration;
+
+    /**
+     * @param name unique among the races running at the same time
+     * @param pilots the actor system to run the pilot in
+     * @param simulator the settings of the simulator
+     * @param trackDesign the track to race on, or null for the simulator's default
+     * @param parameters the tunables of the strategy
+     * @param duration ms from the race start to the race stop
+     */
+    public SimulatedRace(String name, ActorSystem pilots, SimulatorProperties simulator, String trackDesign,
+                         StrategyProperties parameters, long duration) {
+        this.name = name;
+        this.pilots = pilots;
+        this.simulator = simulator;
+        this.trackDesign = trackDesign;
+        this.parameters = parameters;
+        this.duration = duration;
+    }
+
+    /**
+     * drive the race on the calling thread, which waits for the race to end
+     */
+    public RaceResult run() {
+        return start().join();
+    }
+
+    /**
+     * start the race and leave its end to the scheduler of the pilots' actor system, so that no thread waits
+     * for the race
+     * @return completes with the result when the race has stopped
+     */
+    public CompletableFuture<RaceResult> start() {
+        CompletableFuture<RaceResult> finished = new CompletableFuture<>();
+        RaceResult result = new RaceResult(name, trackDesign, parameters);
+        RacetrackToPilotConnector connector = new RacetrackToPilotConnector();
+        RaceTrackSimulatorSystem track = new RaceTrackSimulatorSystem(name, connector,
+                new StompNewsInterface(new DiscardingMessagingTemplate()),
+                new NormalDistribution(simulator.getTickPeriod(), simulator.getSigma()),
+                simulator);
+        ActorRef pilot = null;
+        try {
+            if (trackDesign != null) {
+                track.selectDesign(trackDesign);
+            }
+            pilot = pilots.actorOf(Pilot.props(track, parameters, result), name);
+            connector.registerPilot(pilot);
+
+            RaceStartMessage start = new RaceStartMessage(name, "TRAINING", "", System.currentTimeMillis(), "", false);
+            track.startClock();
+            track.startRace(start);
+            connector.send(start);
+
+            ActorRef racing = pilot;
+            pilots.scheduler().scheduleOnce(Duration.create(duration, TimeUnit.MILLISECONDS),
+                    () -> finished.complete(stop(track, connector, racing, result)), pilots.dispatcher());
+        } catch (Exception e) {
+            result.failed(e);
+            finished.complete(shutdown(track, pilot, result));
+        }
+        return finished;
+    }
+
+    private RaceResult stop(RaceTrackSimulatorSystem track, RacetrackToPilotConnector connector, ActorRef pilot,
+                            RaceResult result) {
+        try {
+            RaceStopMessage stop = new RaceStopMessage();
+            track.stopRace(stop);
+            connector.send(stop);
+            track.stopClock();
+        } catch (Exception e) {
+            result.failed(e);
+        }
+        return shutdown(track, pilot, result);
+    }
+
+    private RaceResult shutdown(RaceTrackSimulatorSystem track, ActorRef pilot, RaceResult result) {
+        track.shutdown();
+        if (pilot != null) {
+            pilots.stop(pilot);
+        }
+        return result;
+    }
+
+    /**
+     * passes the race to the strategy and its power values to the simulator, like JavaPilotActor without
+     * recording and relay
+     */
+    static class Pilot extends UntypedActor {
+
+        private final RaceTrackSimulatorSystem track;
+        private final RaceResult result;
+        private final ActorRef strategy;
+
+        static Props props(RaceTrackSimulatorSystem track, StrategyProperties parameters, RaceResult result) {
+            return Props.create(Pilot.class, () -> new Pilot(track, parameters, result));
+        }
+
+        Pilot(RaceTrackSimulatorSystem track, StrategyProperties parameters, RaceResult result) {
+            this.track = track;
+            this.result = result;
+            this.strategy = getContext().actorOf(PowerUpUntilPenalty.props(getSelf(), parameters));
+        }
+
+        @Override
+        public void onReceive(Object message) {
+            if (message instanceof PowerAction) {
+                result.powerAction();
+                track.setPower(new PowerControl(((PowerAction) message).getPowerValue(),
+                        result.getName(), "", System.currentTimeMillis()));
+            } else if (message instanceof RoundTimeMessage) {
+                result.roundTime(((RoundTimeMessage) message).getRoundDuration());
+            } else if (message instanceof PenaltyMessage) {
+                result.penalty();
+                strategy.forward(message, getContext());
+            } else if (message instanceof SensorEvent || message instanceof VelocityMessage
+                    || message instanceof RaceStartMessage) {
+                strategy.forward(message, getContext());
+            } else {
+                unhandled(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.zuehlke.carrera.javapilot.evaluation;
+
+import akka.actor.ActorSystem;
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import com.zuehlke.carrera.simulator.config.SimulatorProperties;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many isolated simulator and pilot pairs in one process. Every pair has a simulator of its own, on its own
+ * track design, and a pilot with its own strategy parameters. The pilots share one actor system, and thereby
+ * the threads of its default dispatcher, which spans all cores. The end of every race is scheduled on the actor
+ * system's scheduler, so the number of lanes doesn't add any threads beyond those of the simulators.
+ */
+public class SimulatorFarm implements Closeable {
+
+    /**
+     * a simulator and pilot pair
+     */
+    public static class Lane {
+
+        private String trackDesign;
+        private StrategyProperties strategy = new StrategyProperties();
+
+        public Lane() {
+        }
+
+        public Lane(String trackDesign, StrategyProperties strategy) {
+            this.trackDesign = trackDesign;
+            this.strategy = strategy;
+        }
+
+        /**
+         * @return the track to race on, or null for the simulator's default
+         */
+        public String getTrackDesign() {
+            return trackDesign;
+        }
+
+        public void setTrackDesign(String trackDesign) {
+            this.trackDesign = trackDesign;
+        }
+
+        public StrategyProperties getStrategy() {
+            return strategy;
+        }
+
+        public void setStrategy(StrategyProperties strategy) {
+            this.strategy = strategy;
+        }
+    }
+
+    private final SimulatorProperties simulator;
+    private final ActorSystem pilots;
+    private final AtomicInteger raceCount = new AtomicInteger();
+    private final Set<CompletableFuture<RaceResult>> racing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param simulator the settings shared by all simulators
+     */
+    public SimulatorFarm(SimulatorProperties simulator) {
+        this.simulator = simulator;
+        this.pilots = ActorSystem.create("simulator-farm");
+    }
+
+    /**
+     * drive a race on the calling thread
+     */
+    public RaceResult race(String trackDesign, StrategyProperties parameters, long duration) {
+        return start(trackDesign, parameters, duration).join();
+    }
+
+    private CompletableFuture<RaceResult> start(String trackDesign, StrategyProperties parameters, long duration) {
+        CompletableFuture<RaceResult> race = new SimulatedRace("race-" + raceCount.incrementAndGet(), pilots,
+                simulator, trackDesign, parameters, duration).start();
+        racing.add(race);
+        race.whenComplete((result, e) -> racing.remove(race));
+        return race;
+    }
+
+    /**
+     * drive all lanes at the same time and wait for them
+     * @param duration ms per race
+     * @return the results in the order of the lanes
+     */
+    public List<RaceResult> run(List<Lane> lanes, long duration) {
+        List<CompletableFuture<RaceResult>> pending = new ArrayList<>();
+        for (Lane lane : lanes) {
+            pending.add(start(lane.getTrackDesign(), lane.getStrategy(), duration));
+        }
+        List<RaceResult> results = new ArrayList<>();
+        for (CompletableFuture<RaceResult> result : pending) {
+            results.add(result.join());
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        // the scheduler won't end these races any more
+        for (CompletableFuture<RaceResult> race : racing) {
+            race.completeExceptionally(new IllegalStateException("The simulator farm has been closed"));
+        }
+        pilots.shutdown();
+        pilots.awaitTermination();
+    }
+}
@@ -0,0 +1,181 @@
+package com.zuehlke.carrera.javapilot.evaluation;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.testkit.TestActorRef;
+import com.zuehlke.carrera.javapilot.akka.PowerAction;
+import com.zuehlke.carrera.javapilot.akka.PowerUpUntilPenalty;
+import com.zuehlke.carrera.javapilot.akka.RaceRecorderActor;
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.javapilot.io.RaceReplay;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Runs a strategy against recorded races without a race track, many races in parallel on a ForkJoinPool.
+ * Every race gets a fresh strategy in a TestActorRef, that handles the recorded messages synchronously on the
+ * worker thread, so the thread's CPU time is what the strategy took for the race. Its power actions go to another
+ * TestActorRef, that keeps the statistics of the {@link RaceEvaluation}.
+ * The evaluation is open loop: the recorded race doesn't react to the strategy's power values, so penalties and
+ * round times are the ones of the recording.
+ */
+public class StrategyEvaluator implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StrategyEvaluator.class);
+
+    private final RaceRecorderPlayer player;
+    private final Function<ActorRef, Props> strategy;
+    private final ActorSystem system;
+    private final ForkJoinPool pool;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * @param player the recorded races
+     * @param strategy creates the props of the strategy, given the actor that receives its power actions
+     * @param parallelism the number of races evaluated at the same time
+     */
+    public StrategyEvaluator(RaceRecorderPlayer player, Function<ActorRef, Props> strategy, int parallelism) {
+        this.player = player;
+        this.strategy = strategy;
+        this.system = ActorSystem.create("strategy-evaluation");
+        this.pool = new ForkJoinPool(parallelism);
+        if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    /**
+     * @return the strategy of the pilot, see JavaPilotActor
+     */
+    public static Function<ActorRef, Props> powerUpUntilPenalty(StrategyProperties parameters) {
+        return pilot -> PowerUpUntilPenalty.props(pilot, parameters);
+    }
+
+    /**
+     * @return the evaluations of all recorded races, in the order of their tags
+     */
+    public List<RaceEvaluation> evaluateAll() {
+        return evaluate(player.races());
+    }
+
+    /**
+     * @param tags the recorded races to evaluate
+     * @return their evaluations, in the order of the tags
+     */
+    public List<RaceEvaluation> evaluate(List<String> tags) {
+        List<ForkJoinTask<RaceEvaluation>> tasks = new ArrayList<>();
+        for (String tag : tags) {
+            tasks.add(pool.submit(() -> evaluate(tag)));
+        }
+        List<RaceEvaluation> evaluations = new ArrayList<>();
+        for (ForkJoinTask<RaceEvaluation> task : tasks) {
+            evaluations.add(task.join());
+        }
+        return evaluations;
+    }
+
+    /**
+     * evaluate a single race on the calling thread
+     */
+    public RaceEvaluation evaluate(String tag) {
+        RaceEvaluation evaluation = new RaceEvaluation(tag);
+        TestActorRef<PowerCollector> collector = TestActorRef.create(system, PowerCollector.props(evaluation));
+        TestActorRef<UntypedActor> strategyRef = TestActorRef.create(system, strategy.apply(collector));
+
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        long wallStart = System.nanoTime();
+        RaceReplay replay = null;
+        try {
+            replay = player.getSupplier(tag);
+            while (replay.hasNext()) {
+                Object message = replay.get();
+                evaluation.message();
+                if (message instanceof SensorEvent) {
+                    evaluation.sensorEvent();
+                    strategyRef.receive(message);
+                } else if (message instanceof PenaltyMessage) {
+                    evaluation.penalty();
+                    strategyRef.receive(message);
+                } else if (message instanceof RoundTimeMessage) {
+                    evaluation.roundTime(((RoundTimeMessage) message).getRoundDuration());
+                } else if (message instanceof VelocityMessage || message instanceof RaceStartMessage) {
+                    strategyRef.receive(message);
+                }
+                // the recorded power controls are the recording pilot's, not the strategy's
+            }
+        } catch (Exception e) {
+            LOG.warn("Couldn't evaluate race {}: {}", tag, e.getMessage());
+            evaluation.failed(e);
+        } finally {
+            if (replay != null) {
+                replay.close();
+            }
+            long cpuEnd = threads.getCurrentThreadCpuTime();
+            evaluation.times(cpuStart < 0 ? -1 : cpuEnd - cpuStart, System.nanoTime() - wallStart);
+            system.stop(strategyRef);
+            system.stop(collector);
+        }
+        return evaluation;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    /**
+     * counts the power actions of the strategy under evaluation
+     */
+    static class PowerCollector extends UntypedActor {
+
+        private final RaceEvaluation evaluation;
+
+        static Props props(RaceEvaluation evaluation) {
+            return Props.create(PowerCollector.class, () -> new PowerCollector(evaluation));
+        }
+
+        PowerCollector(RaceEvaluation evaluation) {
+            this.evaluation = evaluation;
+        }
+
+        @Override
+        public void onReceive(Object message) {
+            if (message instanceof PowerAction) {
+                evaluation.powerAction(((PowerAction) message).getPowerValue());
+            } else {
+                unhandled(message);
+            }
+        }
+    }
+
+    /**
+     * evaluates the pilot's strategy against all recorded races and prints the results
+     * @param args the data directory (default "data") and the parallelism (default: all cores)
+     */
+    public static void main(String[] args) {
+        String dataDirectory = args.length > 0 ? args[0] : RaceRecorderActor.DATA_DIRECTORY;
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        try (StrategyEvaluator evaluator = new StrategyEvaluator(
+                new RaceRecorderPlayer(dataDirectory), powerUpUntilPenalty(new StrategyProperties()), parallelism)) {
+            long start = System.nanoTime();
+            List<RaceEvaluation> evaluations = evaluator.evaluateAll();
+            evaluations.forEach(System.out::println);
+            System.out.printf("%d races evaluated in %.1f s%n", evaluations.size(), (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
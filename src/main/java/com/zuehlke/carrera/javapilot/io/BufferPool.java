@@ -0,0 +1,51 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of buffers of exactly the requested size, so that the backing array of a buffer is the complete message
+ * and can be handed to APIs that only take byte arrays. The messages that are sent often come in very few sizes,
+ * thus only a few sizes and a few buffers per size are kept. Buffers beyond that are left to the garbage collector.
+ */
+public class BufferPool {
+
+    private static final int MAX_SIZES = 16;
+
+    private final int buffersPerSize;
+    private final Map<Integer, Queue<ByteBuffer>> pools = new ConcurrentHashMap<>();
+
+    public BufferPool(int buffersPerSize) {
+        this.buffersPerSize = buffersPerSize;
+    }
+
+    /**
+     * @return a cleared buffer with a capacity of exactly size bytes
+     */
+    public ByteBuffer acquire(int size) {
+        Queue<ByteBuffer> pool = pools.get(size);
+        ByteBuffer buffer = pool == null ? null : pool.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(size);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * returns the buffer to the pool. It mustn't be used anymore by the caller.
+     */
+    public void release(ByteBuffer buffer) {
+        Queue<ByteBuffer> pool = pools.get(buffer.capacity());
+        if (pool == null) {
+            if (pools.size() >= MAX_SIZES) {
+                return;
+            }
+            pool = pools.computeIfAbsent(buffer.capacity(), size -> new ArrayBlockingQueue<>(buffersPerSize));
+        }
+        pool.offer(buffer);
+    }
+}
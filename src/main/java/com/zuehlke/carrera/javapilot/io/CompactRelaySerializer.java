@@ -0,0 +1,213 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+import com.zuehlke.carrera.api.seralize.Serializer;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializer for the messages between pilots and the relay. Like the relay, the String methods speak JSON.
+ * The high-frequency messages additionally have a compact binary layout for peers that accept it:
+ * <ul>
+ *     <li>SensorEvent: type tag, timestamp, the acceleration, gyro and magnetic vectors as nine fixed-width
+ *     ints and the race track id</li>
+ *     <li>PowerControl: type tag, timestamp, the power value, the team id and the access code</li>
+ * </ul>
+ * Strings are written as their length (a short, -1 for null) followed by their UTF-8 bytes. They practically
+ * never change during a race, so their bytes are cached on both sides. Messages are encoded into exactly sized
+ * buffers of a {@link BufferPool}, whose backing arrays can be published as they are.
+ * Instances are thread-safe.
+ */
+public class CompactRelaySerializer implements Serializer {
+
+    public static final String COMPACT_CONTENT_TYPE = "application/x-fnf-compact";
+    public static final String JSON_CONTENT_TYPE = "application/json";
+
+    /** message header a peer uses to tell which content type it accepts in addition to JSON */
+    public static final String ACCEPT_HEADER = "accept";
+
+    public static final int SENSOR_SIZE = RaceRecordCodec.SENSOR_RECORD_SIZE;
+    public static final int POWER_SIZE = RaceRecordCodec.POWER_RECORD_SIZE;
+
+    private static final int POOLED_BUFFERS_PER_SIZE = 8;
+
+    private final JacksonSerializer json = new JacksonSerializer();
+    private final BufferPool pool = new BufferPool(POOLED_BUFFERS_PER_SIZE);
+
+    // the last string of each field and its bytes, replaced as a whole when the string changes
+    private volatile CachedString trackId = CachedString.NULL;
+    private volatile CachedString teamId = CachedString.NULL;
+    private volatile CachedString accessCode = CachedString.NULL;
+
+    public static boolean isCompact(String contentType) {
+        return COMPACT_CONTENT_TYPE.equals(contentType);
+    }
+
+    /**
+     * @return true, if the message has a compact layout
+     */
+    public boolean supports(Object message) {
+        return message instanceof SensorEvent || message instanceof PowerControl;
+    }
+
+    /**
+     * @param message a message the serializer {@link #supports(Object)}
+     * @return a pooled buffer holding exactly the encoded message. Pass it to {@link #release(ByteBuffer)} when done.
+     */
+    public ByteBuffer encode(Object message) {
+        if (message instanceof SensorEvent) {
+            SensorEvent event = (SensorEvent) message;
+            CachedString track = trackId = cached(trackId, event.getRaceTrackId());
+            ByteBuffer buffer = pool.acquire(SENSOR_SIZE + track.size());
+            buffer.put(RaceRecordCodec.SENSOR);
+            buffer.putLong(event.getTimeStamp());
+            putVector(event.getA(), buffer);
+            putVector(event.getG(), buffer);
+            putVector(event.getM(), buffer);
+            track.put(buffer);
+            buffer.flip();
+            return buffer;
+        } else if (message instanceof PowerControl) {
+            PowerControl control = (PowerControl) message;
+            CachedString team = teamId = cached(teamId, control.getTeamId());
+            CachedString code = accessCode = cached(accessCode, control.getAccessCode());
+            ByteBuffer buffer = pool.acquire(POWER_SIZE + team.size() + code.size());
+            buffer.put(RaceRecordCodec.POWER);
+            buffer.putLong(control.getTimeStamp());
+            buffer.putInt(control.getP());
+            team.put(buffer);
+            code.put(buffer);
+            buffer.flip();
+            return buffer;
+        }
+        throw new IllegalArgumentException("No compact layout for " + message.getClass());
+    }
+
+    public void release(ByteBuffer buffer) {
+        pool.release(buffer);
+    }
+
+    /**
+     * @param buffer a buffer holding a single message in the compact layout
+     */
+    public <T> T decode(ByteBuffer buffer, Class<T> type) {
+        byte tag = buffer.get();
+        long timestamp = buffer.getLong();
+        Object message;
+        if (tag == RaceRecordCodec.SENSOR) {
+            int[] a = getVector(buffer);
+            int[] g = getVector(buffer);
+            int[] m = getVector(buffer);
+            CachedString track = trackId = get(trackId, buffer);
+            message = new SensorEvent(track.value, a, g, m, timestamp);
+        } else if (tag == RaceRecordCodec.POWER) {
+            int power = buffer.getInt();
+            CachedString team = teamId = get(teamId, buffer);
+            CachedString code = accessCode = get(accessCode, buffer);
+            message = new PowerControl(power, team.value, code.value, timestamp);
+        } else {
+            throw new IllegalStateException("Unknown compact message type " + tag);
+        }
+        if (!type.isInstance(message)) {
+            throw new IllegalArgumentException("Expected " + type + " but got " + message.getClass());
+        }
+        return type.cast(message);
+    }
+
+    /**
+     * decodes the body of a message according to its content type: the compact layout, or JSON otherwise
+     */
+    public <T> T deserialize(byte[] body, String contentType, Class<T> type) {
+        if (isCompact(contentType)) {
+            return decode(ByteBuffer.wrap(body), type);
+        }
+        return json.deserialize(new String(body, StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public String serialize(Object message) {
+        return json.serialize(message);
+    }
+
+    @Override
+    public <T> T deserialize(String message, Class<T> type) {
+        return json.deserialize(message, type);
+    }
+
+    private static CachedString cached(CachedString last, String value) {
+        if (last.value == value || (value != null && value.equals(last.value))) {
+            return last;
+        }
+        byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes != null && bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long for the compact layout: " + bytes.length + " bytes");
+        }
+        return new CachedString(value, bytes);
+    }
+
+    private static CachedString get(CachedString last, ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return CachedString.NULL;
+        }
+        if (last.matches(buffer, length)) {
+            buffer.position(buffer.position() + length);
+            return last;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new CachedString(new String(bytes, StandardCharsets.UTF_8), bytes);
+    }
+
+    private static void putVector(int[] vector, ByteBuffer buffer) {
+        buffer.putInt(vector[0]);
+        buffer.putInt(vector[1]);
+        buffer.putInt(vector[2]);
+    }
+
+    private static int[] getVector(ByteBuffer buffer) {
+        return new int[]{buffer.getInt(), buffer.getInt(), buffer.getInt()};
+    }
+
+    private static class CachedString {
+
+        static final CachedString NULL = new CachedString(null, null);
+
+        final String value;
+        final byte[] bytes;
+
+        CachedString(String value, byte[] bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+
+        int size() {
+            return 2 + (bytes == null ? 0 : bytes.length);
+        }
+
+        void put(ByteBuffer buffer) {
+            if (bytes == null) {
+                buffer.putShort((short) -1);
+            } else {
+                buffer.putShort((short) bytes.length);
+                buffer.put(bytes);
+            }
+        }
+
+        boolean matches(ByteBuffer buffer, int length) {
+            if (bytes == null || bytes.length != length) {
+                return false;
+            }
+            int position = buffer.position();
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(position + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
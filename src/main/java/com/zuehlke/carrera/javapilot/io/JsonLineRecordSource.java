@@ -0,0 +1,45 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * reads recordings that store one JSON encoded message per line.
+ */
+public class JsonLineRecordSource implements RaceRecordSource {
+
+    private final BufferedReader reader;
+    private final Class<?> type;
+    private final JacksonSerializer serializer = new JacksonSerializer();
+    private long timestamp;
+
+    public JsonLineRecordSource(Path file, Class<?> type) throws IOException {
+        this.reader = Files.newBufferedReader(file);
+        this.type = type;
+    }
+
+    @Override
+    public Object next() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        Object next = serializer.deserialize(line, type);
+        timestamp = RaceRecordCodec.timestampOf(next);
+        return next;
+    }
+
+    @Override
+    public long timestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
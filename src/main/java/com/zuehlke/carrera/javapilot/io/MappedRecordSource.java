@@ -0,0 +1,143 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to a binary recording. The file is memory-mapped and read through the {@link RaceRecordIndex}
+ * written next to it: seeking to a timestamp or to the n-th message is a binary search over the index, followed
+ * by a scan of at most {@link RaceRecordIndex#INTERVAL} records. Recordings without a valid index, e.g. those
+ * made before recordings were indexed, are indexed by reading them once when opened.
+ */
+public class MappedRecordSource implements RaceRecordSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedRecordSource.class);
+
+    private final MappedByteBuffer mapped;
+    private final RaceRecordCodec codec = new RaceRecordCodec();
+    private final RaceRecordIndex index;
+
+    // offset of the next record to read, and the ordinal of the next message record
+    private int position = RaceRecordCodec.HEADER_SIZE;
+    private int ordinal;
+    private long timestamp;
+
+    public MappedRecordSource(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.limit() < RaceRecordCodec.HEADER_SIZE || mapped.getInt(0) != RaceRecordCodec.MAGIC) {
+            throw new IOException(file + " is no binary race recording.");
+        }
+        RaceRecordIndex stored = RaceRecordIndex.read(RaceRecordIndex.of(file), mapped.limit());
+        if (stored == null) {
+            logger.debug("No index for {}, reading all of it", file);
+            stored = RaceRecordIndex.scan(mapped);
+            if (stored.getLength() < mapped.limit()) {
+                logger.warn("Ignoring truncated race record at the end of {}", file);
+            }
+        }
+        index = stored;
+    }
+
+    @Override
+    public Object next() {
+        while (ordinal < index.records()) {
+            mapped.position(position);
+            position += RaceRecordCodec.recordSize(mapped);
+            Object next = codec.decode(mapped);
+            if (next != null) {
+                ordinal++;
+                timestamp = codec.lastTimestamp();
+                return next;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * position this source at the first record with a timestamp not before the given one
+     */
+    @Override
+    public boolean seek(long timestamp) {
+        startAt(index.entryBefore(timestamp));
+        while (ordinal < index.records() && peekTimestamp() < timestamp) {
+            skip();
+        }
+        return true;
+    }
+
+    /**
+     * position this source at the message with the given ordinal, counted from 0
+     */
+    public void seekRecord(int ordinal) {
+        startAt(index.entryOf(ordinal));
+        while (this.ordinal < Math.min(ordinal, index.records())) {
+            skip();
+        }
+    }
+
+    /**
+     * @return the number of messages in this recording
+     */
+    public int size() {
+        return index.records();
+    }
+
+    /**
+     * position this source at an index entry and restore the track record in effect there, since the sensor
+     * events that follow depend on it
+     */
+    private void startAt(int entry) {
+        if (entry < 0) {
+            position = RaceRecordCodec.HEADER_SIZE;
+            ordinal = 0;
+            return;
+        }
+        long trackOffset = index.trackOffset(entry);
+        if (trackOffset >= 0) {
+            mapped.position((int) trackOffset);
+            codec.decode(mapped);
+        }
+        position = (int) index.offset(entry);
+        ordinal = index.ordinal(entry);
+    }
+
+    /**
+     * @return the timestamp of the next message record, after decoding the track records before it
+     */
+    private long peekTimestamp() {
+        while (mapped.get(position) == RaceRecordCodec.TRACK) {
+            mapped.position(position);
+            position += RaceRecordCodec.recordSize(mapped);
+            codec.decode(mapped);
+        }
+        return mapped.getLong(position + 1);
+    }
+
+    /**
+     * pass over the next message record without decoding it
+     */
+    private void skip() {
+        peekTimestamp();
+        mapped.position(position);
+        position += RaceRecordCodec.recordSize(mapped);
+        ordinal++;
+    }
+
+    @Override
+    public void close() {
+        // the mapping is released together with the buffer
+    }
+}
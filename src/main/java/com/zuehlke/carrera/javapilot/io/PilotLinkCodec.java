@@ -0,0 +1,93 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.*;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Encodes the messages between a simulator and a remote pilot into binary frames, one message per frame, using
+ * the record layout of {@link RaceRecordCodec}: sensor events and power controls have fixed-width records, the
+ * rare messages are JSON blobs. A frame carrying a SensorEvent of a new race track starts with a track record.
+ * Power records don't carry the pilot: the pilot's team id and access code are exchanged once per session, in
+ * the handshake of the link, and the decoder of the session attributes all power controls to them.
+ * An instance encodes one direction of one link and is not thread-safe.
+ */
+public class PilotLinkCodec {
+
+    /** handshake headers identifying the pilot of a link */
+    public static final String TEAM_ID_HEADER = "X-Pilot-Team-Id";
+    public static final String ACCESS_CODE_HEADER = "X-Pilot-Access-Code";
+
+    private final RaceRecordCodec codec = new RaceRecordCodec();
+    private String lastTrackId;
+
+    public PilotLinkCodec() {
+    }
+
+    /**
+     * a decoder of the power controls sent by the given pilot
+     */
+    public PilotLinkCodec(String teamId, String accessCode) {
+        codec.setPilot(teamId, accessCode);
+    }
+
+    /**
+     * @return the frame carrying the message, or null if the message can't be sent over the link
+     */
+    public ByteBuffer encode(Object message) {
+        if (message instanceof SensorEvent) {
+            SensorEvent event = (SensorEvent) message;
+            byte[] track = codec.encodeTrackIfChanged(event, lastTrackId);
+            int trackSize = track == null ? 0 : track.length;
+            ByteBuffer frame = ByteBuffer.allocate(trackSize + RaceRecordCodec.SENSOR_RECORD_SIZE);
+            if (track != null) {
+                lastTrackId = event.getRaceTrackId();
+                frame.put(track);
+            }
+            codec.encodeSensorEvent(event, frame);
+            frame.flip();
+            return frame;
+        } else if (message instanceof PowerControl) {
+            ByteBuffer frame = ByteBuffer.allocate(RaceRecordCodec.POWER_RECORD_SIZE);
+            codec.encodePowerControl((PowerControl) message, frame);
+            frame.flip();
+            return frame;
+        } else if (message instanceof VelocityMessage) {
+            return ByteBuffer.wrap(codec.encodeVelocity((VelocityMessage) message));
+        } else if (message instanceof TimedPenaltyMessage) {
+            return ByteBuffer.wrap(codec.encodePenalty((TimedPenaltyMessage) message));
+        } else if (message instanceof PenaltyMessage) {
+            TimedPenaltyMessage timed = new TimedPenaltyMessage((PenaltyMessage) message, System.currentTimeMillis());
+            return ByteBuffer.wrap(codec.encodePenalty(timed));
+        } else if (message instanceof RoundTimeMessage) {
+            return ByteBuffer.wrap(codec.encodeRoundTime((RoundTimeMessage) message));
+        } else if (message instanceof RaceStartMessage) {
+            return ByteBuffer.wrap(codec.encodeRaceStart((RaceStartMessage) message));
+        } else if (message instanceof RaceStopMessage) {
+            return ByteBuffer.wrap(codec.encodeRaceStop((RaceStopMessage) message, System.currentTimeMillis()));
+        }
+        return null;
+    }
+
+    /**
+     * passes the messages of the frame to the sink. Penalties arrive as the original PenaltyMessages.
+     */
+    public void decode(ByteBuffer frame, Consumer<Object> sink) {
+        while (frame.hasRemaining()) {
+            Object message = codec.decode(frame);
+            if (message instanceof TimedPenaltyMessage) {
+                sink.accept(((TimedPenaltyMessage) message).getOriginal());
+            } else if (message != null) {
+                sink.accept(message);
+            }
+        }
+    }
+
+    /**
+     * makes the next SensorEvent frame carry its track id again, e.g. for a new connection
+     */
+    public void resetTrack() {
+        lastTrackId = null;
+    }
+}
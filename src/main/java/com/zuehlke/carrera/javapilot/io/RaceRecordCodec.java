@@ -0,0 +1,230 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+import com.zuehlke.carrera.relayapi.messages.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary layout of the race recordings. Every record starts with a one byte type tag and the eight byte
+ * timestamp, followed by the payload:
+ * <ul>
+ *     <li>SensorEvent: acceleration, gyro and magnetic vectors as nine fixed-width ints</li>
+ *     <li>PowerControl: the power value as a single int</li>
+ *     <li>Track: the race track id of all subsequent SensorEvents, written only when it changes</li>
+ *     <li>all other (rare) messages, including RoundTimeMessages: their JSON representation, prefixed by its length</li>
+ * </ul>
+ */
+public class RaceRecordCodec {
+
+    /** magic number at the beginning of every binary recording ("FRC1") */
+    public static final int MAGIC = 0x46524331;
+    public static final int HEADER_SIZE = 4;
+
+    public static final byte START = 1;
+    public static final byte SENSOR = 2;
+    public static final byte POWER = 3;
+    public static final byte VELOCITY = 4;
+    public static final byte PENALTY = 5;
+    public static final byte TRACK = 6;
+    public static final byte ROUND = 7;
+    public static final byte STOP = 8;
+
+    public static final int PREFIX_SIZE = 1 + 8;
+    public static final int SENSOR_RECORD_SIZE = PREFIX_SIZE + 9 * 4;
+    public static final int POWER_RECORD_SIZE = PREFIX_SIZE + 4;
+
+    // Power controls are recorded on behalf of the starterkit pilot, see JavaPilotActor
+    public static final String RECORDED_PILOT = "starterkit";
+    public static final String RECORDED_ACCESS_CODE = "tikretrats";
+
+    private final JacksonSerializer serializer = new JacksonSerializer();
+
+    // decoding state: the track id of the SensorEvents that follow and the timestamp of the last record
+    private String trackId;
+    private long timestamp;
+    // the pilot decoded PowerControls are attributed to, since the records don't carry it
+    private String teamId = RECORDED_PILOT;
+    private String accessCode = RECORDED_ACCESS_CODE;
+
+    public void encodeSensorEvent(SensorEvent event, ByteBuffer buffer) {
+        buffer.put(SENSOR);
+        buffer.putLong(event.getTimeStamp());
+        putVector(event.getA(), buffer);
+        putVector(event.getG(), buffer);
+        putVector(event.getM(), buffer);
+    }
+
+    public void encodePowerControl(PowerControl control, ByteBuffer buffer) {
+        buffer.put(POWER);
+        buffer.putLong(control.getTimeStamp());
+        buffer.putInt(control.getP());
+    }
+
+    /**
+     * @return the encoded track record or null, if the track id hasn't changed since the last call
+     */
+    public byte[] encodeTrackIfChanged(SensorEvent event, String lastTrackId) {
+        String id = event.getRaceTrackId();
+        if (id == null || id.equals(lastTrackId)) {
+            return null;
+        }
+        return encodeBlob(TRACK, event.getTimeStamp(), id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public byte[] encodeRaceStart(RaceStartMessage message) {
+        return encodeJson(START, message.getTimestamp(), message);
+    }
+
+    public byte[] encodeVelocity(VelocityMessage message) {
+        return encodeJson(VELOCITY, message.getTimeStamp(), message);
+    }
+
+    public byte[] encodePenalty(TimedPenaltyMessage message) {
+        return encodeJson(PENALTY, message.getTimestamp(), message.getOriginal());
+    }
+
+    public byte[] encodeRoundTime(RoundTimeMessage message) {
+        return encodeJson(ROUND, message.getTimestamp(), message);
+    }
+
+    /**
+     * race stops aren't recorded, they only end a recording. The pilot link transmits them, though.
+     */
+    public byte[] encodeRaceStop(RaceStopMessage message, long timestamp) {
+        return encodeJson(STOP, timestamp, message);
+    }
+
+    private byte[] encodeJson(byte tag, long timestamp, Object message) {
+        byte[] json = serializer.serialize(message).getBytes(StandardCharsets.UTF_8);
+        return encodeBlob(tag, timestamp, json);
+    }
+
+    private byte[] encodeBlob(byte tag, long timestamp, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(PREFIX_SIZE + 4 + payload.length);
+        record.put(tag);
+        record.putLong(timestamp);
+        record.putInt(payload.length);
+        record.put(payload);
+        return record.array();
+    }
+
+    /**
+     * @param buffer a buffer positioned at the beginning of a record
+     * @return the number of bytes the record occupies or -1, if the buffer doesn't hold enough bytes to tell.
+     */
+    public static int recordSize(ByteBuffer buffer) {
+        int position = buffer.position();
+        if (buffer.remaining() < 1) {
+            return -1;
+        }
+        switch (buffer.get(position)) {
+            case SENSOR:
+                return SENSOR_RECORD_SIZE;
+            case POWER:
+                return POWER_RECORD_SIZE;
+            case START:
+            case VELOCITY:
+            case PENALTY:
+            case TRACK:
+            case ROUND:
+            case STOP:
+                if (buffer.remaining() < PREFIX_SIZE + 4) {
+                    return -1;
+                }
+                return PREFIX_SIZE + 4 + buffer.getInt(position + PREFIX_SIZE);
+            default:
+                throw new IllegalStateException("Unknown record type " + buffer.get(position)
+                        + " at position " + position);
+        }
+    }
+
+    /**
+     * attribute the PowerControls decoded from now on to the given pilot instead of the recorded one
+     */
+    public void setPilot(String teamId, String accessCode) {
+        this.teamId = teamId;
+        this.accessCode = accessCode;
+    }
+
+    /**
+     * @param buffer a buffer holding at least one complete record at its current position
+     * @return the decoded message, or null if the record only carried decoding state
+     */
+    public Object decode(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        timestamp = buffer.getLong();
+        switch (tag) {
+            case SENSOR:
+                int[] a = getVector(buffer);
+                int[] g = getVector(buffer);
+                int[] m = getVector(buffer);
+                return new SensorEvent(trackId, a, g, m, timestamp);
+            case POWER:
+                return new PowerControl(buffer.getInt(), teamId, accessCode, timestamp);
+            case TRACK:
+                trackId = new String(getBlob(buffer), StandardCharsets.UTF_8);
+                return null;
+            case START:
+                return getJson(buffer, RaceStartMessage.class);
+            case VELOCITY:
+                return getJson(buffer, VelocityMessage.class);
+            case PENALTY:
+                return new TimedPenaltyMessage(getJson(buffer, PenaltyMessage.class), timestamp);
+            case ROUND:
+                return getJson(buffer, RoundTimeMessage.class);
+            case STOP:
+                return getJson(buffer, RaceStopMessage.class);
+            default:
+                throw new IllegalStateException("Unknown record type " + tag);
+        }
+    }
+
+    /**
+     * @return the timestamp of the record decoded last
+     */
+    public long lastTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the timestamp a message of any recorded type is ordered by
+     */
+    public static long timestampOf(Object message) {
+        if (message instanceof SensorEvent) {
+            return ((SensorEvent) message).getTimeStamp();
+        } else if (message instanceof PowerControl) {
+            return ((PowerControl) message).getTimeStamp();
+        } else if (message instanceof VelocityMessage) {
+            return ((VelocityMessage) message).getTimeStamp();
+        } else if (message instanceof TimedPenaltyMessage) {
+            return ((TimedPenaltyMessage) message).getTimestamp();
+        } else if (message instanceof RaceStartMessage) {
+            return ((RaceStartMessage) message).getTimestamp();
+        } else if (message instanceof RoundTimeMessage) {
+            return ((RoundTimeMessage) message).getTimestamp();
+        }
+        throw new IllegalArgumentException("No recorded message type: " + message.getClass());
+    }
+
+    private <T> T getJson(ByteBuffer buffer, Class<T> type) {
+        return serializer.deserialize(new String(getBlob(buffer), StandardCharsets.UTF_8), type);
+    }
+
+    private byte[] getBlob(ByteBuffer buffer) {
+        byte[] blob = new byte[buffer.getInt()];
+        buffer.get(blob);
+        return blob;
+    }
+
+    private static void putVector(int[] vector, ByteBuffer buffer) {
+        buffer.putInt(vector[0]);
+        buffer.putInt(vector[1]);
+        buffer.putInt(vector[2]);
+    }
+
+    private static int[] getVector(ByteBuffer buffer) {
+        return new int[]{buffer.getInt(), buffer.getInt(), buffer.getInt()};
+    }
+}
@@ -0,0 +1,211 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Sparse index of a binary recording, stored next to it in a file with the suffix ".idx". Every INTERVAL-th
+ * message record has an entry: its ordinal, timestamp and offset, and the offset of the track record in effect
+ * there. Finding a timestamp or an ordinal is a binary search over the entries followed by a scan of at most
+ * INTERVAL records. The index is written when the recording is closed; it covers the recording only if the
+ * recording still has the length the index was written for.
+ */
+public class RaceRecordIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RaceRecordIndex.class);
+
+    /** magic number at the beginning of every index ("FRI1") */
+    public static final int MAGIC = 0x46524931;
+    public static final String SUFFIX = ".idx";
+    public static final int INTERVAL = 128;
+
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4;
+    private static final int ENTRY_SIZE = 8 + 8 + 8 + 4;
+
+    private long[] timestamps = new long[16];
+    private long[] offsets = new long[16];
+    private long[] trackOffsets = new long[16];
+    private int[] ordinals = new int[16];
+    private int entries;
+
+    private int records;
+    private long length = RaceRecordCodec.HEADER_SIZE;
+
+    /**
+     * @return the index file of the given recording
+     */
+    public static Path of(Path recording) {
+        return recording.resolveSibling(recording.getFileName() + SUFFIX);
+    }
+
+    /**
+     * count a message record, and add an entry for it if it's due
+     * @param timestamp the timestamp of the record
+     * @param offset the offset of the record in the recording
+     * @param trackOffset the offset of the last track record before it, or -1
+     */
+    public void add(long timestamp, long offset, long trackOffset) {
+        if (records % INTERVAL == 0) {
+            if (entries == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, entries * 2);
+                offsets = Arrays.copyOf(offsets, entries * 2);
+                trackOffsets = Arrays.copyOf(trackOffsets, entries * 2);
+                ordinals = Arrays.copyOf(ordinals, entries * 2);
+            }
+            timestamps[entries] = timestamp;
+            offsets[entries] = offset;
+            trackOffsets[entries] = trackOffset;
+            ordinals[entries] = records;
+            entries++;
+        }
+        records++;
+    }
+
+    /**
+     * @param length the number of bytes of the recording covered by this index
+     */
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the number of message records in the recording, not counting track records
+     */
+    public int records() {
+        return records;
+    }
+
+    /**
+     * @return the entry to start scanning from for the first record with a timestamp not before the given one,
+     * or -1 to start at the beginning of the recording
+     */
+    public int entryBefore(long timestamp) {
+        // records with equal timestamps may span two entries: take the last entry strictly before the timestamp
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * @return the entry to start scanning from for the record with the given ordinal, or -1
+     */
+    public int entryOf(int ordinal) {
+        return Math.min(ordinal / INTERVAL, entries - 1);
+    }
+
+    public long offset(int entry) {
+        return offsets[entry];
+    }
+
+    public long trackOffset(int entry) {
+        return trackOffsets[entry];
+    }
+
+    public int ordinal(int entry) {
+        return ordinals[entry];
+    }
+
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + entries * ENTRY_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putLong(length);
+        buffer.putInt(records);
+        buffer.putInt(entries);
+        for (int i = 0; i < entries; i++) {
+            buffer.putLong(timestamps[i]);
+            buffer.putLong(offsets[i]);
+            buffer.putLong(trackOffsets[i]);
+            buffer.putInt(ordinals[i]);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @param file the index file
+     * @param length the current length of the recording
+     * @return the index, or null if there is none or it doesn't cover the recording as it is now
+     */
+    public static RaceRecordIndex read(Path file, long length) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            logger.warn("Ignoring {}, it's no race record index", file);
+            return null;
+        }
+        RaceRecordIndex index = new RaceRecordIndex();
+        index.length = buffer.getLong();
+        index.records = buffer.getInt();
+        int entries = buffer.getInt();
+        if (index.length != length || buffer.remaining() != entries * ENTRY_SIZE) {
+            logger.warn("Ignoring {}, it doesn't match its recording", file);
+            return null;
+        }
+        index.timestamps = new long[Math.max(entries, 1)];
+        index.offsets = new long[Math.max(entries, 1)];
+        index.trackOffsets = new long[Math.max(entries, 1)];
+        index.ordinals = new int[Math.max(entries, 1)];
+        for (int i = 0; i < entries; i++) {
+            index.timestamps[i] = buffer.getLong();
+            index.offsets[i] = buffer.getLong();
+            index.trackOffsets[i] = buffer.getLong();
+            index.ordinals[i] = buffer.getInt();
+        }
+        index.entries = entries;
+        return index;
+    }
+
+    /**
+     * build the index of a recording that has none, e.g. one written before recordings were indexed, by reading
+     * all of it
+     * @param recording the complete recording, including its header. Its position is not changed
+     */
+    public static RaceRecordIndex scan(ByteBuffer recording) {
+        RaceRecordIndex index = new RaceRecordIndex();
+        ByteBuffer records = recording.duplicate();
+        int offset = RaceRecordCodec.HEADER_SIZE;
+        long trackOffset = -1;
+        while (offset < records.limit()) {
+            records.position(offset);
+            int size = RaceRecordCodec.recordSize(records);
+            if (size < 0 || offset + size > records.limit()) {
+                break;
+            }
+            if (records.get(offset) == RaceRecordCodec.TRACK) {
+                trackOffset = offset;
+            } else {
+                index.add(records.getLong(offset + 1), offset, trackOffset);
+            }
+            offset += size;
+        }
+        index.length = offset;
+        return index;
+    }
+}
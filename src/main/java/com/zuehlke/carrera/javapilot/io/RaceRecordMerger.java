@@ -0,0 +1,128 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Merges any number of recorded streams into a single stream ordered by timestamp. The heads of all streams
+ * are kept in a binary min-heap, so that producing the next message costs O(log k) for k streams and doesn't
+ * allocate anything beyond the decoded messages themselves. Messages with equal timestamps are produced in
+ * the order of their streams.
+ */
+public class RaceRecordMerger implements Supplier<Object>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RaceRecordMerger.class);
+
+    private final RaceRecordSource[] sources;
+    private final Object[] heads;
+    private final long[] timestamps;
+
+    // indices of the streams that still have a head, ordered as a min-heap on (timestamp, index)
+    private final int[] heap;
+    private int size;
+
+    public RaceRecordMerger(List<RaceRecordSource> sources) throws IOException {
+        this.sources = sources.toArray(new RaceRecordSource[sources.size()]);
+        this.heads = new Object[this.sources.length];
+        this.timestamps = new long[this.sources.length];
+        this.heap = new int[this.sources.length];
+
+        for (int i = 0; i < this.sources.length; i++) {
+            if (advance(i)) {
+                heap[size++] = i;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * @return the message with the smallest timestamp of all streams
+     * @throws EndOfStreamException when all streams are exhausted. All streams are closed by then.
+     */
+    @Override
+    public Object get() throws EndOfStreamException {
+        if (size == 0) {
+            close();
+            throw new EndOfStreamException();
+        }
+        int stream = heap[0];
+        Object next = heads[stream];
+        try {
+            if (!advance(stream)) {
+                heap[0] = heap[--size];
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (size > 0) {
+            siftDown(0);
+        }
+        return next;
+    }
+
+    /**
+     * @return the timestamp of the message the next call to {@link #get()} will return
+     * @throws EndOfStreamException when all streams are exhausted
+     */
+    public long peekTimestamp() throws EndOfStreamException {
+        if (size == 0) {
+            throw new EndOfStreamException();
+        }
+        return timestamps[heap[0]];
+    }
+
+    public boolean hasNext() {
+        return size > 0;
+    }
+
+    private boolean advance(int stream) throws IOException {
+        Object next = sources[stream].next();
+        heads[stream] = next;
+        if (next == null) {
+            return false;
+        }
+        timestamps[stream] = sources[stream].timestamp();
+        return true;
+    }
+
+    private void siftDown(int position) {
+        int stream = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && less(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!less(heap[child], stream)) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = stream;
+    }
+
+    private boolean less(int left, int right) {
+        int comparison = Long.compare(timestamps[left], timestamps[right]);
+        return comparison < 0 || (comparison == 0 && left < right);
+    }
+
+    @Override
+    public void close() {
+        for (RaceRecordSource source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                logger.warn("Couldn't close record source: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * reads the binary recordings written by {@link RaceRecordWriter} sequentially through a direct buffer.
+ */
+public class RaceRecordReader implements RaceRecordSource {
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(RaceRecordWriter.BUFFER_SIZE);
+    private final RaceRecordCodec codec = new RaceRecordCodec();
+    private boolean endOfFile = false;
+
+    public RaceRecordReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.flip();
+        if (!fill(RaceRecordCodec.HEADER_SIZE) || buffer.getInt() != RaceRecordCodec.MAGIC) {
+            channel.close();
+            throw new IOException(file + " is no binary race recording.");
+        }
+    }
+
+    @Override
+    public Object next() throws IOException {
+        Object message = null;
+        while (message == null) {
+            int size = RaceRecordCodec.recordSize(buffer);
+            if (size < 0 || buffer.remaining() < size) {
+                if (!fill(size < 0 ? RaceRecordCodec.PREFIX_SIZE + 4 : size)) {
+                    if (buffer.hasRemaining()) {
+                        throw new IOException("Truncated race record at the end of the recording.");
+                    }
+                    return null;
+                }
+                continue;
+            }
+            message = codec.decode(buffer);
+        }
+        return message;
+    }
+
+    @Override
+    public long timestamp() {
+        return codec.lastTimestamp();
+    }
+
+    /**
+     * read from the channel until at least the given number of bytes are available.
+     * @return false, if the end of the file was reached before.
+     */
+    private boolean fill(int required) throws IOException {
+        if (buffer.remaining() >= required) {
+            return true;
+        }
+        if (required > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(required);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (!endOfFile && buffer.position() < required) {
+            if (channel.read(buffer) < 0) {
+                endOfFile = true;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= required;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
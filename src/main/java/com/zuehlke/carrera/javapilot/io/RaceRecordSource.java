@@ -0,0 +1,76 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A single recorded stream of messages, ordered by their timestamps.
+ */
+public interface RaceRecordSource extends Closeable {
+
+    /**
+     * @return the next message of this stream or null, if the stream is exhausted.
+     */
+    Object next() throws IOException;
+
+    /**
+     * @return the timestamp of the message returned by the last call to {@link #next()}
+     */
+    long timestamp();
+
+    /**
+     * position the stream at the first message with a timestamp not before the given one, if the stream supports
+     * random access.
+     * @return false, if the stream doesn't support seeking and remains where it is
+     */
+    default boolean seek(long timestamp) throws IOException {
+        return false;
+    }
+
+    /**
+     * open a recorded stream. Binary recordings are recognized by their magic number, anything else is
+     * read as JSON lines, the format of recordings made prior to the binary format.
+     * @param file the recorded stream
+     * @param type the message type stored in JSON line recordings
+     * @return the source to read the messages from
+     */
+    static RaceRecordSource open(Path file, Class<?> type) throws IOException {
+        if (isBinary(file)) {
+            return new RaceRecordReader(file);
+        }
+        return new JsonLineRecordSource(file, type);
+    }
+
+    /**
+     * open a recorded stream for random access. Binary recordings are memory-mapped, JSON line recordings
+     * are read sequentially.
+     * @param file the recorded stream
+     * @param type the message type stored in JSON line recordings
+     * @return the source to read the messages from
+     */
+    static RaceRecordSource openMapped(Path file, Class<?> type) throws IOException {
+        if (isBinary(file)) {
+            return new MappedRecordSource(file);
+        }
+        return new JsonLineRecordSource(file, type);
+    }
+
+    static boolean isBinary(Path file) throws IOException {
+        byte[] header = new byte[RaceRecordCodec.HEADER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n < 0) {
+                    return false;
+                }
+                read += n;
+            }
+        }
+        return ByteBuffer.wrap(header).getInt() == RaceRecordCodec.MAGIC;
+    }
+}
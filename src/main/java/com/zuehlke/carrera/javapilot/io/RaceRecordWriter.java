@@ -0,0 +1,121 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * writes race records in the binary format of {@link RaceRecordCodec} into a single file.
+ * Records are collected in a direct buffer and only hit the file channel when the buffer is full or on close.
+ * On close, the {@link RaceRecordIndex} of the file is written next to it.
+ */
+public class RaceRecordWriter implements Closeable {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final RaceRecordCodec codec = new RaceRecordCodec();
+    private String lastTrackId;
+
+    private final RaceRecordIndex index = new RaceRecordIndex();
+    // offset of the next record in the file, and of the last track record
+    private long offset = RaceRecordCodec.HEADER_SIZE;
+    private long trackOffset = -1;
+
+    public RaceRecordWriter(Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(RaceRecordCodec.MAGIC);
+    }
+
+    public void write(SensorEvent event) throws IOException {
+        byte[] track = codec.encodeTrackIfChanged(event, lastTrackId);
+        if (track != null) {
+            lastTrackId = event.getRaceTrackId();
+            trackOffset = offset;
+            write(track);
+        }
+        ensureRemaining(RaceRecordCodec.SENSOR_RECORD_SIZE);
+        index.add(event.getTimeStamp(), offset, trackOffset);
+        codec.encodeSensorEvent(event, buffer);
+        offset += RaceRecordCodec.SENSOR_RECORD_SIZE;
+    }
+
+    public void write(PowerControl control) throws IOException {
+        ensureRemaining(RaceRecordCodec.POWER_RECORD_SIZE);
+        index.add(control.getTimeStamp(), offset, trackOffset);
+        codec.encodePowerControl(control, buffer);
+        offset += RaceRecordCodec.POWER_RECORD_SIZE;
+    }
+
+    public void write(RaceStartMessage message) throws IOException {
+        writeMessage(codec.encodeRaceStart(message));
+    }
+
+    public void write(VelocityMessage message) throws IOException {
+        writeMessage(codec.encodeVelocity(message));
+    }
+
+    public void write(TimedPenaltyMessage message) throws IOException {
+        writeMessage(codec.encodePenalty(message));
+    }
+
+    public void write(RoundTimeMessage message) throws IOException {
+        writeMessage(codec.encodeRoundTime(message));
+    }
+
+    private void writeMessage(byte[] record) throws IOException {
+        index.add(ByteBuffer.wrap(record).getLong(1), offset, trackOffset);
+        write(record);
+    }
+
+    private void write(byte[] record) throws IOException {
+        offset += record.length;
+        if (record.length > buffer.capacity()) {
+            flush();
+            channel.write(ByteBuffer.wrap(record));
+        } else {
+            ensureRemaining(record.length);
+            buffer.put(record);
+        }
+    }
+
+    private void ensureRemaining(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * write the buffered records and the index. Only the first call has an effect
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+        index.setLength(offset);
+        index.write(RaceRecordIndex.of(file));
+    }
+}
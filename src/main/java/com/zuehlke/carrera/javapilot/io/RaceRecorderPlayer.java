@@ -1,6 +1,5 @@
 package com.zuehlke.carrera.javapilot.io;
 
-import com.rabbitmq.tools.json.JSONWriter;
 import com.zuehlke.carrera.api.seralize.JacksonSerializer;
 import com.zuehlke.carrera.relayapi.messages.*;
 import org.joda.time.DateTime;
@@ -8,10 +7,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 public class RaceRecorderPlayer {
@@ -23,18 +22,20 @@ public class RaceRecorderPlayer {
     private static final String VELOCITIES="velocities";
     private static final String PENALTIES="penalties";
     private static final String POWER="power";
+    private static final String ROUNDS="rounds";
 
     private boolean recording = false;
 
     private final File dataDirectory;
-    private final Map<String, FileWriter> writers = new HashMap<>();
-    private final List<String> fileNames = Arrays.asList(START, EVENTS, VELOCITIES, PENALTIES, POWER);
+    private final Map<String, RaceRecordWriter> writers = new HashMap<>();
+    private final List<String> fileNames = Arrays.asList(START, EVENTS, VELOCITIES, PENALTIES, POWER, ROUNDS);
 
     /**
      * create a recorder to write a single race to the given directory. Create it if it doesn't exist yet.
      * @param dataDirectory the directory to create the race directory in. The race directory is named
      *                      like the current time in the format "ddHHmmss" and contains all data types in
-     *                      files named "velocities", "events", "penalties", "power", "metadata"
+     *                      files named "velocities", "events", "penalties", "power", "rounds".
+     *                      The files use the binary format of {@link RaceRecordCodec}.
      */
     public RaceRecorderPlayer(String dataDirectory) {
 
@@ -54,20 +55,20 @@ public class RaceRecorderPlayer {
         String tag = createAllFiles();
         recording = true;
 
-        tryWrite(raceStartMessage, writers.get(START));
+        tryWrite(writers.get(START), (w)->w.write(raceStartMessage));
         return tag;
     }
 
     public void record(SensorEvent event) {
-        tryWrite( event, writers.get(EVENTS));
+        tryWrite(writers.get(EVENTS), (w)->w.write(event));
     }
 
     public void record(PowerControl event) {
-        tryWrite( event, writers.get(POWER));
+        tryWrite(writers.get(POWER), (w)->w.write(event));
     }
 
     public void record(VelocityMessage event) {
-        tryWrite( event, writers.get(VELOCITIES));
+        tryWrite(writers.get(VELOCITIES), (w)->w.write(event));
     }
 
     public void record(PenaltyMessage event) {
@@ -75,8 +76,43 @@ public class RaceRecorderPlayer {
     }
 
     public void record(PenaltyMessage event, Long timestamp ) {
-        TimedPenaltyMessage timedEvent = new TimedPenaltyMessage(event, timestamp);
-        tryWrite( timedEvent, writers.get(PENALTIES));
+        record(new TimedPenaltyMessage(event, timestamp));
+    }
+
+    public void record(TimedPenaltyMessage timedEvent) {
+        tryWrite(writers.get(PENALTIES), (w)->w.write(timedEvent));
+    }
+
+    public void record(RoundTimeMessage event) {
+        tryWrite(writers.get(ROUNDS), (w)->w.write(event));
+    }
+
+    /**
+     * record a message of any of the recorded types. A RaceStopMessage closes the recording.
+     * @param message the message to record
+     * @return false, if messages of this type are not recorded
+     */
+    public boolean recordMessage(Object message) {
+        if (message instanceof SensorEvent) {
+            record((SensorEvent) message);
+        } else if (message instanceof PowerControl) {
+            record((PowerControl) message);
+        } else if (message instanceof VelocityMessage) {
+            record((VelocityMessage) message);
+        } else if (message instanceof TimedPenaltyMessage) {
+            record((TimedPenaltyMessage) message);
+        } else if (message instanceof PenaltyMessage) {
+            record((PenaltyMessage) message);
+        } else if (message instanceof RoundTimeMessage) {
+            record((RoundTimeMessage) message);
+        } else if (message instanceof RaceStartMessage) {
+            record((RaceStartMessage) message);
+        } else if (message instanceof RaceStopMessage) {
+            close();
+        } else {
+            return false;
+        }
+        return true;
     }
 
 
@@ -91,7 +127,7 @@ public class RaceRecorderPlayer {
 
         for (String fileName : fileNames) {
             try {
-                FileWriter writer = new FileWriter(new File(raceDirectory, fileName));
+                RaceRecordWriter writer = new RaceRecordWriter(new File(raceDirectory, fileName).toPath());
                 writers.put(fileName, writer);
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -100,20 +136,37 @@ public class RaceRecorderPlayer {
         return now;
     }
 
-    private void tryWrite ( Object object, FileWriter writer) {
+    private void tryWrite ( RaceRecordWriter writer, RecordWrite write ) {
         if ( ! recording ) return;
         try {
-            String json = new JSONWriter().write(object);
-            writer.write(json+System.lineSeparator());
+            write.writeTo(writer);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private interface RecordWrite {
+        void writeTo(RaceRecordWriter writer) throws IOException;
+    }
+
+    /**
+     * push all buffered records of the current race to disk
+     */
+    public void flush() {
+        if ( ! recording ) return;
+        for ( RaceRecordWriter writer : writers.values() ) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     public void close() {
 
         recording = false;
-        for ( FileWriter writer : writers.values() ) {
+        for ( RaceRecordWriter writer : writers.values() ) {
             try {
                 writer.close();
             } catch (IOException e) {
@@ -122,6 +175,21 @@ public class RaceRecorderPlayer {
         }
     }
 
+    /**
+     * @return the tags of all recorded races, i.e. the race directories with a race start message, in their order
+     */
+    public List<String> races() {
+        List<String> tags = new ArrayList<>();
+        File[] raceDirectories = dataDirectory.listFiles(file -> new File(file, START).isFile());
+        if (raceDirectories != null) {
+            for (File raceDirectory : raceDirectories) {
+                tags.add(raceDirectory.getName());
+            }
+        }
+        Collections.sort(tags);
+        return tags;
+    }
+
     /**
      * replay the race that started at the given tag
      * @param tag of the instance the race start message arrived here.
@@ -130,199 +198,166 @@ public class RaceRecorderPlayer {
     public Stream<Object> replay(String tag) {
 
         try {
-            Map<Class<?>, BufferedReader> readers = constructReaderMap(tag);
-            return Stream.generate(mergingDataSupplier(readers));
+            return Stream.generate(getSupplier(tag));
 
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private Map<Class<?>, BufferedReader> constructReaderMap(String timestamp) throws IOException {
-        Map<Class<?>, BufferedReader> readers = new HashMap<>();
-
-        Path start = dataDirectory.toPath().resolve(timestamp).resolve(START);
-        readers.put ( RaceStartMessage.class, Files.newBufferedReader(start));
-
-        Path events = dataDirectory.toPath().resolve(timestamp).resolve(EVENTS);
-        readers.put ( SensorEvent.class, Files.newBufferedReader(events));
-
-        Path power = dataDirectory.toPath().resolve(timestamp).resolve(POWER);
-        readers.put ( PowerControl.class, Files.newBufferedReader(power));
-
-        Path velocities = dataDirectory.toPath().resolve(timestamp).resolve(VELOCITIES);
-        readers.put ( VelocityMessage.class, Files.newBufferedReader(velocities));
-
-        Path penalties = dataDirectory.toPath().resolve(timestamp).resolve(PENALTIES);
-        readers.put ( TimedPenaltyMessage.class, Files.newBufferedReader(penalties));
-        return readers;
-    }
-
-    public Supplier<Object> getSupplier ( String tag ) throws IOException {
-        return mergingDataSupplier( constructReaderMap(tag));
-    }
-
     /**
-     * supplier that merges the data from the various files and produces the most recent record from any of the streams
-     * @param readers the readers to merge the data from
-     * @return a supplier to create an infinite stream from
+     * write the race recorded at the given tag as JSON lines for debugging purposes. Every stream is written
+     * into a file of the same name with the suffix ".json" next to the binary recording.
+     * @param tag of the instance the race start message arrived here.
+     * @return the directory containing the exported files
      */
-    public Supplier<Object> mergingDataSupplier(final Map<Class<?>, BufferedReader> readers ) {
-        return new Supplier<Object>() {
-
-            private Map<Class<?>, Object> nextObjects = null;
-            private JacksonSerializer serializer = new JacksonSerializer();
-
-            @Override
-            public Object get() {
-                if ( nextObjects == null ) {
-                    init ();
-                    RaceStartMessage start = (RaceStartMessage) nextObjects.get(RaceStartMessage.class);
-                    nextObjects.put(RaceStartMessage.class, null );
-                    return start;
-                }
-                return findAndReplaceNext ( nextObjects, readers );
-            }
-
-            private Object findAndReplaceNext(Map<Class<?>, Object> nextObjects, Map<Class<?>, BufferedReader> readers) throws EndOfStreamException {
-                Object nextObject = findNextObject(nextObjects);
-                if (nextObject == null) {
-                    for (Reader r : readers.values()) {
-                        try {
-                            r.close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    throw new EndOfStreamException();
+    public File exportJson(String tag) {
+        Path raceDirectory = dataDirectory.toPath().resolve(tag);
+        JacksonSerializer serializer = new JacksonSerializer();
+        try {
+            for (String stream : fileNames) {
+                if (!Files.exists(raceDirectory.resolve(stream))) {
+                    continue;
                 }
-                try {
-                    String encoded = readers.get(nextObject.getClass()).readLine();
-                    if ( encoded == null ) {
-                        nextObjects.put(nextObject.getClass(), null );
-                    } else {
-                        Object nextInRow = serializer.deserialize(encoded, nextObject.getClass());
-                        nextObjects.put(nextObject.getClass(), nextInRow);
-                    }
-                    // special case penalty message
-                    if ( nextObject instanceof TimedPenaltyMessage) {
-                        return ((TimedPenaltyMessage)nextObject).getOriginal();
+                try (RaceRecordSource source = openStream(raceDirectory, stream);
+                     BufferedWriter writer = Files.newBufferedWriter(raceDirectory.resolve(stream + ".json"),
+                             StandardCharsets.UTF_8)) {
+                    for (Object next = source.next(); next != null; next = source.next()) {
+                        writer.write(serializer.serialize(next));
+                        writer.newLine();
                     }
-                    return nextObject;
-                } catch ( IOException e ) {
-                    throw new RuntimeException( e );
                 }
             }
-
-            private void init () {
-                nextObjects = new HashMap<>();
-                readers.entrySet().stream().forEach((e)->{
-                    try {
-                        String nextLine = e.getValue().readLine();
-                        if ( nextLine == null ) {
-                            nextObjects.put(e.getKey(), null );
-                        } else {
-                            nextObjects.put(e.getKey(), serializer.deserialize(nextLine, e.getKey()));
-                        }
-                    } catch (IOException e1) {
-                        throw new RuntimeException(e1);
-                    }
-                });
-            }
-        };
-
-    }
-
-    public static Object findNextObject ( Map<Class<?>, Object> objects ) throws EndOfStreamException {
-        List<ObjectWithTimestamp<?>> allObjectsWithTimestamps = new ArrayList<>();
-        for (Map.Entry<Class<?>, Object> entry : objects.entrySet() ) {
-            if ( entry.getValue() == null ) continue;
-
-            if ( entry.getKey() == SensorEvent.class ) {
-                allObjectsWithTimestamps.add(new SensorWT(entry.getValue()));
-            } else if ( entry.getKey() == PowerControl.class ) {
-                allObjectsWithTimestamps.add(new PowerWT(entry.getValue()));
-            } else if ( entry.getKey() == VelocityMessage.class ) {
-                allObjectsWithTimestamps.add(new VelocityWT(entry.getValue()));
-            } else if ( entry.getKey() == TimedPenaltyMessage.class ) {
-                allObjectsWithTimestamps.add(new PenaltyWT(entry.getValue()));
-            } else if ( entry.getKey() == RaceStartMessage.class ) {
-                allObjectsWithTimestamps.add(new StartWT(entry.getValue()));
-            }
-        }
-        allObjectsWithTimestamps.sort((l,r)->(int)(l.timestamp()-r.timestamp()));
-        if ( allObjectsWithTimestamps.size() == 0 ) {
-            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        return allObjectsWithTimestamps.get(0).object;
+        return raceDirectory.toFile();
     }
 
+    private static RaceRecordSource openStream(Path raceDirectory, String stream) throws IOException {
+        return RaceRecordSource.open(raceDirectory.resolve(stream), streamType(stream));
+    }
 
-    private static abstract class ObjectWithTimestamp<T> {
-        T object;
-        abstract Long timestamp();
+    private static RaceRecordSource openMappedStream(Path raceDirectory, String stream) throws IOException {
+        return RaceRecordSource.openMapped(raceDirectory.resolve(stream), streamType(stream));
+    }
 
-        public ObjectWithTimestamp(Object object) {
-            this.object = (T) object;
+    private static Class<?> streamType(String stream) {
+        switch (stream) {
+            case START: return RaceStartMessage.class;
+            case EVENTS: return SensorEvent.class;
+            case POWER: return PowerControl.class;
+            case VELOCITIES: return VelocityMessage.class;
+            case PENALTIES: return TimedPenaltyMessage.class;
+            case ROUNDS: return RoundTimeMessage.class;
+            default: throw new IllegalArgumentException("Unknown stream " + stream);
         }
     }
 
-    private static class StartWT extends ObjectWithTimestamp<RaceStartMessage> {
-        @Override
-        Long timestamp() {
-            return object.getTimestamp();
+    /**
+     * open all streams of a recorded race except for the start message. Recordings made before round times
+     * were recorded simply lack that stream.
+     */
+    private List<RaceRecordSource> openDataStreams(String tag, boolean mapped) throws IOException {
+        Path raceDirectory = dataDirectory.toPath().resolve(tag);
+        List<RaceRecordSource> sources = new ArrayList<>();
+        for (String stream : fileNames) {
+            if (!stream.equals(START) && Files.exists(raceDirectory.resolve(stream))) {
+                sources.add(mapped ? openMappedStream(raceDirectory, stream) : openStream(raceDirectory, stream));
+            }
         }
+        return sources;
+    }
 
-        public StartWT(Object object) {
-            super(object);
+    private RaceStartMessage readStart(String tag) throws IOException {
+        try (RaceRecordSource start = openStream(dataDirectory.toPath().resolve(tag), START)) {
+            return (RaceStartMessage) start.next();
         }
+    }
 
+    /**
+     * @param tag of the instance the race start message arrived here.
+     * @return the replay of the race, that produces the race start message first, then merges all other
+     * recorded streams by timestamp.
+     */
+    public RaceReplay getSupplier ( String tag ) throws IOException {
+        return new RaceReplay(readStart(tag), new RaceRecordMerger(openDataStreams(tag, false)));
     }
 
-    private static class SensorWT extends ObjectWithTimestamp<SensorEvent> {
-        public SensorWT(Object object) {
-            super(object);
+    /**
+     * @param tag of the instance the race start message arrived here.
+     * @param window the part of the race to replay
+     * @return the replay of the race start message followed by all recorded messages within the window.
+     * The recordings are memory-mapped, so that the replay starts right at the beginning of the window.
+     */
+    public RaceReplay getSupplier ( String tag, ReplayWindow window ) throws IOException {
+        if ( window.isCompleteRace() ) {
+            return getSupplier(tag);
         }
-        Long timestamp () {
-            return object.getTimeStamp();
+        long[] range = timeRange(tag, window);
+        List<RaceRecordSource> sources = new ArrayList<>();
+        for (RaceRecordSource source : openDataStreams(tag, true)) {
+            sources.add(new WindowedRecordSource(source, range[0], range[1]));
         }
+        return new RaceReplay(readStart(tag), new RaceRecordMerger(sources));
     }
 
-    private static class PowerWT extends ObjectWithTimestamp<PowerControl> {
-        Long timestamp() {
-            return object.getTimeStamp();
+    /**
+     * @return the first and the last recorded timestamp of the given window. The window of a race without any
+     * recorded messages is empty
+     */
+    private long[] timeRange(String tag, ReplayWindow window) throws IOException {
+        long origin = Long.MAX_VALUE;
+        for (RaceRecordSource source : openDataStreams(tag, true)) {
+            try (RaceRecordSource s = source) {
+                if (s.next() != null) {
+                    origin = Math.min(origin, s.timestamp());
+                }
+            }
         }
-
-        public PowerWT(Object object) {
-            super(object);
+        if ( !window.isLaps() ) {
+            return new long[]{plus(origin, window.getFrom()), plus(origin, window.getTo())};
         }
 
-    }
-
-    private static class VelocityWT extends ObjectWithTimestamp<VelocityMessage> {
-        @Override
-        Long timestamp() {
-            return object.getTimeStamp();
+        Path raceDirectory = dataDirectory.toPath().resolve(tag);
+        if ( !Files.exists(raceDirectory.resolve(ROUNDS)) ) {
+            throw new IllegalStateException("No round times recorded for race " + tag);
         }
-
-        public VelocityWT(Object object) {
-            super(object);
+        try (RaceRecordSource source = openMappedStream(raceDirectory, ROUNDS)) {
+            int fromLap = (int) window.getFrom();
+            long from = fromLap == 1 ? origin : roundPassed(raceDirectory, source, fromLap - 2);
+            if ( from == Long.MIN_VALUE ) {
+                throw new IllegalArgumentException("Race " + tag + " has fewer than " + fromLap + " laps.");
+            }
+            long to = roundPassed(raceDirectory, source, window.getTo() - 1);
+            return new long[]{from, to == Long.MIN_VALUE ? Long.MAX_VALUE : to};
         }
-
     }
 
-    private static class PenaltyWT extends ObjectWithTimestamp<TimedPenaltyMessage> {
-        @Override
-        Long timestamp() {
-            return object.getTimestamp();
+    /**
+     * @return the timestamp of the n-th recorded round time, counted from 0, or Long.MIN_VALUE if there are
+     * fewer rounds
+     */
+    private static long roundPassed(Path raceDirectory, RaceRecordSource rounds, long n) throws IOException {
+        if ( n > Integer.MAX_VALUE ) {
+            return Long.MIN_VALUE;
         }
-
-        public PenaltyWT(Object object) {
-            super(object);
+        if ( rounds instanceof MappedRecordSource ) {
+            ((MappedRecordSource) rounds).seekRecord((int) n);
+            return rounds.next() == null ? Long.MIN_VALUE : rounds.timestamp();
         }
-
+        // JSON line recordings can only be read from the beginning
+        try (RaceRecordSource source = openStream(raceDirectory, ROUNDS)) {
+            for (long i = 0; source.next() != null; i++) {
+                if ( i == n ) {
+                    return source.timestamp();
+                }
+            }
+        }
+        return Long.MIN_VALUE;
     }
 
-
-
+    private static long plus(long timestamp, long millis) {
+        return millis > Long.MAX_VALUE - timestamp ? Long.MAX_VALUE : timestamp + millis;
+    }
 }
@@ -0,0 +1,70 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+
+import java.util.function.Supplier;
+
+/**
+ * A recorded race in the order it happened: the race start message first, then all other recorded messages
+ * ordered by their timestamps. Penalties are handed out as the original PenaltyMessages.
+ */
+public class RaceReplay implements Supplier<Object> {
+
+    private final RaceStartMessage start;
+    private final RaceRecordMerger merger;
+    private boolean started = false;
+
+    public RaceReplay(RaceStartMessage start, RaceRecordMerger merger) {
+        this.start = start;
+        this.merger = merger;
+    }
+
+    /**
+     * @return the next message of the race
+     * @throws EndOfStreamException at the end of the race
+     */
+    @Override
+    public Object get() throws EndOfStreamException {
+        if ( !started ) {
+            started = true;
+            if ( start != null ) {
+                return start;
+            }
+        }
+        Object next = merger.get();
+        // special case penalty message
+        if ( next instanceof TimedPenaltyMessage) {
+            return ((TimedPenaltyMessage)next).getOriginal();
+        }
+        return next;
+    }
+
+    /**
+     * @return true, if there are more messages to come
+     */
+    public boolean hasNext() {
+        return !started || merger.hasNext();
+    }
+
+    /**
+     * @return true, if the next message is the race start message, which has no place in the recorded time line
+     */
+    public boolean isAtStart() {
+        return !started && start != null;
+    }
+
+    /**
+     * @return the recorded timestamp of the next message after the race start
+     * @throws EndOfStreamException at the end of the race
+     */
+    public long peekTimestamp() throws EndOfStreamException {
+        return merger.peekTimestamp();
+    }
+
+    /**
+     * stop replaying and release the recording
+     */
+    public void close() {
+        merger.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps the recorded time line onto the wall clock at a given speed. The first timestamp asked for is due
+ * immediately and anchors the time line, so that scheduling jitter never accumulates.
+ */
+public class ReplayClock {
+
+    private final double speed;
+    private boolean anchored = false;
+    private long recordedOrigin;
+    private long wallOrigin;
+
+    /**
+     * @param speed the factor to speed up the recorded pace with. Infinity for "as fast as possible"
+     */
+    public ReplayClock(double speed) {
+        this.speed = speed;
+    }
+
+    public boolean isMaxSpeed() {
+        return Double.isInfinite(speed);
+    }
+
+    /**
+     * @param recordedTimestamp the recorded timestamp of a message in ms
+     * @return the number of ms to wait until the message is due. Zero or less, if it's due already.
+     */
+    public long delayOf(long recordedTimestamp) {
+        long now = System.nanoTime();
+        if (!anchored) {
+            anchored = true;
+            recordedOrigin = recordedTimestamp;
+            wallOrigin = now;
+        }
+        if (isMaxSpeed()) {
+            return 0;
+        }
+        long dueNanos = (long) (TimeUnit.MILLISECONDS.toNanos(recordedTimestamp - recordedOrigin) / speed);
+        return TimeUnit.NANOSECONDS.toMillis(dueNanos - (now - wallOrigin));
+    }
+}
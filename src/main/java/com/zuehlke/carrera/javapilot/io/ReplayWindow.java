@@ -0,0 +1,58 @@
+package com.zuehlke.carrera.javapilot.io;
+
+/**
+ * The part of a recorded race to replay, given either in ms since the first recorded message or as a range
+ * of laps. Laps are counted from 1 and end with the recorded RoundTimeMessages.
+ */
+public class ReplayWindow {
+
+    public static final ReplayWindow COMPLETE_RACE = new ReplayWindow(false, 0, Long.MAX_VALUE);
+
+    private final boolean laps;
+    private final long from;
+    private final long to;
+
+    private ReplayWindow(boolean laps, long from, long to) {
+        if ( from > to ) {
+            throw new IllegalArgumentException("Empty replay window: " + from + " > " + to);
+        }
+        this.laps = laps;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @param fromMillis the beginning of the window in ms since the first recorded message
+     * @param toMillis the end of the window in ms since the first recorded message
+     */
+    public static ReplayWindow ofTime(long fromMillis, long toMillis) {
+        return new ReplayWindow(false, fromMillis, toMillis);
+    }
+
+    /**
+     * @param fromLap the first lap to replay, starting with 1
+     * @param toLap the last lap to replay
+     */
+    public static ReplayWindow ofLaps(int fromLap, int toLap) {
+        if ( fromLap < 1 ) {
+            throw new IllegalArgumentException("Laps are counted from 1, but got " + fromLap);
+        }
+        return new ReplayWindow(true, fromLap, toLap);
+    }
+
+    public boolean isCompleteRace() {
+        return this == COMPLETE_RACE;
+    }
+
+    public boolean isLaps() {
+        return laps;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+}
@@ -2,13 +2,52 @@ package com.zuehlke.carrera.javapilot.io;
 
 public class StartReplayCommand {
 
+    /** replay with the recorded pace */
+    public static final double REAL_TIME = 1.0;
+
+    /** replay as fast as possible, disregarding the recorded pace */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
     private final String tag;
+    private final double speed;
+    private final ReplayWindow window;
 
     public StartReplayCommand(String tag) {
+        this(tag, REAL_TIME);
+    }
+
+    public StartReplayCommand(String tag, double speed) {
+        this(tag, speed, ReplayWindow.COMPLETE_RACE);
+    }
+
+    /**
+     * @param tag the tag of the recorded race
+     * @param speed the factor to speed up the recorded pace with, e.g. 10 for ten times as fast
+     *              as the race was recorded, or {@link #MAX_SPEED}
+     * @param window the part of the race to replay
+     */
+    public StartReplayCommand(String tag, double speed, ReplayWindow window) {
+        if ( speed <= 0 ) {
+            throw new IllegalArgumentException("Replay speed must be positive, but was " + speed);
+        }
         this.tag = tag;
+        this.speed = speed;
+        this.window = window;
     }
 
     public String getTag() {
         return tag;
     }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public ReplayWindow getWindow() {
+        return window;
+    }
+
+    public boolean isMaxSpeed() {
+        return Double.isInfinite(speed);
+    }
 }
@@ -0,0 +1,48 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import java.io.IOException;
+
+/**
+ * restricts a recorded stream to the messages within a time window. Streams supporting random access seek
+ * to the beginning of the window right away, all others skip the messages before it.
+ */
+public class WindowedRecordSource implements RaceRecordSource {
+
+    private final RaceRecordSource source;
+    private final long from;
+    private final long to;
+
+    /**
+     * @param source the stream to restrict
+     * @param from the first timestamp of the window
+     * @param to the last timestamp of the window
+     */
+    public WindowedRecordSource(RaceRecordSource source, long from, long to) throws IOException {
+        this.source = source;
+        this.from = from;
+        this.to = to;
+        source.seek(from);
+    }
+
+    @Override
+    public Object next() throws IOException {
+        Object next = source.next();
+        while (next != null && source.timestamp() < from) {
+            next = source.next();
+        }
+        if (next == null || source.timestamp() > to) {
+            return null;
+        }
+        return next;
+    }
+
+    @Override
+    public long timestamp() {
+        return source.timestamp();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
@@ -0,0 +1,164 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.javapilot.config.RecorderProperties;
+import com.zuehlke.carrera.javapilot.metrics.RecorderCounters;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.RaceStopMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples recording from disk I/O: messages are put into a bounded ring buffer and a dedicated writer
+ * thread hands them to the {@link RaceRecorderPlayer} in batches of up to flushSize messages, flushing
+ * the recording to disk at least every flushInterval milliseconds. Messages that don't make it into the
+ * recording are counted as dropped, here and in the {@link RecorderCounters}.
+ */
+public class WriteBehindRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindRecorder.class);
+
+    private static final Object SHUTDOWN = new Object();
+
+    private final RaceRecorderPlayer recorder;
+    private final BlockingQueue<Object> queue;
+    private final int flushSize;
+    private final long flushInterval;
+    private final RecorderProperties.OverflowPolicy overflowPolicy;
+    private final Thread writer;
+    private final RecorderCounters counters;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public WriteBehindRecorder(RaceRecorderPlayer recorder, RecorderProperties properties,
+                               RecorderCounters counters) {
+        this.recorder = recorder;
+        this.counters = counters;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueSize());
+        this.flushSize = properties.getFlushSize();
+        this.flushInterval = properties.getFlushInterval();
+        this.overflowPolicy = properties.getOverflowPolicy();
+        this.writer = new Thread(this::writeLoop, "race-recorder");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * enqueue a message for recording. Race start and stop messages are never dropped, since they open and
+     * close the recording.
+     * @param message any of the messages accepted by {@link RaceRecorderPlayer#recordMessage(Object)}
+     */
+    public void record(Object message) {
+        if (overflowPolicy == RecorderProperties.OverflowPolicy.BLOCK
+                || message instanceof RaceStartMessage || message instanceof RaceStopMessage) {
+            try {
+                queue.put(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drop();
+            }
+        } else if (!queue.offer(message)) {
+            drop();
+        }
+    }
+
+    /**
+     * @return the number of messages written to the recording so far
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    /**
+     * @return the number of messages discarded because the queue was full or writing them failed
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * write all pending messages, close the recording and stop the writer thread. Only the first call has
+     * an effect
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            queue.put(SHUTDOWN);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>(flushSize);
+        long lastFlush = System.currentTimeMillis();
+        boolean running = true;
+        while (running) {
+            try {
+                Object first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, flushSize - 1);
+                }
+                for (Object message : batch) {
+                    if (message == SHUTDOWN) {
+                        running = false;
+                        break;
+                    }
+                    write(message);
+                }
+                batch.clear();
+
+                long now = System.currentTimeMillis();
+                if (!running || now - lastFlush >= flushInterval) {
+                    recorder.flush();
+                    lastFlush = now;
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                logger.error("Failed to flush race recording", e);
+            }
+        }
+        recorder.close();
+        if (dropped.get() > 0) {
+            logger.warn("Race recorder dropped {} of {} messages", dropped.get(), dropped.get() + recorded.get());
+        }
+    }
+
+    /**
+     * write a single message. A failure costs this message only, not the rest of the batch
+     */
+    private void write(Object message) {
+        if (message instanceof RaceStopMessage && dropped.get() > 0) {
+            logger.warn("Race recorder dropped {} messages so far", dropped.get());
+        }
+        try {
+            if (recorder.recordMessage(message)) {
+                recorded.incrementAndGet();
+                counters.recorded();
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to record {}", message.getClass().getSimpleName(), e);
+            dropped.incrementAndGet();
+            counters.failed();
+        }
+    }
+
+    private void drop() {
+        dropped.incrementAndGet();
+        counters.dropped();
+    }
+}
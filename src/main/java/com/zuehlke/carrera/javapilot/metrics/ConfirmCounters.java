@@ -0,0 +1,54 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what became of the power controls published with publisher confirms: published to the broker, confirmed
+ * (ack) or refused (nack) by it, or superseded by a later power control before the broker took them.
+ */
+public final class ConfirmCounters {
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+
+    public void published() {
+        published.increment();
+    }
+
+    public void confirmed(int count) {
+        confirmed.add(count);
+    }
+
+    public void nacked(int count) {
+        nacked.add(count);
+    }
+
+    public void superseded(int count) {
+        superseded.add(count);
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getConfirmed() {
+        return confirmed.sum();
+    }
+
+    public long getNacked() {
+        return nacked.sum();
+    }
+
+    public long getSuperseded() {
+        return superseded.sum();
+    }
+
+    public void reset() {
+        published.reset();
+        confirmed.reset();
+        nacked.reset();
+        superseded.reset();
+    }
+}
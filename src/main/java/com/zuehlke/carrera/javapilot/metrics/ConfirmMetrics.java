@@ -0,0 +1,35 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import com.zuehlke.carrera.javapilot.services.PilotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Publishes the {@link ConfirmCounters} on the actuator's /metrics endpoint, e.g. pilot.confirms.superseded
+ */
+@Component
+public class ConfirmMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "pilot.confirms.";
+
+    private final ConfirmCounters counters;
+
+    @Autowired
+    public ConfirmMetrics(PilotService pilotService) {
+        this.counters = pilotService.getConfirmCounters();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>(PREFIX + "published", counters.getPublished()),
+                new Metric<>(PREFIX + "confirmed", counters.getConfirmed()),
+                new Metric<>(PREFIX + "nacked", counters.getNacked()),
+                new Metric<>(PREFIX + "superseded", counters.getSuperseded()));
+    }
+}
@@ -0,0 +1,55 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what became of the power values the strategy decided on: sent to the relay, suppressed since they didn't
+ * change the power, or deferred by the rate limit. Refreshes are unchanged values sent again and count as sent.
+ */
+public final class EgressCounters {
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder refreshed = new LongAdder();
+
+    public void sent() {
+        sent.increment();
+    }
+
+    public void suppressed() {
+        suppressed.increment();
+    }
+
+    public void deferred() {
+        deferred.increment();
+    }
+
+    public void refreshed() {
+        refreshed.increment();
+        sent.increment();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getSuppressed() {
+        return suppressed.sum();
+    }
+
+    public long getDeferred() {
+        return deferred.sum();
+    }
+
+    public long getRefreshed() {
+        return refreshed.sum();
+    }
+
+    public void reset() {
+        sent.reset();
+        suppressed.reset();
+        deferred.reset();
+        refreshed.reset();
+    }
+}
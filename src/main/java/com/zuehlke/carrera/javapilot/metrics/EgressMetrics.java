@@ -0,0 +1,35 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import com.zuehlke.carrera.javapilot.services.PilotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Publishes the {@link EgressCounters} on the actuator's /metrics endpoint, e.g. pilot.egress.suppressed
+ */
+@Component
+public class EgressMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "pilot.egress.";
+
+    private final EgressCounters counters;
+
+    @Autowired
+    public EgressMetrics(PilotService pilotService) {
+        this.counters = pilotService.getEgressCounters();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>(PREFIX + "sent", counters.getSent()),
+                new Metric<>(PREFIX + "suppressed", counters.getSuppressed()),
+                new Metric<>(PREFIX + "deferred", counters.getDeferred()),
+                new Metric<>(PREFIX + "refreshed", counters.getRefreshed()));
+    }
+}
@@ -0,0 +1,45 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import com.zuehlke.carrera.javapilot.services.PilotService;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Publishes the sensor-to-power latencies of the pilot's {@link LatencyTracker} on the actuator's /metrics
+ * endpoint, e.g. pilot.latency.egress.p99 in microseconds. Simulated races and evaluations aren't tracked.
+ */
+@Component
+public class LatencyMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "pilot.latency.";
+
+    private final LatencyTracker latency;
+
+    @Autowired
+    public LatencyMetrics(PilotService pilotService) {
+        this.latency = pilotService.getLatencyTracker();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (LatencyTracker.Stage stage : LatencyTracker.Stage.values()) {
+            Histogram histogram = latency.histogram(stage);
+            String name = PREFIX + stage.name().toLowerCase(Locale.ENGLISH);
+            metrics.add(new Metric<>(name + ".count", histogram.getTotalCount()));
+            metrics.add(new Metric<>(name + ".p50", histogram.getValueAtPercentile(50.0)));
+            metrics.add(new Metric<>(name + ".p99", histogram.getValueAtPercentile(99.0)));
+            metrics.add(new Metric<>(name + ".p999", histogram.getValueAtPercentile(99.9)));
+            metrics.add(new Metric<>(name + ".max", histogram.getMaxValue()));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,116 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Measures how long a SensorEvent takes from its arrival at the pilot (ingress) to each later stage of the
+ * decision path, up to the moment the resulting power control is sent to the relay (egress).
+ * Ingress times are kept in a ring indexed by the event's timestamp, so the stages only need the timestamp to
+ * find them. Each slot holds an immutable pair of timestamp and ingress time, so a stage on another thread
+ * never sees the timestamp of one event with the ingress time of another. Latencies are recorded in
+ * microseconds into HdrHistogram recorders, which are wait-free for the recording threads. Samples whose
+ * ingress time has already been overwritten in the ring are dropped.
+ * Every pilot has a tracker of its own. Pilots that aren't driven in real time, like those of simulated races
+ * and evaluations, use {@link #DISABLED}, which records nothing.
+ */
+public final class LatencyTracker {
+
+    public enum Stage {
+        /** JavaPilotActor received the SensorEvent */
+        PILOT,
+        /** the strategy received the SensorEvent */
+        STRATEGY,
+        /** JavaPilotActor received the strategy's PowerAction */
+        POWER_ACTION,
+        /** the PowerControl has been handed to the relay connection */
+        EGRESS
+    }
+
+    /** the number of events in flight a pilot's tracker can follow */
+    public static final int CAPACITY = 1024;
+
+    public static final LatencyTracker DISABLED = new LatencyTracker(1, false);
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private static final class Ingress {
+        private final long sensorTimestamp;
+        private final long nanos;
+
+        Ingress(long sensorTimestamp, long nanos) {
+            this.sensorTimestamp = sensorTimestamp;
+            this.nanos = nanos;
+        }
+    }
+
+    private final boolean enabled;
+    private final int mask;
+    private final AtomicReferenceArray<Ingress> ingress;
+
+    private final Recorder[] recorders = new Recorder[Stage.values().length];
+    private final Histogram[] totals = new Histogram[Stage.values().length];
+
+    /**
+     * @param capacity the number of events in flight that can be tracked, rounded up to a power of two
+     */
+    public LatencyTracker(int capacity) {
+        this(capacity, true);
+    }
+
+    private LatencyTracker(int capacity, boolean enabled) {
+        this.enabled = enabled;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        mask = size - 1;
+        ingress = new AtomicReferenceArray<>(size);
+        for (Stage stage : Stage.values()) {
+            recorders[stage.ordinal()] = new Recorder(3);
+            totals[stage.ordinal()] = new Histogram(3);
+        }
+    }
+
+    /**
+     * @param sensorTimestamp the timestamp of the SensorEvent that just arrived
+     */
+    public void ingress(long sensorTimestamp) {
+        if (enabled) {
+            ingress.lazySet((int) sensorTimestamp & mask, new Ingress(sensorTimestamp, System.nanoTime()));
+        }
+    }
+
+    /**
+     * @param sensorTimestamp the timestamp of the SensorEvent that reached the stage, or triggered it
+     */
+    public void record(Stage stage, long sensorTimestamp) {
+        if (!enabled) {
+            return;
+        }
+        Ingress slot = ingress.get((int) sensorTimestamp & mask);
+        if (slot == null || slot.sensorTimestamp != sensorTimestamp) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - slot.nanos);
+        if (micros >= 0 && micros <= MAX_LATENCY_MICROS) {
+            recorders[stage.ordinal()].recordValue(micros);
+        }
+    }
+
+    /**
+     * @return all latencies from ingress to the stage recorded so far, in microseconds
+     */
+    public synchronized Histogram histogram(Stage stage) {
+        Histogram total = totals[stage.ordinal()];
+        total.add(recorders[stage.ordinal()].getIntervalHistogram());
+        return total.copy();
+    }
+
+    public synchronized void reset() {
+        for (Stage stage : Stage.values()) {
+            recorders[stage.ordinal()].reset();
+            totals[stage.ordinal()].reset();
+        }
+    }
+}
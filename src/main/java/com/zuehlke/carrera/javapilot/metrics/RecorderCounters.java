@@ -0,0 +1,45 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what became of the messages handed to the write-behind recorder: written to the recording, or dropped
+ * since the queue was full or writing them failed. A dropped message leaves a gap in the recording.
+ */
+public final class RecorderCounters {
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public void recorded() {
+        recorded.increment();
+    }
+
+    public void dropped() {
+        dropped.increment();
+    }
+
+    public void failed() {
+        failed.increment();
+        dropped.increment();
+    }
+
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public void reset() {
+        recorded.reset();
+        dropped.reset();
+        failed.reset();
+    }
+}
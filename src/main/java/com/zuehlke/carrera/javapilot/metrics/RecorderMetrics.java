@@ -0,0 +1,34 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import com.zuehlke.carrera.javapilot.services.PilotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Publishes the {@link RecorderCounters} on the actuator's /metrics endpoint, e.g. pilot.recorder.dropped
+ */
+@Component
+public class RecorderMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "pilot.recorder.";
+
+    private final RecorderCounters counters;
+
+    @Autowired
+    public RecorderMetrics(PilotService pilotService) {
+        this.counters = pilotService.getRecorderCounters();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>(PREFIX + "recorded", counters.getRecorded()),
+                new Metric<>(PREFIX + "dropped", counters.getDropped()),
+                new Metric<>(PREFIX + "failed", counters.getFailed()));
+    }
+}
@@ -1,12 +1,18 @@
 package com.zuehlke.carrera.javapilot.rest;
 
+import com.zuehlke.carrera.javapilot.evaluation.RaceEvaluation;
+import com.zuehlke.carrera.javapilot.io.ReplayWindow;
+import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
 import com.zuehlke.carrera.javapilot.services.PilotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/")
     public class RestApiController {
@@ -14,12 +20,61 @@ import org.springframework.web.bind.annotation.RestController;
     @Autowired
     public PilotService service;
 
+    /**
+     * replay a recorded race
+     * @param tag the tag of the race, i.e. the name of its directory in the data directory
+     * @param speed the factor to speed up the recorded pace with (e.g. 1, 10), or "max" for as fast as possible
+     */
     @RequestMapping(value="/replay/{tag}", method = RequestMethod.GET,  produces = "application/json")
-    public String replay (@PathVariable String tag )  {
+    public String replay (@PathVariable String tag, @RequestParam(value="speed", defaultValue="1") String speed )  {
+
+        service.replay ( tag, parseSpeed(speed) );
+        return "ok";
+    }
+
+    /**
+     * replay a part of a recorded race, given either in ms since the beginning of the recording or as laps
+     * @param tag the tag of the race, i.e. the name of its directory in the data directory
+     * @param from the beginning of the window in ms
+     * @param to the end of the window in ms
+     * @param fromLap the first lap to replay, starting with 1. Takes precedence over from and to
+     * @param toLap the last lap to replay. Defaults to fromLap
+     * @param speed the factor to speed up the recorded pace with (e.g. 1, 10), or "max" for as fast as possible
+     */
+    @RequestMapping(value="/replay/{tag}/window", method = RequestMethod.GET,  produces = "application/json")
+    public String replayWindow (@PathVariable String tag,
+                                @RequestParam(value="from", defaultValue="0") long from,
+                                @RequestParam(value="to", required = false) Long to,
+                                @RequestParam(value="fromLap", required = false) Integer fromLap,
+                                @RequestParam(value="toLap", required = false) Integer toLap,
+                                @RequestParam(value="speed", defaultValue="1") String speed )  {
 
-        service.replay ( tag );
+        ReplayWindow window;
+        if ( fromLap != null ) {
+            window = ReplayWindow.ofLaps(fromLap, toLap == null ? fromLap : toLap);
+        } else {
+            window = ReplayWindow.ofTime(from, to == null ? Long.MAX_VALUE : to);
+        }
+        service.replay ( tag, parseSpeed(speed), window );
         return "ok";
     }
 
+    /**
+     * run the pilot's strategy against all recorded races, without the simulator
+     * @param parallelism the number of races evaluated at the same time, default: all cores
+     */
+    @RequestMapping(value="/evaluate", method = RequestMethod.GET,  produces = "application/json")
+    public List<RaceEvaluation> evaluate (@RequestParam(value="parallelism", defaultValue="0") int parallelism )  {
+
+        return service.evaluate ( parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors() );
+    }
+
+    private double parseSpeed(String speed) {
+        if ( "max".equalsIgnoreCase(speed)) {
+            return StartReplayCommand.MAX_SPEED;
+        }
+        return Double.parseDouble(speed);
+    }
+
 
 }
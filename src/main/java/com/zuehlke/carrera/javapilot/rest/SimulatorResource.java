@@ -1,12 +1,23 @@
 package com.zuehlke.carrera.javapilot.rest;
 
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import com.zuehlke.carrera.javapilot.evaluation.ParameterSweep;
+import com.zuehlke.carrera.javapilot.evaluation.RaceResult;
+import com.zuehlke.carrera.javapilot.evaluation.SimulatorFarm;
 import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
 import com.zuehlke.carrera.relayapi.messages.RaceStopMessage;
-import com.zuehlke.carrera.simulator.model.racetrack.TrackInfo;
 import com.zuehlke.carrera.javapilot.services.SimulatorService;
+import com.zuehlke.carrera.javapilot.services.TrackInfoCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 
 @RestController
 @RequestMapping("/api/simulator")
@@ -15,9 +26,16 @@ public class SimulatorResource {
     @Autowired
     private SimulatorService simulatorService;
 
+    @Autowired
+    private PilotProperties pilotProperties;
+
+    /**
+     * @param ifNoneMatch the ETag of the track the browser has already, if any
+     * @return the current track, or 304 if the browser has it already
+     */
     @RequestMapping(value="/track", method = RequestMethod.GET,  produces = "application/json")
-    public TrackInfo getTrack() {
-        return simulatorService.getTrackInfo();
+    public ResponseEntity<byte[]> getTrack(@RequestHeader(value="If-None-Match", required = false) String ifNoneMatch) {
+        return respond(simulatorService.getTrack(), ifNoneMatch);
     }
 
     @RequestMapping(value="/startRace", method = RequestMethod.POST)
@@ -55,8 +73,56 @@ public class SimulatorResource {
         simulatorService.powerdown(delta);
     }
 
+    /**
+     * drive races with the strategy's tunables spread around the configured values, each against a simulator
+     * of its own. The simulators run in real time, there is no virtual clock: every race takes its full duration
+     * on the wall clock, and the sweep is only faster than one race after the other by running parallelism races
+     * at a time.
+     * @param mode "grid" for all combinations of the values, "random" for random values in their range
+     * @param spread the relative distance of the outermost values, e.g. 0.1 for +/-10%
+     * @param steps the number of values per tunable of a grid
+     * @param samples the number of random parameter sets
+     * @param duration ms per race
+     * @param parallelism the number of races at the same time, default: all cores
+     * @return the results, best first
+     */
+    @RequestMapping(value="/sweep", method = RequestMethod.POST, produces = "application/json")
+    public List<RaceResult> sweep(@RequestParam(value="mode", defaultValue="random") String mode,
+                                  @RequestParam(value="spread", defaultValue="0.1") double spread,
+                                  @RequestParam(value="steps", defaultValue="3") int steps,
+                                  @RequestParam(value="samples", defaultValue="16") int samples,
+                                  @RequestParam(value="duration", defaultValue="180000") long duration,
+                                  @RequestParam(value="parallelism", defaultValue="0") int parallelism) {
+        StrategyProperties base = pilotProperties.getStrategy();
+        Map<ParameterSweep.Tunable, double[]> values = ParameterSweep.around(base, spread, steps);
+        List<StrategyProperties> candidates = "grid".equalsIgnoreCase(mode)
+                ? ParameterSweep.grid(base, values)
+                : ParameterSweep.random(base, values, samples, System.currentTimeMillis());
+        return simulatorService.sweep(candidates, duration,
+                parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * drive a race on every lane at the same time, each against a simulator of its own
+     * @param lanes the track design and the strategy parameters of every lane
+     * @param duration ms per race
+     * @return the results in the order of the lanes
+     */
+    @RequestMapping(value="/farm", method = RequestMethod.POST, produces = "application/json")
+    public List<RaceResult> farm(@RequestBody List<SimulatorFarm.Lane> lanes,
+                                 @RequestParam(value="duration", defaultValue="180000") long duration) {
+        return simulatorService.race(lanes, duration);
+    }
+
     @RequestMapping(value="/selectDesign", method = RequestMethod.POST, produces = "application/json")
-    public TrackInfo selectDesign(@RequestBody String trackDesign ) {
-        return simulatorService.selectDesign ( trackDesign );
+    public ResponseEntity<byte[]> selectDesign(@RequestBody String trackDesign ) {
+        return respond(simulatorService.selectDesign ( trackDesign ), null);
+    }
+
+    private ResponseEntity<byte[]> respond(TrackInfoCache.Track track, String ifNoneMatch) {
+        if ( track.matches(ifNoneMatch) ) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(track.getEtag()).build();
+        }
+        return ResponseEntity.ok().eTag(track.getEtag()).contentType(MediaType.APPLICATION_JSON).body(track.getJson());
     }
 }
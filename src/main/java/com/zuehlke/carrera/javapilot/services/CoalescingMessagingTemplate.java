@@ -0,0 +1,129 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the simulator's news and clock ticks to the browsers at a fixed frame rate instead of once per tick.
+ * Only the latest payload or message of every destination is kept until the next frame, which hands it to the
+ * broker for all subscribers. Payloads passed to convertAndSend are converted only then, once per frame.
+ * Frames are sent from a dedicated thread.
+ * <p>
+ * Latest-only means that of several messages sent to the same destination within a frame, all but the last
+ * are dropped. That suits state that is sent over and over, like positions and clock ticks, but also drops
+ * one-off events, e.g. a race start directly followed by the first position on the same destination. Send
+ * those through the template this one wraps.
+ */
+public class CoalescingMessagingTemplate extends SimpMessagingTemplate implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingMessagingTemplate.class);
+
+    private final SimpMessagingTemplate delegate;
+    private final ConcurrentMap<String, Update> latest = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService frames;
+
+    private static class Update {
+        private final Object payload;
+        private final Map<String, Object> headers;
+        private final MessagePostProcessor postProcessor;
+        // a message already converted, sent instead of the payload if set
+        private final Message<?> message;
+
+        Update(Object payload, Map<String, Object> headers, MessagePostProcessor postProcessor) {
+            this.payload = payload;
+            this.headers = headers;
+            this.postProcessor = postProcessor;
+            this.message = null;
+        }
+
+        Update(Message<?> message) {
+            this.payload = null;
+            this.headers = null;
+            this.postProcessor = null;
+            this.message = message;
+        }
+    }
+
+    public CoalescingMessagingTemplate(SimpMessagingTemplate delegate, int frameRate) {
+        super(delegate.getMessageChannel());
+        if (frameRate < 1) {
+            throw new IllegalArgumentException("Frame rate must be positive, but was " + frameRate);
+        }
+        this.delegate = delegate;
+        frames = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stomp-frames");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = TimeUnit.SECONDS.toMicros(1) / frameRate;
+        frames.scheduleAtFixedRate(this::sendFrame, period, period, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * the convertAndSend variants with a destination end up here: replaces any update of the destination not
+     * sent yet, and defers the conversion of the payload to the frame that sends it
+     */
+    @Override
+    public void convertAndSend(String destination, Object payload, Map<String, Object> headers,
+                               MessagePostProcessor postProcessor) {
+        latest.put(destination, new Update(payload, headers, postProcessor));
+    }
+
+    /**
+     * messages with a destination header would bypass doSend
+     */
+    @Override
+    public void send(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            super.send(message);
+        } else {
+            doSend(destination, message);
+        }
+    }
+
+    /**
+     * all other ways of sending end up here, with a converted message: replaces any update of the destination
+     * not sent yet
+     */
+    @Override
+    protected void doSend(String destination, Message<?> message) {
+        latest.put(destination, new Update(message));
+    }
+
+    private void sendFrame() {
+        for (String destination : latest.keySet()) {
+            Update update = latest.remove(destination);
+            if (update == null) {
+                continue;
+            }
+            try {
+                if (update.message != null) {
+                    delegate.send(destination, update.message);
+                } else {
+                    delegate.convertAndSend(destination, update.payload, update.headers, update.postProcessor);
+                }
+            } catch (MessagingException e) {
+                LOG.warn("Couldn't send update to {}: {}", destination, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        frames.shutdownNow();
+    }
+}
@@ -0,0 +1,161 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.zuehlke.carrera.javapilot.metrics.ConfirmCounters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Publishes messages of which only the latest value matters, like power controls, on a channel in confirm mode
+ * without waiting for the confirms. At most maxInFlight messages are unconfirmed at any time, tracked by their
+ * publish sequence numbers. A message published while the window is full waits until a confirm frees a slot and
+ * is superseded by any later message in the meantime. A message the broker didn't take (nack) is only published
+ * again if nothing newer has been published since.
+ * The window is guarded by this publisher's monitor, which the confirm callbacks take, too. The channel is only
+ * ever called outside of it: a publish reserves its sequence number and records the message in flight under
+ * the monitor, then publishes holding only the publish lock, which keeps the sequence numbers in the order of
+ * the publishes. A confirm never waits for a publish that may be waiting for the connection's thread.
+ */
+public class ConfirmingPublisher<T> implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfirmingPublisher.class);
+
+    @FunctionalInterface
+    public interface Sender<T> {
+        void publish(Channel channel, T message) throws IOException;
+    }
+
+    private final Channel channel;
+    private final int maxInFlight;
+    private final Sender<T> sender;
+    private final ConfirmCounters counters;
+    private final ExecutorService drainer;
+    private final Object publishLock = new Object();
+
+    // guarded by this
+    private final NavigableMap<Long, T> inFlight = new TreeMap<>();
+    private T pending;
+    private long latestSequenceNumber = -1;
+
+    public ConfirmingPublisher(Channel channel, int maxInFlight, Sender<T> sender, ConfirmCounters counters)
+            throws IOException {
+        this.channel = channel;
+        this.maxInFlight = maxInFlight;
+        this.sender = sender;
+        this.counters = counters;
+        drainer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "confirming-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        channel.confirmSelect();
+        channel.addConfirmListener(new ConfirmListener() {
+            @Override
+            public void handleAck(long deliveryTag, boolean multiple) {
+                confirm(deliveryTag, multiple, true);
+            }
+
+            @Override
+            public void handleNack(long deliveryTag, boolean multiple) {
+                confirm(deliveryTag, multiple, false);
+            }
+        });
+    }
+
+    /**
+     * publishes the message, or keeps it to be published as soon as the window has room. Never blocks on confirms.
+     */
+    public void publish(T message) {
+        synchronized (publishLock) {
+            long sequenceNumber;
+            synchronized (this) {
+                if (inFlight.size() >= maxInFlight) {
+                    if (pending != null) {
+                        counters.superseded(1);
+                    }
+                    pending = message;
+                    return;
+                }
+                sequenceNumber = reserve(message);
+            }
+            send(sequenceNumber, message);
+        }
+    }
+
+    // the caller holds the publish lock and this publisher's monitor
+    private long reserve(T message) {
+        long sequenceNumber = channel.getNextPublishSeqNo();
+        inFlight.put(sequenceNumber, message);
+        latestSequenceNumber = sequenceNumber;
+        return sequenceNumber;
+    }
+
+    // the caller holds the publish lock only
+    private void send(long sequenceNumber, T message) {
+        try {
+            sender.publish(channel, message);
+            counters.published();
+        } catch (IOException e) {
+            synchronized (this) {
+                inFlight.remove(sequenceNumber);
+            }
+            LOG.warn("Couldn't publish: {}", e.getMessage());
+        }
+    }
+
+    // called on the connection's thread. Publishing is left to the drainer, so that it can't stall confirms
+    private synchronized void confirm(long deliveryTag, boolean multiple, boolean ack) {
+        NavigableMap<Long, T> confirms = multiple
+                ? inFlight.headMap(deliveryTag, true)
+                : inFlight.subMap(deliveryTag, true, deliveryTag, true);
+        if (ack) {
+            counters.confirmed(confirms.size());
+        } else {
+            counters.nacked(confirms.size());
+            T latest = confirms.get(latestSequenceNumber);
+            if (latest != null && pending == null) {
+                pending = latest;
+                counters.superseded(confirms.size() - 1);
+            } else {
+                counters.superseded(confirms.size());
+            }
+        }
+        confirms.clear();
+        if (pending != null && !drainer.isShutdown()) {
+            drainer.execute(this::publishPending);
+        }
+    }
+
+    private void publishPending() {
+        synchronized (publishLock) {
+            T message;
+            long sequenceNumber;
+            synchronized (this) {
+                if (pending == null || inFlight.size() >= maxInFlight) {
+                    return;
+                }
+                message = pending;
+                pending = null;
+                sequenceNumber = reserve(message);
+            }
+            send(sequenceNumber, message);
+        }
+    }
+
+    public synchronized int inFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void close() {
+        drainer.shutdownNow();
+    }
+}
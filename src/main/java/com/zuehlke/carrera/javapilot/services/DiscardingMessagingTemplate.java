@@ -0,0 +1,22 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import java.util.Map;
+
+/**
+ * Drops the news of a simulator that has no dashboard to show them
+ */
+public class DiscardingMessagingTemplate extends SimpMessagingTemplate {
+
+    public DiscardingMessagingTemplate() {
+        super(new ExecutorSubscribableChannel());
+    }
+
+    @Override
+    public void convertAndSend(String destination, Object payload, Map<String, Object> headers,
+                               MessagePostProcessor postProcessor) {
+    }
+}
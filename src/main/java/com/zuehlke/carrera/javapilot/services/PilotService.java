@@ -2,9 +2,21 @@ package com.zuehlke.carrera.javapilot.services;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import com.typesafe.config.ConfigFactory;
 import com.zuehlke.carrera.javapilot.akka.JavaPilotActor;
+import com.zuehlke.carrera.javapilot.akka.PilotDispatchers;
+import com.zuehlke.carrera.javapilot.akka.RaceRecorderActor;
 import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import com.zuehlke.carrera.javapilot.evaluation.RaceEvaluation;
+import com.zuehlke.carrera.javapilot.evaluation.StrategyEvaluator;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.javapilot.io.ReplayWindow;
 import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
+import com.zuehlke.carrera.javapilot.metrics.ConfirmCounters;
+import com.zuehlke.carrera.javapilot.metrics.EgressCounters;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
+import com.zuehlke.carrera.javapilot.metrics.RecorderCounters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +25,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PreDestroy;
+import java.util.List;
 
 /**
  * Manages the carrera pilot instance.
@@ -26,16 +39,24 @@ public class PilotService {
     private final ActorSystem system;
     private final ActorRef pilotActor;
     private final String endPointUrl;
+    private final StrategyProperties strategy;
+    private final LatencyTracker latency = new LatencyTracker(LatencyTracker.CAPACITY);
+    private final EgressCounters egressCounters = new EgressCounters();
+    private final RecorderCounters recorderCounters = new RecorderCounters();
+    private final ConfirmCounters confirmCounters = new ConfirmCounters();
 
     @Autowired
     public PilotService(PilotProperties settings, EndpointService endpointService,
                         SimulatorService simulatorService ){
         this.endPointUrl = endpointService.getHttpEndpoint();
-        system = ActorSystem.create(normalize(settings.getName()));
-        pilotActor = system.actorOf(JavaPilotActor.props(settings));
+        this.strategy = settings.getStrategy();
+        system = ActorSystem.create(normalize(settings.getName()),
+                PilotDispatchers.config(settings.getDispatchers()).withFallback(ConfigFactory.load()));
+        pilotActor = system.actorOf(PilotDispatchers.on(system, JavaPilotActor.props(settings, latency, egressCounters, recorderCounters),
+                PilotDispatchers.PILOT));
 
         // Simulator learns about the pilot
-        simulatorService.registerPilot(pilotActor);
+        simulatorService.registerPilot(pilotActor, latency);
 
         // Pilot learns about the simulator
         pilotActor.tell(new PilotToRaceTrackConnector(simulatorService.getSystem()), ActorRef.noSender());
@@ -62,7 +83,64 @@ public class PilotService {
         return pilotActor;
     }
 
+    /**
+     * @return the tracker of the pilot's sensor-to-power latencies, to be fed by its relay connection
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latency;
+    }
+
+    /**
+     * @return the counters of the power controls the pilot has sent, suppressed and deferred
+     */
+    public EgressCounters getEgressCounters() {
+        return egressCounters;
+    }
+
+    /**
+     * @return the counters of the messages the pilot has recorded and dropped
+     */
+    public RecorderCounters getRecorderCounters() {
+        return recorderCounters;
+    }
+
+    /**
+     * @return the counters of the power controls published with confirms, to be fed by its relay connection
+     */
+    public ConfirmCounters getConfirmCounters() {
+        return confirmCounters;
+    }
+
     public void replay(String tag) {
-        pilotActor.tell ( new StartReplayCommand(tag), ActorRef.noSender());
+        replay(tag, StartReplayCommand.REAL_TIME);
+    }
+
+    /**
+     * @param tag the tag of the recorded race
+     * @param speed the factor to speed up the recorded pace with, or {@link StartReplayCommand#MAX_SPEED}
+     */
+    public void replay(String tag, double speed) {
+        pilotActor.tell ( new StartReplayCommand(tag, speed), ActorRef.noSender());
+    }
+
+    /**
+     * @param tag the tag of the recorded race
+     * @param speed the factor to speed up the recorded pace with, or {@link StartReplayCommand#MAX_SPEED}
+     * @param window the part of the race to replay
+     */
+    public void replay(String tag, double speed, ReplayWindow window) {
+        pilotActor.tell ( new StartReplayCommand(tag, speed, window), ActorRef.noSender());
+    }
+
+    /**
+     * run the pilot's strategy against all recorded races, see {@link StrategyEvaluator}
+     * @param parallelism the number of races evaluated at the same time
+     */
+    public List<RaceEvaluation> evaluate(int parallelism) {
+        try (StrategyEvaluator evaluator = new StrategyEvaluator(
+                new RaceRecorderPlayer(RaceRecorderActor.DATA_DIRECTORY),
+                StrategyEvaluator.powerUpUntilPenalty(strategy), parallelism)) {
+            return evaluator.evaluateAll();
+        }
     }
 }
@@ -0,0 +1,115 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.rabbitmq.client.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A connection to the rabbitmq server with one channel per queue, as in the demo of the low level API.
+ * Every queue carries one message type. Publishing is synchronized per channel, since channels aren't thread-safe.
+ * The queues belong to the relay: they are used as the relay declared them. Only a queue that doesn't exist yet,
+ * e.g. before a starterkit simulator is up, is declared here, with the relay's settings.
+ */
+class RabbitChannels implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RabbitChannels.class);
+
+    @FunctionalInterface
+    interface DeliveryHandler {
+        void handle(AMQP.BasicProperties properties, byte[] body);
+    }
+
+    private final Connection connection;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * @param url the rabbitmq host or an amqp:// URI
+     */
+    RabbitChannels(String url) throws IOException {
+        this(connect(url));
+    }
+
+    RabbitChannels(Connection connection) {
+        this.connection = connection;
+    }
+
+    private static Connection connect(String url) throws IOException {
+        try {
+            ConnectionFactory factory = new ConnectionFactory();
+            if (url.startsWith("amqp")) {
+                factory.setUri(url);
+            } else {
+                factory.setHost(url);
+            }
+            return factory.newConnection();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Couldn't connect to " + url, e);
+        }
+    }
+
+    boolean isOpen() {
+        return connection.isOpen();
+    }
+
+    synchronized Channel channel(String queue) throws IOException {
+        Channel channel = channels.get(queue);
+        if (channel == null) {
+            channel = declare(queue);
+            channels.put(queue, channel);
+        }
+        return channel;
+    }
+
+    private Channel declare(String queue) throws IOException {
+        Channel channel = connection.createChannel();
+        try {
+            channel.queueDeclarePassive(queue);
+            return channel;
+        } catch (IOException e) {
+            // the queue doesn't exist, and the broker has closed the channel
+            LOG.debug("Declaring queue {}: {}", queue, e.getMessage());
+        }
+        channel = connection.createChannel();
+        boolean durable = false;
+        boolean exclusive = false;
+        boolean autoDelete = false;
+        channel.queueDeclare(queue, durable, exclusive, autoDelete, null);
+        return channel;
+    }
+
+    void publish(String queue, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        Channel channel = channel(queue);
+        synchronized (channel) {
+            channel.basicPublish("", queue, properties, body);
+        }
+    }
+
+    void consume(String queue, DeliveryHandler handler) throws IOException {
+        Channel channel = channel(queue);
+        channel.basicConsume(queue, true, new DefaultConsumer(channel) {
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope,
+                                       AMQP.BasicProperties properties, byte[] body) {
+                try {
+                    handler.handle(properties, body);
+                } catch (RuntimeException e) {
+                    LOG.warn("Couldn't handle message from {}: {}", queue, e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (connection.isOpen()) {
+            connection.close();
+        }
+    }
+}
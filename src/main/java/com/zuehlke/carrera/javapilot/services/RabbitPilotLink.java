@@ -0,0 +1,125 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.rabbitmq.client.AMQP;
+import com.zuehlke.carrera.api.channel.PilotToRelayChannelNames;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.io.CompactRelaySerializer;
+import com.zuehlke.carrera.relayapi.messages.*;
+import com.zuehlke.carrera.simulator.model.RaceTrackSimulatorSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * The simulator's end of the rabbitmq queues to a remote pilot (see {@link RabbitRelayConnection}): publishes the
+ * race track's messages into the pilot's queues and passes its power controls to the simulator. Sensor events go
+ * out in the compact layout of {@link CompactRelaySerializer} while the pilot announces that it accepts it,
+ * everything else is JSON.
+ */
+public class RabbitPilotLink implements RemotePilots, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RabbitPilotLink.class);
+
+    private static final AMQP.BasicProperties JSON = new AMQP.BasicProperties.Builder()
+            .contentType(CompactRelaySerializer.JSON_CONTENT_TYPE).expiration("0").build();
+    private static final AMQP.BasicProperties COMPACT = new AMQP.BasicProperties.Builder()
+            .contentType(CompactRelaySerializer.COMPACT_CONTENT_TYPE).expiration("0").build();
+
+    private final RaceTrackSimulatorSystem system;
+    private final String url;
+    private final PilotToRelayChannelNames channelNames;
+    private final CompactRelaySerializer serializer;
+    private volatile RabbitChannels channels;
+    private volatile boolean pilotAcceptsCompact;
+
+    public RabbitPilotLink(RaceTrackSimulatorSystem system, PilotProperties settings,
+                           CompactRelaySerializer serializer) {
+        this.system = system;
+        this.url = settings.getRabbitUrl();
+        this.channelNames = new PilotToRelayChannelNames(settings.getName());
+        this.serializer = serializer;
+    }
+
+    public synchronized void ensureConnection() {
+        if (channels != null && channels.isOpen()) {
+            return;
+        }
+        RabbitChannels connected = null;
+        try {
+            connected = new RabbitChannels(url);
+            connected.consume(channelNames.announce(), (properties, body) -> {
+                Map<String, Object> headers = properties.getHeaders();
+                Object accepted = headers == null ? null : headers.get(CompactRelaySerializer.ACCEPT_HEADER);
+                pilotAcceptsCompact = accepted != null
+                        && CompactRelaySerializer.isCompact(accepted.toString());
+            });
+            connected.consume(channelNames.powerControl(), (properties, body) -> system.setPower(
+                    serializer.deserialize(body, properties.getContentType(), PowerControl.class)));
+            channels = connected;
+            LOG.info("Connected to rabbitmq at {}", url);
+        } catch (IOException e) {
+            LOG.warn("Couldn't connect to rabbitmq at {}: {}", url, e.getMessage());
+            if (connected != null) {
+                try {
+                    connected.close();
+                } catch (IOException ignored) {
+                    // the connection is lost anyway
+                }
+            }
+        }
+    }
+
+    @Override
+    public void send(Object message) {
+        if (message instanceof SensorEvent) {
+            if (pilotAcceptsCompact) {
+                ByteBuffer buffer = serializer.encode(message);
+                try {
+                    publish(channelNames.sensor(), COMPACT, buffer.array());
+                } finally {
+                    serializer.release(buffer);
+                }
+            } else {
+                publishJson(channelNames.sensor(), message);
+            }
+        } else if (message instanceof VelocityMessage) {
+            publishJson(channelNames.velocity(), message);
+        } else if (message instanceof PenaltyMessage) {
+            publishJson(channelNames.penalty(), message);
+        } else if (message instanceof RoundTimeMessage) {
+            publishJson(channelNames.roundPassed(), message);
+        } else if (message instanceof RaceStartMessage) {
+            publishJson(channelNames.raceStart(), message);
+        } else if (message instanceof RaceStopMessage) {
+            publishJson(channelNames.raceStop(), message);
+        }
+    }
+
+    private void publishJson(String queue, Object message) {
+        publish(queue, JSON, serializer.serialize(message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void publish(String queue, AMQP.BasicProperties properties, byte[] body) {
+        RabbitChannels current = channels;
+        if (current == null || !current.isOpen()) {
+            return;
+        }
+        try {
+            current.publish(queue, properties, body);
+        } catch (IOException e) {
+            LOG.warn("Couldn't publish to {}: {}", queue, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channels != null) {
+            channels.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import akka.actor.ActorRef;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.zuehlke.carrera.api.channel.PilotToRelayChannelNames;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.config.RabbitProperties;
+import com.zuehlke.carrera.javapilot.io.CompactRelaySerializer;
+import com.zuehlke.carrera.javapilot.metrics.ConfirmCounters;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * The pilot's end of the rabbitmq queues to the relay or a remote simulator (see {@link RabbitPilotLink}).
+ * With the compact serializer, the pilot announces that it accepts the compact layout of
+ * {@link CompactRelaySerializer}, but only sends its power controls compact after the peer sent it compact sensor
+ * events. A relay that only speaks JSON thus gets JSON, and all messages without the compact content type are read
+ * as JSON. With the json serializer, the pilot announces nothing and only sends JSON. In both modes, power controls
+ * are published with asynchronous publisher confirms, if enabled, see {@link ConfirmingPublisher}.
+ */
+public class RabbitRelayConnection implements PilotToRelayConnection, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RabbitRelayConnection.class);
+
+    private static final AMQP.BasicProperties JSON = new AMQP.BasicProperties.Builder()
+            .contentType(CompactRelaySerializer.JSON_CONTENT_TYPE).expiration("0").build();
+    private static final AMQP.BasicProperties COMPACT = new AMQP.BasicProperties.Builder()
+            .contentType(CompactRelaySerializer.COMPACT_CONTENT_TYPE).expiration("0").build();
+    private static final AMQP.BasicProperties ANNOUNCEMENT = new AMQP.BasicProperties.Builder()
+            .contentType(CompactRelaySerializer.JSON_CONTENT_TYPE).expiration("0")
+            .headers(Collections.singletonMap(CompactRelaySerializer.ACCEPT_HEADER,
+                    CompactRelaySerializer.COMPACT_CONTENT_TYPE))
+            .build();
+
+    private final ActorRef pilot;
+    private final LatencyTracker latency;
+    private final ConfirmCounters confirmCounters;
+    private final String url;
+    private final String name;
+    private final String accessCode;
+    private final PilotToRelayChannelNames channelNames;
+    private final CompactRelaySerializer serializer;
+    private final RabbitProperties rabbit;
+    private final boolean compact;
+    private volatile RabbitChannels channels;
+    private volatile ConfirmingPublisher<PowerControl> powerPublisher;
+    private volatile boolean peerAcceptsCompact;
+
+    public RabbitRelayConnection(ActorRef pilot, LatencyTracker latency, ConfirmCounters confirmCounters,
+                                 PilotProperties settings, CompactRelaySerializer serializer) {
+        this.pilot = pilot;
+        this.latency = latency;
+        this.confirmCounters = confirmCounters;
+        this.url = settings.getRabbitUrl();
+        this.name = settings.getName();
+        this.accessCode = settings.getAccessCode();
+        this.channelNames = new PilotToRelayChannelNames(name);
+        this.serializer = serializer;
+        this.rabbit = settings.getRabbit();
+        this.compact = rabbit.getSerializer() == RabbitProperties.SerializerType.compact;
+    }
+
+    @Override
+    public void announce(String optionalUrl) {
+        PilotLifeSign lifeSign = new PilotLifeSign(name, accessCode, optionalUrl, System.currentTimeMillis());
+        publish(channelNames.announce(), compact ? ANNOUNCEMENT : JSON, serializer.serialize(lifeSign).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * called on the pilot actor only
+     */
+    @Override
+    public void send(PowerControl powerControl) {
+        ConfirmingPublisher<PowerControl> publisher = powerPublisher;
+        if (publisher != null) {
+            publisher.publish(powerControl);
+            return;
+        }
+        RabbitChannels current = channels;
+        if (current == null || !current.isOpen()) {
+            return;
+        }
+        try {
+            publishPowerControl(current.channel(channelNames.powerControl()), powerControl);
+        } catch (IOException e) {
+            LOG.warn("Couldn't publish power control: {}", e.getMessage());
+        }
+    }
+
+    private void publishPowerControl(Channel channel, PowerControl powerControl) throws IOException {
+        String queue = channelNames.powerControl();
+        if (!peerAcceptsCompact) {
+            channel.basicPublish("", queue, JSON, serializer.serialize(powerControl).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        ByteBuffer buffer = serializer.encode(powerControl);
+        try {
+            channel.basicPublish("", queue, COMPACT, buffer.array());
+        } finally {
+            serializer.release(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void ensureConnection() {
+        if (channels != null && channels.isOpen()) {
+            return;
+        }
+        RabbitChannels connected = null;
+        try {
+            connected = connect();
+            connected.consume(channelNames.sensor(), (properties, body) -> {
+                peerAcceptsCompact = compact && CompactRelaySerializer.isCompact(properties.getContentType());
+                SensorEvent event = serializer.deserialize(body, properties.getContentType(), SensorEvent.class);
+                latency.ingress(event.getTimeStamp());
+                pilot.tell(event, ActorRef.noSender());
+            });
+            consume(connected, channelNames.raceStart(), RaceStartMessage.class);
+            consume(connected, channelNames.raceStop(), RaceStopMessage.class);
+            consume(connected, channelNames.velocity(), VelocityMessage.class);
+            consume(connected, channelNames.penalty(), PenaltyMessage.class);
+            consume(connected, channelNames.roundPassed(), RoundTimeMessage.class);
+            if (powerPublisher != null) {
+                powerPublisher.close();
+                powerPublisher = null;
+            }
+            if (rabbit.isConfirms()) {
+                powerPublisher = new ConfirmingPublisher<>(connected.channel(channelNames.powerControl()),
+                        rabbit.getMaxInFlight(), this::publishPowerControl, confirmCounters);
+            }
+            channels = connected;
+            LOG.info("Connected to rabbitmq at {}", url);
+        } catch (IOException e) {
+            LOG.warn("Couldn't connect to rabbitmq at {}: {}", url, e.getMessage());
+            if (connected != null) {
+                try {
+                    connected.close();
+                } catch (IOException ignored) {
+                    // the connection is lost anyway
+                }
+            }
+        }
+    }
+
+    RabbitChannels connect() throws IOException {
+        return new RabbitChannels(url);
+    }
+
+    private void consume(RabbitChannels connected, String queue, Class<?> type) throws IOException {
+        connected.consume(queue, (properties, body) -> pilot.tell(
+                serializer.deserialize(body, properties.getContentType(), type), ActorRef.noSender()));
+    }
+
+    private void publish(String queue, AMQP.BasicProperties properties, byte[] body) {
+        RabbitChannels current = channels;
+        if (current == null || !current.isOpen()) {
+            return;
+        }
+        try {
+            current.publish(queue, properties, body);
+        } catch (IOException e) {
+            LOG.warn("Couldn't publish to {}: {}", queue, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (powerPublisher != null) {
+            powerPublisher.close();
+        }
+        if (channels != null) {
+            channels.close();
+        }
+    }
+}
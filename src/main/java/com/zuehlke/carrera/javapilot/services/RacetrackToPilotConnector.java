@@ -1,6 +1,7 @@
 package com.zuehlke.carrera.javapilot.services;
 
 import akka.actor.ActorRef;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
 import com.zuehlke.carrera.relayapi.messages.*;
 import com.zuehlke.carrera.simulator.model.PilotInterface;
 
@@ -10,13 +11,33 @@ import com.zuehlke.carrera.simulator.model.PilotInterface;
 public class RacetrackToPilotConnector implements PilotInterface, PilotCommandInterface {
 
     ActorRef pilotEntryPoint;
+    private volatile LatencyTracker latency = LatencyTracker.DISABLED;
+    private volatile RemotePilots remotePilots;
 
     public void registerPilot ( ActorRef pilotEntryPoint ) {
+        registerPilot(pilotEntryPoint, LatencyTracker.DISABLED);
+    }
+
+    /**
+     * @param latency the latency tracker of the pilot, which sees its sensor events arrive here
+     */
+    public void registerPilot ( ActorRef pilotEntryPoint, LatencyTracker latency ) {
+        this.latency = latency;
         this.pilotEntryPoint = pilotEntryPoint;
     }
 
+    /**
+     * send all messages to the pilots connected through a link instead of the local pilot
+     */
+    public void registerRemotePilots ( RemotePilots remotePilots ) {
+        this.remotePilots = remotePilots;
+    }
+
     @Override
     public void send(SensorEvent message) {
+        if ( remotePilots == null ) {
+            latency.ingress(message.getTimeStamp());
+        }
         sendMessage(message);
     }
 
@@ -51,6 +72,10 @@ public class RacetrackToPilotConnector implements PilotInterface, PilotCommandIn
     }
 
     private void sendMessage (Object message) {
+        if ( remotePilots != null ) {
+            remotePilots.send(message);
+            return;
+        }
         // Messages may arrive during startup prior to entry point registration. Just ignore them
         if ( pilotEntryPoint != null ) {
             pilotEntryPoint.tell ( message, ActorRef.noSender());
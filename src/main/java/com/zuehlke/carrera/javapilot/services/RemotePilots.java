@@ -0,0 +1,12 @@
+package com.zuehlke.carrera.javapilot.services;
+
+/**
+ * pilots that aren't part of this process and are driven by the simulator through a link
+ */
+public interface RemotePilots {
+
+    /**
+     * @param message any of the messages the race track sends to pilots
+     */
+    void send(Object message);
+}
@@ -2,6 +2,12 @@ package com.zuehlke.carrera.javapilot.services;
 
 import akka.actor.ActorRef;
 import com.zuehlke.carrera.connection.TowardsPilotsConnection;
+import com.zuehlke.carrera.javapilot.config.DashboardProperties;
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import com.zuehlke.carrera.javapilot.evaluation.ParameterSweep;
+import com.zuehlke.carrera.javapilot.evaluation.RaceResult;
+import com.zuehlke.carrera.javapilot.evaluation.SimulatorFarm;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
 import com.zuehlke.carrera.relayapi.messages.*;
 import com.zuehlke.carrera.simulator.config.SimulatorProperties;
 import com.zuehlke.carrera.simulator.model.PilotInterface;
@@ -37,15 +43,25 @@ public class SimulatorService {
 
     private final SimulatorProperties settings;
 
+    private final DashboardProperties dashboard;
+
     private final SimpMessagingTemplate simpMessagingTemplate;
+    private CoalescingMessagingTemplate coalescingTemplate;
 
     private final RacetrackToPilotConnector pilotInterface;
     private TowardsPilotsConnection pilotConnection;
+    private SimulatorFarm farm;
+
+    // the design the simulator started with has no known name
+    private static final String INITIAL_DESIGN = "";
+    private final TrackInfoCache tracks = new TrackInfoCache();
+    private volatile String currentDesign = INITIAL_DESIGN;
 
     @Autowired
-    public SimulatorService ( SimulatorProperties settings,
+    public SimulatorService ( SimulatorProperties settings, DashboardProperties dashboard,
                             SimpMessagingTemplate simpMessagingTemplate ){
         this.settings = settings;
+        this.dashboard = dashboard;
         this.pilotInterface =  new RacetrackToPilotConnector ();
         this.simpMessagingTemplate = simpMessagingTemplate;
     }
@@ -53,24 +69,76 @@ public class SimulatorService {
     @PostConstruct
     public void init () {
 
+        SimpMessagingTemplate newsTemplate = simpMessagingTemplate;
+        if ( dashboard.getFrameRate() > 0 ) {
+            coalescingTemplate = new CoalescingMessagingTemplate(simpMessagingTemplate, dashboard.getFrameRate());
+            newsTemplate = coalescingTemplate;
+        }
+
         raceTrackSimulatorSystem = new RaceTrackSimulatorSystem(
                 settings.getName(),
                 pilotInterface,
-                new StompNewsInterface(simpMessagingTemplate),
+                new StompNewsInterface(newsTemplate),
                 new NormalDistribution(settings.getTickPeriod(), settings.getSigma()),
                 settings);
 
         raceTrackSimulatorSystem.ensureConnection(settings.getRabbitUrl());
 
+        tracks.put(INITIAL_DESIGN, trackInfo(raceTrackSimulatorSystem.getTrackDesign()));
+        preloadDesigns();
+    }
+
+    /**
+     * build the track infos of the configured designs on a simulator of their own, so that the one in use
+     * keeps its design
+     */
+    private void preloadDesigns() {
+        if ( dashboard.getTrackDesigns().isEmpty() ) {
+            return;
+        }
+        RaceTrackSimulatorSystem designs = new RaceTrackSimulatorSystem(
+                settings.getName() + "-designs",
+                new RacetrackToPilotConnector(),
+                new StompNewsInterface(new DiscardingMessagingTemplate()),
+                new NormalDistribution(settings.getTickPeriod(), settings.getSigma()),
+                settings);
+        try {
+            for ( String design : dashboard.getTrackDesigns() ) {
+                try {
+                    designs.selectDesign(design);
+                    tracks.put(design, trackInfo(designs.getTrackDesign()));
+                } catch ( RuntimeException e ) {
+                    LOG.warn("Couldn't prepare track design {}: {}", design, e.getMessage());
+                }
+            }
+        } finally {
+            designs.shutdown();
+        }
+        LOG.info("Prepared {} track designs", tracks.size());
+    }
+
+    public void registerPilot(ActorRef pilot, LatencyTracker latency ) {
+        pilotInterface.registerPilot(pilot, latency);
     }
 
-    public void registerPilot(ActorRef pilot ) {
-        pilotInterface.registerPilot(pilot);
+    /**
+     * drive the pilots connected through a link instead of the local one
+     */
+    public void connectRemotePilots(RemotePilots pilotLink) {
+        pilotInterface.registerRemotePilots(pilotLink);
     }
 
     @PreDestroy
     public void shutDownActorSystem () {
         raceTrackSimulatorSystem.shutdown();
+        if ( coalescingTemplate != null ) {
+            coalescingTemplate.close();
+        }
+        synchronized (this) {
+            if ( farm != null ) {
+                farm.close();
+            }
+        }
     }
 
     public RaceTrackSimulatorSystem getSystem() {
@@ -89,7 +157,17 @@ public class SimulatorService {
      * @return the race-track model, which can be used to draw the virtual race-track.
      */
     public TrackInfo getTrackInfo() {
-        TrackDesign design = raceTrackSimulatorSystem.getTrackDesign();
+        return getTrack().getInfo();
+    }
+
+    /**
+     * @return the race-track model of the current design, ready to be sent
+     */
+    public TrackInfoCache.Track getTrack() {
+        return tracks.get(currentDesign, () -> trackInfo(raceTrackSimulatorSystem.getTrackDesign()));
+    }
+
+    private TrackInfo trackInfo(TrackDesign design) {
         List < TrackSection> sections = design.getTrackData();
         String trackId = settings.getName();
         return new TrackInfo( sections, trackId, design.getBoundarywidth(),
@@ -132,12 +210,44 @@ public class SimulatorService {
         raceTrackSimulatorSystem.reset();
     }
 
-    public TrackInfo selectDesign(String trackDesign) {
+    public TrackInfoCache.Track selectDesign(String trackDesign) {
 
         // will return the trackdesign and discard it, since we need the complete info.
         raceTrackSimulatorSystem.selectDesign(trackDesign);
+        currentDesign = trackDesign;
+
+        return getTrack();
+    }
 
-        return getTrackInfo();
+    /**
+     * drive a race for every candidate, each against a simulator of its own, see {@link ParameterSweep}
+     * @param duration ms per race
+     * @param parallelism the number of races at the same time
+     * @return the results, best first
+     */
+    public List<RaceResult> sweep(List<StrategyProperties> candidates, long duration, int parallelism) {
+        SimulatorFarm races = getFarm();
+        ParameterSweep sweep = new ParameterSweep(
+                parameters -> races.race(null, parameters, duration), parallelism);
+        LOG.info("Sweeping {} parameter sets, {} at a time", candidates.size(), parallelism);
+        return sweep.run(candidates);
+    }
+
+    /**
+     * drive all lanes at the same time, each with a simulator of its own, see {@link SimulatorFarm}
+     * @param duration ms per race
+     * @return the results in the order of the lanes
+     */
+    public List<RaceResult> race(List<SimulatorFarm.Lane> lanes, long duration) {
+        LOG.info("Racing {} lanes", lanes.size());
+        return getFarm().run(lanes, duration);
+    }
+
+    private synchronized SimulatorFarm getFarm() {
+        if ( farm == null ) {
+            farm = new SimulatorFarm(settings);
+        }
+        return farm;
     }
 
     public void setPilotConnection(TowardsPilotsConnection pilotConnection) {
@@ -0,0 +1,88 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zuehlke.carrera.simulator.model.racetrack.TrackInfo;
+import org.springframework.util.DigestUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * The track infos of the simulator's designs, keyed by design name. Every track info is built and serialized
+ * to JSON once. Entries never change, so their JSON can be sent as is, and its hash serves as ETag.
+ */
+public class TrackInfoCache {
+
+    public static final class Track {
+
+        private final TrackInfo info;
+        private final byte[] json;
+        private final String etag;
+
+        private Track(TrackInfo info, byte[] json) {
+            this.info = info;
+            this.json = json;
+            this.etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        }
+
+        public TrackInfo getInfo() {
+            return info;
+        }
+
+        /**
+         * @return the serialized track info. Don't modify, it's shared
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @param ifNoneMatch the If-None-Match header of a request, or null
+         * @return true, if the client has this version already
+         */
+        public boolean matches(String ifNoneMatch) {
+            return ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag));
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentMap<String, Track> tracks = new ConcurrentHashMap<>();
+
+    /**
+     * @return the cached track of the design, or null
+     */
+    public Track get(String design) {
+        return tracks.get(design);
+    }
+
+    /**
+     * @param build creates the track info, if the design isn't cached yet
+     */
+    public Track get(String design, Supplier<TrackInfo> build) {
+        return tracks.computeIfAbsent(design, key -> serialize(build.get()));
+    }
+
+    public Track put(String design, TrackInfo info) {
+        Track track = serialize(info);
+        tracks.put(design, track);
+        return track;
+    }
+
+    public int size() {
+        return tracks.size();
+    }
+
+    private Track serialize(TrackInfo info) {
+        try {
+            return new Track(info, mapper.writeValueAsBytes(info));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.javapilot.io.PilotLinkCodec;
+import com.zuehlke.carrera.javapilot.io.RaceRecordCodec;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The simulator's end of the WebSocket link to remote pilots: sends the race track's messages to every
+ * connected pilot as binary frames of {@link PilotLinkCodec} and passes their power controls to the simulator,
+ * on behalf of the pilot named in the handshake of the connection.
+ * Encoding a message and sending it to the pilots happen under the lock of the encoder, and so does the
+ * registration of a new pilot, so that the first SensorEvent a new pilot gets carries its track id.
+ */
+@Component
+public class WebSocketPilotLink extends BinaryWebSocketHandler implements RemotePilots {
+
+    public static final String PATH = "/pilot-link";
+
+    private static final Logger LOG = LoggerFactory.getLogger(WebSocketPilotLink.class);
+
+    private static final int SEND_TIME_LIMIT = 1000;
+    private static final int BUFFER_SIZE_LIMIT = 64 * 1024;
+
+    private final SimulatorService simulatorService;
+    private final PilotLinkCodec encoder = new PilotLinkCodec();
+    private final Map<String, WebSocketSession> pilots = new ConcurrentHashMap<>();
+    private final Map<String, PilotLinkCodec> decoders = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WebSocketPilotLink(SimulatorService simulatorService) {
+        this.simulatorService = simulatorService;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        HttpHeaders headers = session.getHandshakeHeaders();
+        String teamId = headers.getFirst(PilotLinkCodec.TEAM_ID_HEADER);
+        String accessCode = headers.getFirst(PilotLinkCodec.ACCESS_CODE_HEADER);
+        if (teamId == null || accessCode == null) {
+            LOG.warn("Remote pilot {} didn't identify itself, its power controls are sent as {}",
+                    session.getId(), RaceRecordCodec.RECORDED_PILOT);
+            teamId = RaceRecordCodec.RECORDED_PILOT;
+            accessCode = RaceRecordCodec.RECORDED_ACCESS_CODE;
+        }
+        LOG.info("Remote pilot {} connected: {}", teamId, session.getId());
+        decoders.put(session.getId(), new PilotLinkCodec(teamId, accessCode));
+        synchronized (encoder) {
+            pilots.put(session.getId(),
+                    new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, BUFFER_SIZE_LIMIT));
+            encoder.resetTrack();
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        LOG.info("Remote pilot disconnected: {}", session.getId());
+        pilots.remove(session.getId());
+        decoders.remove(session.getId());
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        decoders.get(session.getId()).decode(message.getPayload(), received -> {
+            if (received instanceof PowerControl) {
+                simulatorService.getSystem().setPower((PowerControl) received);
+            }
+        });
+    }
+
+    @Override
+    public void send(Object message) {
+        synchronized (encoder) {
+            ByteBuffer frame = encoder.encode(message);
+            if (frame == null) {
+                return;
+            }
+            for (WebSocketSession pilot : pilots.values()) {
+                try {
+                    pilot.sendMessage(new BinaryMessage(frame.duplicate()));
+                } catch (IOException e) {
+                    LOG.warn("Couldn't send to remote pilot {}: {}", pilot.getId(), e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import akka.actor.ActorRef;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.io.PilotLinkCodec;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pilot's end of the WebSocket link to a remote simulator (see {@link WebSocketPilotLink}): passes the
+ * simulator's messages to the pilot actor and sends its power controls back. The pilot's team id and access
+ * code are sent with the handshake. The link is kept alive with pings and reconnected when it got lost.
+ */
+public class WebSocketRelayConnection extends BinaryWebSocketHandler implements PilotToRelayConnection, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WebSocketRelayConnection.class);
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int SEND_TIME_LIMIT = 1000;
+    private static final int BUFFER_SIZE_LIMIT = 16 * 1024;
+
+    private final ActorRef pilot;
+    private final LatencyTracker latency;
+    private final String url;
+    private final WebSocketHttpHeaders handshakeHeaders = new WebSocketHttpHeaders();
+    private final StandardWebSocketClient client = new StandardWebSocketClient();
+    private final PilotLinkCodec encoder = new PilotLinkCodec();
+    private final PilotLinkCodec decoder = new PilotLinkCodec();
+    private final ScheduledExecutorService keepAlive;
+    private volatile WebSocketSession session;
+
+    public WebSocketRelayConnection(ActorRef pilot, LatencyTracker latency, PilotProperties settings) {
+        this.pilot = pilot;
+        this.latency = latency;
+        this.url = settings.getLink().getUrl();
+        handshakeHeaders.add(PilotLinkCodec.TEAM_ID_HEADER, settings.getName());
+        handshakeHeaders.add(PilotLinkCodec.ACCESS_CODE_HEADER, settings.getAccessCode());
+        keepAlive = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pilot-link-keep-alive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getLink().getKeepAliveInterval();
+        keepAlive.scheduleWithFixedDelay(this::keepAlive, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void announce(String optionalUrl) {
+        // the simulator knows its pilots by their connections
+    }
+
+    /**
+     * called on the pilot actor only
+     */
+    @Override
+    public void send(PowerControl powerControl) {
+        WebSocketSession current = session;
+        if (current == null || !current.isOpen()) {
+            return;
+        }
+        try {
+            current.sendMessage(new BinaryMessage(encoder.encode(powerControl)));
+        } catch (IOException e) {
+            LOG.warn("Couldn't send power control: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void ensureConnection() {
+        if (session != null && session.isOpen()) {
+            return;
+        }
+        try {
+            WebSocketSession connected = client.doHandshake(this, handshakeHeaders, URI.create(url))
+                    .get(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+            session = new ConcurrentWebSocketSessionDecorator(connected, SEND_TIME_LIMIT, BUFFER_SIZE_LIMIT);
+            LOG.info("Connected to simulator at {}", url);
+        } catch (Exception e) {
+            LOG.warn("Couldn't connect to simulator at {}: {}", url, e.getMessage());
+        }
+    }
+
+    private void keepAlive() {
+        WebSocketSession current = session;
+        if (current == null || !current.isOpen()) {
+            ensureConnection();
+            return;
+        }
+        try {
+            current.sendMessage(new PingMessage());
+        } catch (IOException e) {
+            LOG.warn("Keep-alive ping failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        decoder.decode(message.getPayload(), received -> {
+            if (received instanceof SensorEvent) {
+                latency.ingress(((SensorEvent) received).getTimeStamp());
+            }
+            pilot.tell(received, ActorRef.noSender());
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        keepAlive.shutdownNow();
+        if (session != null) {
+            session.close();
+        }
+    }
+}
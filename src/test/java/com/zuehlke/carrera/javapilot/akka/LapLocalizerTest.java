@@ -0,0 +1,126 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LapLocalizerTest {
+
+    private static final String LAP = "LSRSLSRRSL";
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyLap() {
+        new LapLocalizer("");
+    }
+
+    @Test
+    public void testLocalizes() {
+        LapLocalizer localizer = new LapLocalizer(LAP);
+        Assert.assertEquals(LAP.length(), localizer.candidates());
+        Assert.assertFalse(localizer.isLocalized());
+        Assert.assertEquals(3, localizer.accept('L'));
+        Assert.assertEquals(-1, localizer.nextIndex());
+        Assert.assertEquals(2, localizer.accept('S'));
+        Assert.assertEquals(2, localizer.accept('R'));
+        Assert.assertEquals(0.5, localizer.confidence(), 0);
+        Assert.assertEquals(1, localizer.accept('S'));
+        Assert.assertTrue(localizer.isLocalized());
+        Assert.assertEquals(1.0, localizer.confidence(), 0);
+        // "LSRS" only occurs at the start of the lap
+        Assert.assertEquals(4, localizer.nextIndex());
+        Assert.assertEquals(4, localizer.observed());
+    }
+
+    @Test
+    public void testUnknownSymbol() {
+        LapLocalizer localizer = new LapLocalizer(LAP);
+        Assert.assertEquals(0, localizer.accept('X'));
+        Assert.assertEquals(0, localizer.confidence(), 0);
+        Assert.assertEquals(0, localizer.accept('\u20ac'));
+    }
+
+    @Test
+    public void testMatchesStringComparison() {
+        Random random = new Random(11);
+        // laps spanning one and several words of the bitset
+        for (int lapLength : new int[]{8, 63, 64, 65, 150}) {
+            for (int run = 0; run < 50; run++) {
+                String lap = randomSections(random, lapLength);
+                LapLocalizer localizer = new LapLocalizer(lap);
+                String observed = "";
+                for (int i = 0; i < lapLength; i++) {
+                    char symbol = "LRS".charAt(random.nextInt(3));
+                    observed += symbol;
+                    int count = localizer.accept(symbol);
+                    int[] matches = matches(lap, observed);
+                    Assert.assertEquals(lap + " " + observed, matches[0], count);
+                    if (count == 0) {
+                        break;
+                    }
+                    int expected = count == 1 ? (matches[1] + observed.length()) % lapLength : -1;
+                    Assert.assertEquals(lap + " " + observed, expected, localizer.nextIndex());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRelocalizesAfterWrapping() {
+        // sections observed across the end of the lap
+        LapLocalizer localizer = new LapLocalizer(LAP);
+        for (char symbol : "RRSLL".toCharArray()) {
+            localizer.accept(symbol);
+        }
+        Assert.assertTrue(localizer.isLocalized());
+        Assert.assertEquals(1, localizer.nextIndex());
+    }
+
+    @Test
+    public void testRestartsWithLastSection() {
+        LapLocalizer localizer = new LapLocalizer(LAP);
+        Assert.assertEquals(3, localizer.acceptOrRestart('R'));
+        Assert.assertEquals(1, localizer.acceptOrRestart('R'));
+        // "RRR" doesn't occur on the lap: start over with the last 'R' alone
+        Assert.assertEquals(3, localizer.acceptOrRestart('R'));
+        Assert.assertEquals(1, localizer.observed());
+        Assert.assertEquals(1, localizer.acceptOrRestart('R'));
+        Assert.assertEquals(8, localizer.nextIndex());
+    }
+
+    @Test
+    public void testReset() {
+        LapLocalizer localizer = new LapLocalizer(LAP);
+        localizer.accept('X');
+        localizer.reset();
+        Assert.assertEquals(LAP.length(), localizer.candidates());
+        Assert.assertEquals(0, localizer.observed());
+        Assert.assertEquals(3, localizer.accept('L'));
+    }
+
+    private static String randomSections(Random random, int length) {
+        StringBuilder sections = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sections.append("LRS".charAt(random.nextInt(3)));
+        }
+        return sections.toString();
+    }
+
+    /**
+     * the string comparison PowerUpUntilPenalty used before
+     * @return the number of lap positions where the observed sections start, and the first of them
+     */
+    private static int[] matches(String lap, String observed) {
+        String lap2 = lap + lap;
+        int count = 0;
+        int first = -1;
+        for (int i = 0; i < lap.length(); i++) {
+            if (lap2.substring(i, i + observed.length()).equals(observed)) {
+                if (count++ == 0) {
+                    first = i;
+                }
+            }
+        }
+        return new int[]{count, first};
+    }
+}
@@ -0,0 +1,42 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PilotClockTest {
+
+    @Test
+    public void testWallClockByDefault() {
+        PilotClock clock = new PilotClock();
+        Assert.assertFalse(clock.isVirtual());
+        long before = System.currentTimeMillis();
+        long now = clock.now();
+        Assert.assertTrue(now >= before && now <= System.currentTimeMillis());
+        // the wall clock isn't moved by events
+        clock.advanceTo(before + 100000);
+        Assert.assertTrue(clock.now() < before + 100000);
+    }
+
+    @Test
+    public void testVirtualClockFollowsTheEvents() {
+        PilotClock clock = new PilotClock();
+        clock.useVirtualClock(0);
+        Assert.assertTrue(clock.isVirtual());
+        Assert.assertEquals(0, clock.now());
+        clock.advanceTo(1020);
+        Assert.assertEquals(1020, clock.now());
+        // late answers don't turn time back
+        clock.advanceTo(1000);
+        Assert.assertEquals(1020, clock.now());
+    }
+
+    @Test
+    public void testBackToTheWallClock() {
+        PilotClock clock = new PilotClock();
+        clock.useVirtualClock(0);
+        clock.advanceTo(20);
+        clock.useWallClock();
+        Assert.assertFalse(clock.isVirtual());
+        Assert.assertTrue(clock.now() > 20);
+    }
+}
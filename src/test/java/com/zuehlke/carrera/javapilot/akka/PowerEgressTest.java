@@ -0,0 +1,178 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import com.zuehlke.carrera.javapilot.akka.PowerEgress.Decision;
+import com.zuehlke.carrera.javapilot.config.EgressProperties;
+import com.zuehlke.carrera.javapilot.metrics.EgressCounters;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PowerEgressTest {
+
+    private final EgressCounters counters = new EgressCounters();
+
+    @Test
+    public void testSendsTheFirstValue() {
+        PowerEgress egress = egress(50, 1000);
+        Assert.assertEquals(Decision.SEND, egress.offer(120, 0));
+        Assert.assertEquals(120, egress.lastPower());
+        Assert.assertEquals(1, counters.getSent());
+    }
+
+    @Test
+    public void testSuppressesUnchangedValues() {
+        PowerEgress egress = egress(50, 1000);
+        egress.offer(120, 0);
+        Assert.assertEquals(Decision.SUPPRESS, egress.offer(120, 100));
+        Assert.assertEquals(Decision.SUPPRESS, egress.offer(120, 999));
+        Assert.assertEquals(2, counters.getSuppressed());
+        Assert.assertEquals(1, counters.getSent());
+    }
+
+    @Test
+    public void testRefreshesUnchangedValues() {
+        PowerEgress egress = egress(50, 1000);
+        egress.offer(120, 0);
+        Assert.assertEquals(Decision.SEND, egress.offer(120, 1000));
+        Assert.assertEquals(1, counters.getRefreshed());
+        // the refresh counts as sent: the next one is due a full interval later
+        Assert.assertEquals(Decision.SUPPRESS, egress.offer(120, 1999));
+        Assert.assertEquals(Decision.SEND, egress.offer(120, 2000));
+    }
+
+    @Test
+    public void testNeverRefreshesWithoutInterval() {
+        PowerEgress egress = egress(50, 0);
+        egress.offer(120, 0);
+        Assert.assertEquals(Decision.SUPPRESS, egress.offer(120, 100000));
+    }
+
+    @Test
+    public void testSendsChangesWithinTheRate() {
+        PowerEgress egress = egress(50, 1000);
+        egress.offer(120, 0);
+        // 50 per second: one every 20 ms
+        Assert.assertEquals(Decision.SEND, egress.offer(140, 20));
+        Assert.assertEquals(140, egress.lastPower());
+        Assert.assertEquals(2, counters.getSent());
+    }
+
+    @Test
+    public void testDefersChangesBeyondTheRate() {
+        PowerEgress egress = egress(50, 1000);
+        egress.offer(120, 0);
+        Assert.assertEquals(Decision.DEFER, egress.offer(140, 5));
+        Assert.assertEquals(15, egress.delay(5));
+        Assert.assertEquals(120, egress.lastPower());
+        Assert.assertFalse(egress.flush(19));
+        Assert.assertTrue(egress.flush(20));
+        Assert.assertEquals(140, egress.lastPower());
+        // flushed once only
+        Assert.assertFalse(egress.flush(40));
+        Assert.assertEquals(1, counters.getDeferred());
+        Assert.assertEquals(2, counters.getSent());
+    }
+
+    @Test
+    public void testLaterValuesSupersedeDeferredOnes() {
+        PowerEgress egress = egress(50, 1000);
+        egress.offer(120, 0);
+        Assert.assertEquals(Decision.DEFER, egress.offer(140, 5));
+        Assert.assertEquals(Decision.DEFER, egress.offer(160, 10));
+        Assert.assertTrue(egress.flush(20));
+        Assert.assertEquals(160, egress.lastPower());
+        Assert.assertEquals(2, counters.getDeferred());
+        Assert.assertEquals(2, counters.getSent());
+    }
+
+    @Test
+    public void testReturningToTheSentValueDropsTheDeferredOne() {
+        PowerEgress egress = egress(50, 1000);
+        egress.offer(120, 0);
+        egress.offer(140, 5);
+        Assert.assertEquals(Decision.SUPPRESS, egress.offer(120, 10));
+        Assert.assertFalse(egress.flush(20));
+        Assert.assertEquals(120, egress.lastPower());
+    }
+
+    @Test
+    public void testNoRateLimit() {
+        PowerEgress egress = egress(0, 1000);
+        egress.offer(120, 0);
+        Assert.assertEquals(Decision.SEND, egress.offer(140, 0));
+        Assert.assertEquals(0, egress.delay(0));
+    }
+
+    @Test
+    public void testDisabledSendsEverything() {
+        EgressProperties properties = new EgressProperties();
+        properties.setEnabled(false);
+        PowerEgress egress = new PowerEgress(properties, counters);
+        egress.offer(120, 0);
+        Assert.assertEquals(Decision.SEND, egress.offer(120, 1));
+        Assert.assertEquals(Decision.SEND, egress.offer(140, 2));
+        Assert.assertEquals(3, counters.getSent());
+        Assert.assertEquals(0, counters.getSuppressed());
+    }
+
+    @Test
+    public void testResetSendsTheNextValue() {
+        PowerEgress egress = egress(50, 1000);
+        egress.offer(120, 0);
+        egress.offer(140, 5);
+        egress.reset();
+        Assert.assertFalse(egress.flush(100));
+        Assert.assertEquals(Decision.SEND, egress.offer(120, 6));
+    }
+
+    @Test
+    public void testAcceleratedReplayOnTheRecordedTimeLine() {
+        // sensor events every 20 ms of the recording, replayed at 10x: 2 ms apart on the wall clock
+        PowerEgress recorded = egress(50, 1000);
+        PowerEgress wallClock = egress(50, 1000);
+        int sentOnRecordedTime = 0;
+        int sentOnWallClock = 0;
+        for (int i = 0; i < 100; i++) {
+            int power = 100 + i % 2 * 20;
+            if (recorded.offer(power, i * 20) == Decision.SEND) {
+                sentOnRecordedTime++;
+            }
+            if (wallClock.offer(power, i * 2) == Decision.SEND) {
+                sentOnWallClock++;
+            }
+        }
+        // every change of the strategy is within the rate on the recorded time line
+        Assert.assertEquals(100, sentOnRecordedTime);
+        Assert.assertEquals(10, sentOnWallClock);
+    }
+
+    @Test
+    public void testRefreshesOnTheRecordedTimeLine() {
+        PowerEgress egress = egress(50, 1000);
+        int refreshes = 0;
+        // 3 s of an unchanged value, replayed as fast as possible
+        for (int i = 0; i <= 150; i++) {
+            if (egress.offer(120, i * 20) == Decision.SEND && i > 0) {
+                refreshes++;
+            }
+        }
+        Assert.assertEquals(3, refreshes);
+        Assert.assertEquals(3, counters.getRefreshed());
+    }
+
+    @Test
+    public void testResetBetweenTimeLines() {
+        // a replay starts its virtual clock at 0, long after the last value sent on the wall clock
+        PowerEgress egress = egress(50, 1000);
+        egress.offer(120, 1445000000000L);
+        egress.reset();
+        Assert.assertEquals(Decision.SEND, egress.offer(140, 0));
+        Assert.assertEquals(Decision.SEND, egress.offer(160, 20));
+    }
+
+    private PowerEgress egress(int maxRate, long refreshInterval) {
+        EgressProperties properties = new EgressProperties();
+        properties.setMaxRate(maxRate);
+        properties.setRefreshInterval(refreshInterval);
+        return new PowerEgress(properties, counters);
+    }
+}
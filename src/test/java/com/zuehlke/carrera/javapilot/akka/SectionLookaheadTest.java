@@ -0,0 +1,80 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SectionLookaheadTest {
+
+    // a straight of 1 s between two curves
+    private static final long[] LAP = {400, 1000, 500};
+    private static final int STRAIGHT = 1;
+
+    private final long brakingLead = new StrategyProperties().getBrakingLead();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyLap() {
+        new SectionLookahead(new long[0]);
+    }
+
+    @Test
+    public void testNothingAheadOfAnUnknownSection() {
+        Assert.assertEquals(Long.MAX_VALUE, new SectionLookahead(LAP).remaining(0));
+    }
+
+    @Test
+    public void testBrakesTheLeadBeforeTheCurve() {
+        SectionLookahead lookahead = new SectionLookahead(LAP);
+        lookahead.enter(STRAIGHT, 10000);
+        Assert.assertEquals(1000, lookahead.remaining(10000));
+        Assert.assertFalse(brakes(lookahead, 10000 + 1000 - brakingLead - 1));
+        Assert.assertTrue(brakes(lookahead, 10000 + 1000 - brakingLead));
+        // overdue
+        Assert.assertEquals(-50, lookahead.remaining(11050));
+    }
+
+    @Test
+    public void testBrakesEarlierOnAFasterStraight() {
+        SectionLookahead lookahead = new SectionLookahead(LAP);
+        lookahead.enter(STRAIGHT, 0);
+        lookahead.enter(STRAIGHT + 1, 800);
+        lookahead.enter(0, 1300);
+        lookahead.enter(STRAIGHT, 1700);
+        // half way from 1000 ms to the 800 ms observed
+        Assert.assertEquals(900, lookahead.remaining(1700));
+        Assert.assertFalse(brakes(lookahead, 1700 + 900 - brakingLead - 1));
+        Assert.assertTrue(brakes(lookahead, 1700 + 900 - brakingLead));
+    }
+
+    @Test
+    public void testLearnsOnlyFromConsecutiveSections() {
+        SectionLookahead lookahead = new SectionLookahead(LAP);
+        lookahead.enter(0, 0);
+        // the straight was missed, so the 700 ms aren't the curve's
+        lookahead.enter(STRAIGHT + 1, 700);
+        lookahead.enter(0, 1200);
+        Assert.assertEquals(400, lookahead.remaining(1200));
+        // this time the curve before the straight took 300 ms
+        lookahead.enter(STRAIGHT, 1500);
+        Assert.assertEquals(1000, lookahead.remaining(1500));
+        // the straight was left too early to learn from: back at the curve, which has learned
+        lookahead.enter(0, 2000);
+        Assert.assertEquals(Math.round(0.5 * 300 + 0.5 * 400), lookahead.remaining(2000));
+    }
+
+    @Test
+    public void testDoesntShareTheDurationsItWasGiven() {
+        long[] durations = LAP.clone();
+        SectionLookahead lookahead = new SectionLookahead(durations);
+        durations[STRAIGHT] = 0;
+        lookahead.enter(STRAIGHT, 0);
+        Assert.assertEquals(1000, lookahead.remaining(0));
+    }
+
+    /**
+     * the strategy's decision to leave the straight's power
+     */
+    private boolean brakes(SectionLookahead lookahead, long now) {
+        return lookahead.remaining(now) <= brakingLead;
+    }
+}
@@ -0,0 +1,112 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TrackPatternRecognizerTest {
+
+    private static final String LAP = "LSRSLSRRSL";
+
+    @Test
+    public void testRecognizesTwoLaps() {
+        TrackPatternRecognizer recognizer = new TrackPatternRecognizer();
+        String twoLaps = LAP + LAP;
+        for (int i = 0; i < twoLaps.length() - 1; i++) {
+            Assert.assertFalse(recognizer.accept(twoLaps.charAt(i)));
+        }
+        Assert.assertTrue(recognizer.accept(twoLaps.charAt(twoLaps.length() - 1)));
+        Assert.assertEquals(LAP, recognizer.lap());
+        Assert.assertEquals(0, recognizer.lapOffset());
+    }
+
+    @Test
+    public void testSkipsNoisyLeadingSections() {
+        for (String noise : new String[]{"R", "RS"}) {
+            TrackPatternRecognizer recognizer = new TrackPatternRecognizer();
+            Assert.assertTrue(noise, accept(recognizer, noise + LAP + LAP));
+            Assert.assertEquals(noise.length() + 2 * LAP.length(), recognizer.length());
+            Assert.assertEquals(LAP, recognizer.lap());
+            Assert.assertEquals(noise.length(), recognizer.lapOffset());
+        }
+    }
+
+    @Test
+    public void testNoiseBeyondTheAnchors() {
+        // three noisy sections are more than the default anchors skip: no anchor ever sees two equal laps
+        TrackPatternRecognizer recognizer = new TrackPatternRecognizer();
+        Assert.assertFalse(accept(recognizer, "RRR" + LAP + LAP + LAP));
+
+        TrackPatternRecognizer moreAnchors = new TrackPatternRecognizer(TrackPatternRecognizer.MIN_LAP_LENGTH, 3);
+        Assert.assertTrue(accept(moreAnchors, "RRR" + LAP + LAP));
+        Assert.assertEquals(3, moreAnchors.lapOffset());
+
+        TrackPatternRecognizer withoutAnchors = new TrackPatternRecognizer(TrackPatternRecognizer.MIN_LAP_LENGTH, 0);
+        Assert.assertFalse(accept(withoutAnchors, "R" + LAP + LAP));
+    }
+
+    @Test
+    public void testShortRepetitionsAreNoLap() {
+        TrackPatternRecognizer recognizer = new TrackPatternRecognizer();
+        // "LRLR" repeats after 2 sections already, but laps are at least 8 sections long
+        Assert.assertFalse(accept(recognizer, "LRLRLRLRLRLRLRL"));
+        Assert.assertTrue(recognizer.accept('R'));
+        Assert.assertEquals("LRLRLRLR", recognizer.lap());
+    }
+
+    @Test
+    public void testReset() {
+        TrackPatternRecognizer recognizer = new TrackPatternRecognizer();
+        Assert.assertTrue(accept(recognizer, LAP + LAP));
+        recognizer.reset();
+        Assert.assertFalse(recognizer.isRecognized());
+        Assert.assertEquals("", recognizer.lap());
+        Assert.assertEquals(-1, recognizer.lapOffset());
+        String other = "SSLRRLSLLR";
+        Assert.assertTrue(accept(recognizer, other + other));
+        Assert.assertEquals(other, recognizer.lap());
+    }
+
+    @Test
+    public void testMatchesStringComparison() {
+        Random random = new Random(7);
+        for (int run = 0; run < 500; run++) {
+            StringBuilder track = new StringBuilder();
+            int lapLength = 8 + random.nextInt(10);
+            for (int i = 0; i < lapLength; i++) {
+                track.append("LRS".charAt(random.nextInt(3)));
+            }
+            String lap = track.toString();
+            track.append(lap).append(lap);
+            // now and then a section is misdetected
+            if (random.nextBoolean()) {
+                track.setCharAt(random.nextInt(track.length()), 'S');
+            }
+            Assert.assertEquals(track.toString(), recognize(track.toString()), TrackPattern.recognize(track.toString()));
+        }
+    }
+
+    /**
+     * the string comparison TrackPattern used before, applied to every prefix as the track was discovered
+     */
+    private static String recognize(String track) {
+        for (int length = 1; length <= track.length(); length++) {
+            String input = track.substring(0, length);
+            for (int i = 8; i <= input.length() / 2; i++) {
+                if (input.substring(0, i).equals(input.substring(i, 2 * i))) {
+                    return input.substring(0, i);
+                }
+            }
+        }
+        return "";
+    }
+
+    private static boolean accept(TrackPatternRecognizer recognizer, String symbols) {
+        boolean recognized = false;
+        for (char symbol : symbols.toCharArray()) {
+            recognized = recognizer.accept(symbol);
+        }
+        return recognized;
+    }
+}
@@ -0,0 +1,86 @@
+package com.zuehlke.carrera.javapilot.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+public class DoubleRingBufferTest {
+
+    @Test
+    public void testEmpty() {
+        DoubleRingBuffer buffer = new DoubleRingBuffer(3);
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertFalse(buffer.isFull());
+        Assert.assertTrue(Double.isNaN(buffer.min()));
+        Assert.assertTrue(Double.isNaN(buffer.max()));
+        Assert.assertTrue(Double.isNaN(buffer.mean()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePositive() {
+        new DoubleRingBuffer(0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutsideWindow() {
+        DoubleRingBuffer buffer = new DoubleRingBuffer(3);
+        buffer.add(1);
+        buffer.get(1);
+    }
+
+    @Test
+    public void testMatchesNaiveWindow() {
+        Random random = new Random(42);
+        for (int capacity : new int[]{1, 2, 3, 10, 64}) {
+            DoubleRingBuffer buffer = new DoubleRingBuffer(capacity);
+            Deque<Double> window = new ArrayDeque<>();
+            for (int i = 0; i < 2000; i++) {
+                // few distinct values, so that the window often holds equal minima and maxima
+                double value = random.nextInt(7) - 3 + (i % 500 == 0 ? 1000 : 0);
+                buffer.add(value);
+                window.addLast(value);
+                if (window.size() > capacity) {
+                    window.removeFirst();
+                }
+                assertWindow(window, buffer);
+            }
+        }
+    }
+
+    @Test
+    public void testClear() {
+        DoubleRingBuffer buffer = new DoubleRingBuffer(3);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(i);
+        }
+        buffer.clear();
+        Assert.assertEquals(0, buffer.size());
+        buffer.add(-7);
+        Assert.assertEquals(-7, buffer.min(), 0);
+        Assert.assertEquals(-7, buffer.max(), 0);
+        Assert.assertEquals(-7, buffer.mean(), 0);
+        Assert.assertEquals(-7, buffer.last(), 0);
+    }
+
+    static void assertWindow(Deque<Double> window, DoubleRingBuffer buffer) {
+        Assert.assertEquals(window.size(), buffer.size());
+        Assert.assertEquals(window.size() == buffer.capacity(), buffer.isFull());
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        double sum = 0;
+        int index = 0;
+        for (double value : window) {
+            Assert.assertEquals(value, buffer.get(index++), 0);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+        }
+        Assert.assertEquals(window.peekLast(), buffer.last(), 0);
+        Assert.assertEquals(min, buffer.min(), 0);
+        Assert.assertEquals(max, buffer.max(), 0);
+        Assert.assertEquals(sum / window.size(), buffer.mean(), 1e-9);
+    }
+}
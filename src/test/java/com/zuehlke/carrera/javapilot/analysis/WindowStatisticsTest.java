@@ -0,0 +1,95 @@
+package com.zuehlke.carrera.javapilot.analysis;
+
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+public class WindowStatisticsTest {
+
+    @Test
+    public void testEmpty() {
+        WindowStatistics statistics = new WindowStatistics(SensorAxis.GYR_Z, 3);
+        Assert.assertTrue(Double.isNaN(statistics.mean()));
+        Assert.assertTrue(Double.isNaN(statistics.variance()));
+    }
+
+    @Test
+    public void testSingleValue() {
+        WindowStatistics statistics = new WindowStatistics(SensorAxis.GYR_Z, 3);
+        statistics.add(-500);
+        Assert.assertEquals(-500, statistics.mean(), 0);
+        Assert.assertEquals(0, statistics.variance(), 0);
+    }
+
+    @Test
+    public void testAddsTheValueOfItsAxis() {
+        WindowStatistics statistics = new WindowStatistics(SensorAxis.GYR_Z, 2);
+        Assert.assertEquals(7, statistics.add(sensorEvent(7)), 0);
+        Assert.assertEquals(8, statistics.add(sensorEvent(9)), 0);
+        Assert.assertEquals(2, statistics.variance(), 0);
+        Assert.assertEquals(SensorAxis.GYR_Z, statistics.axis());
+    }
+
+    @Test
+    public void testMatchesNaiveWindow() {
+        Random random = new Random(42);
+        for (int capacity : new int[]{1, 2, 3, 10, 64}) {
+            WindowStatistics statistics = new WindowStatistics(SensorAxis.GYR_Z, capacity);
+            Deque<Double> window = new ArrayDeque<>();
+            for (int i = 0; i < 2000; i++) {
+                // gyro-like values with the occasional spike
+                double value = random.nextGaussian() * 300 + (i % 500 == 0 ? 10000 : 0);
+                add(statistics, window, value);
+            }
+        }
+    }
+
+    @Test
+    public void testStaysAccurateOverALongRace() {
+        // beyond the period after which sum and variance are recomputed from the window
+        Random random = new Random(7);
+        WindowStatistics statistics = new WindowStatistics(SensorAxis.GYR_Z, 10);
+        Deque<Double> window = new ArrayDeque<>();
+        for (int i = 0; i < 200000; i++) {
+            add(statistics, window, 2000 + random.nextGaussian() * 500);
+        }
+    }
+
+    @Test
+    public void testClear() {
+        WindowStatistics statistics = new WindowStatistics(SensorAxis.GYR_Z, 3);
+        for (int i = 0; i < 5; i++) {
+            statistics.add(i * 100);
+        }
+        statistics.clear();
+        statistics.add(4);
+        statistics.add(6);
+        Assert.assertEquals(5, statistics.mean(), 0);
+        Assert.assertEquals(2, statistics.variance(), 0);
+    }
+
+    private static void add(WindowStatistics statistics, Deque<Double> window, double value) {
+        statistics.add(value);
+        window.addLast(value);
+        if (window.size() > statistics.capacity()) {
+            window.removeFirst();
+        }
+        DoubleRingBufferTest.assertWindow(window, statistics);
+        double mean = window.stream().mapToDouble(Double::doubleValue).average().getAsDouble();
+        double squares = 0;
+        for (double windowed : window) {
+            squares += (windowed - mean) * (windowed - mean);
+        }
+        double variance = window.size() == 1 ? 0 : squares / (window.size() - 1);
+        Assert.assertEquals(variance, statistics.variance(), 1e-6 * Math.max(1, variance));
+        Assert.assertEquals(Math.sqrt(variance), statistics.stDev(), 1e-6 * Math.max(1, Math.sqrt(variance)));
+    }
+
+    private static SensorEvent sensorEvent(int gyroZ) {
+        return new SensorEvent("track", new int[]{1, 2, 3}, new int[]{4, 5, gyroZ}, new int[]{7, 8, 9}, 0);
+    }
+}
@@ -0,0 +1,78 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.javapilot.io.TimedPenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A synthetic race for the benchmarks: sensor events and power controls at 50 Hz with the gyro-z of a track
+ * alternating between straights and left and right curves, a velocity message every two seconds, a round every
+ * eight seconds and a penalty every minute.
+ */
+public final class BenchmarkRace {
+
+    public static final String TRACK = "bench";
+
+    private BenchmarkRace() {
+    }
+
+    public static RaceStartMessage start() {
+        return new RaceStartMessage(TRACK, "training", "kobayashi", 0L, "benchmark", false);
+    }
+
+    public static SensorEvent sensorEvent(long timestamp) {
+        int gyroZ = (int) (3000 * Math.sin(timestamp / 1000.0));
+        return new SensorEvent(TRACK, new int[]{1, 2, 3}, new int[]{4, 5, gyroZ}, new int[]{7, 8, 9}, timestamp);
+    }
+
+    /**
+     * passes the recordable messages of the race to the sink in the order of their timestamps, without the
+     * race start. Penalties are timed, as they are recorded.
+     */
+    public static void generate(long durationMillis, Consumer<Object> sink) {
+        for (long t = 0; t < durationMillis; t += 20) {
+            sink.accept(sensorEvent(t));
+            sink.accept(new PowerControl(120, TRACK, TRACK, t + 1));
+            if (t % 2000 == 0) {
+                sink.accept(new VelocityMessage(TRACK, t + 2, 230.0, "1FDB"));
+            }
+            if (t % 8000 == 0) {
+                sink.accept(new RoundTimeMessage(TRACK, "kobayashi", t + 3, 8000));
+            }
+            if (t % 60000 == 0) {
+                sink.accept(new TimedPenaltyMessage(new PenaltyMessage(TRACK, "1FDB", 280, 250, 1000), t + 4));
+            }
+        }
+    }
+
+    /**
+     * @return the messages of the race the way the pilot receives them, without the race start and without
+     * the pilot's own power controls
+     */
+    public static List<Object> messages(long durationMillis) {
+        List<Object> messages = new ArrayList<>();
+        generate(durationMillis, message -> {
+            if (message instanceof TimedPenaltyMessage) {
+                messages.add(((TimedPenaltyMessage) message).getOriginal());
+            } else if (!(message instanceof PowerControl)) {
+                messages.add(message);
+            }
+        });
+        return messages;
+    }
+
+    /**
+     * records the race with the given player
+     * @return the tag of the recording
+     */
+    public static String record(RaceRecorderPlayer player, long durationMillis) {
+        String tag = player.record(start());
+        generate(durationMillis, player::recordMessage);
+        player.close();
+        return tag;
+    }
+}
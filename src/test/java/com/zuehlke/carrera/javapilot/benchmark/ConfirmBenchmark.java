@@ -0,0 +1,60 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.zuehlke.carrera.javapilot.metrics.ConfirmCounters;
+import com.zuehlke.carrera.javapilot.services.ConfirmingPublisher;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Power controls published with publisher confirms against a local stand-in for the broker, which confirms every
+ * message after ackDelay microseconds: waiting for each confirm, as in ConfirmDontLoseMessages, compared to the
+ * {@link ConfirmingPublisher}, which keeps a window of unconfirmed messages and supersedes the ones that don't fit.
+ * Throughput is the rate at which the pilot gets rid of its power controls, the sample time how long that takes.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfirmBenchmark {
+
+    @Param({"100", "1000"})
+    public long ackDelay;
+
+    @Param({"8"})
+    public int maxInFlight;
+
+    private StandInBroker broker;
+    private ConfirmingPublisher<PowerControl> publisher;
+    private PowerControl control;
+
+    @Setup
+    public void connect() throws IOException {
+        broker = new StandInBroker(ackDelay);
+        publisher = new ConfirmingPublisher<>(broker.channel(), maxInFlight,
+                (channel, message) -> channel.basicPublish("", "power", null, null), new ConfirmCounters());
+        control = new PowerControl(120, BenchmarkRace.TRACK, BenchmarkRace.TRACK, 1001);
+    }
+
+    @TearDown
+    public void disconnect() {
+        publisher.close();
+        broker.close();
+    }
+
+    @Benchmark
+    public void waitForEachConfirm() throws IOException, InterruptedException {
+        long sequenceNumber = broker.channel().getNextPublishSeqNo();
+        broker.channel().basicPublish("", "power", null, null);
+        broker.awaitConfirm(sequenceNumber);
+    }
+
+    @Benchmark
+    public void confirmAsynchronously() {
+        publisher.publish(control);
+    }
+}
@@ -0,0 +1,202 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.zuehlke.carrera.javapilot.akka.DispatchTable;
+import com.zuehlke.carrera.javapilot.akka.FlushPowerCommand;
+import com.zuehlke.carrera.javapilot.akka.PowerAction;
+import com.zuehlke.carrera.javapilot.akka.TracedPowerAction;
+import com.zuehlke.carrera.javapilot.io.NextEventCommand;
+import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
+import com.zuehlke.carrera.javapilot.io.StopReplayCommand;
+import com.zuehlke.carrera.javapilot.services.EndpointAnnouncement;
+import com.zuehlke.carrera.javapilot.services.PilotToRelayConnection;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Per-message dispatch cost of the pilot's actors: the instanceof chains of their onReceive methods versus
+ * a DispatchTable with the same handlers, each fed with the message mix the actor sees during a race.
+ * Only JavaPilotActor dispatches through a table: it handles over a dozen message types, and its second most
+ * frequent one, TracedPowerAction, would otherwise have to pass the checks of every rarer type before it.
+ * PowerUpUntilPenalty and RaceRecorderActor keep their instanceof chains: nearly all they receive are sensor
+ * events (and, for the recorder, power controls), which the first check of the chain already matches, so a
+ * table only adds the lookup of its handler.
+ * The chain of an actor is chosen once per trial, so that the call site of instanceofChain sees a single
+ * target, like the onReceive method of the actor.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+    private static final int MIX_SIZE = 64;
+
+    @Param({"JavaPilotActor", "PowerUpUntilPenalty", "RaceRecorderActor"})
+    public String actor;
+
+    private Object[] messages;
+    private int next;
+    private DispatchTable table;
+    private ToIntFunction<Object> chain;
+    private int handled;
+
+    @Setup
+    public void createMessages() {
+        SensorEvent sensor = new SensorEvent("bench", new int[]{1, 2, 3}, new int[]{4, 5, 600}, new int[]{7, 8, 9}, 0L);
+        messages = new Object[MIX_SIZE];
+        for (int i = 0; i < MIX_SIZE; i++) {
+            messages[i] = sensor;
+        }
+        switch (actor) {
+            case "JavaPilotActor":
+                // every sensor event is answered with a power action by the strategy
+                for (int i = 1; i < MIX_SIZE; i += 2) {
+                    messages[i] = new TracedPowerAction(120, 0L);
+                }
+                // deferred power values flushed by the scheduler, a power action outside of a sensor event
+                messages[9] = new FlushPowerCommand();
+                messages[33] = new FlushPowerCommand();
+                messages[21] = new PowerAction(120);
+                messages[10] = new VelocityMessage("bench", 0L, 230.0, "1FDB");
+                messages[42] = "ENSURE_CONNECTION";
+                table = pilotTable();
+                chain = DispatchBenchmark::pilotChain;
+                break;
+            case "PowerUpUntilPenalty":
+                messages[42] = new PenaltyMessage("bench", "1FDB", 280, 250, 1000);
+                table = strategyTable();
+                chain = DispatchBenchmark::strategyChain;
+                break;
+            case "RaceRecorderActor":
+                for (int i = 1; i < MIX_SIZE; i += 2) {
+                    messages[i] = new PowerControl(120, "bench", "bench", 0L);
+                }
+                messages[10] = new VelocityMessage("bench", 0L, 230.0, "1FDB");
+                messages[42] = new RoundTimeMessage("bench", "kobayashi", 0L, 8000);
+                table = recorderTable();
+                chain = DispatchBenchmark::recorderChain;
+                break;
+            default:
+                throw new IllegalArgumentException(actor);
+        }
+    }
+
+    private Object nextMessage() {
+        next = (next + 1) & (MIX_SIZE - 1);
+        return messages[next];
+    }
+
+    @Benchmark
+    public int instanceofChain() {
+        return chain.applyAsInt(nextMessage());
+    }
+
+    @Benchmark
+    public int dispatchTable() throws Exception {
+        table.dispatch(nextMessage());
+        return handled;
+    }
+
+    private DispatchTable pilotTable() {
+        return new DispatchTable(message -> handled = -1)
+                .on(SensorEvent.class, message -> handled = 5)
+                .on(TracedPowerAction.class, message -> handled = 13)
+                .on(PowerAction.class, message -> handled = 9)
+                .on(FlushPowerCommand.class, message -> handled = 14)
+                .on(VelocityMessage.class, message -> handled = 6)
+                .on(RoundTimeMessage.class, message -> handled = 11)
+                .on(PenaltyMessage.class, message -> handled = 10)
+                .on(RaceStartMessage.class, message -> handled = 3)
+                .on(RaceStopMessage.class, message -> handled = 4)
+                .on(StartReplayCommand.class, message -> handled = 1)
+                .on(StopReplayCommand.class, message -> handled = 2)
+                .on(PilotToRelayConnection.class, message -> handled = 7)
+                .on(EndpointAnnouncement.class, message -> handled = 8)
+                .on(String.class, message -> handled = 12);
+    }
+
+    private DispatchTable strategyTable() {
+        return new DispatchTable(message -> handled = -1)
+                .on(SensorEvent.class, message -> handled = 1)
+                .on(PenaltyMessage.class, message -> handled = 2)
+                .on(RaceStartMessage.class, message -> handled = 3);
+    }
+
+    private DispatchTable recorderTable() {
+        return new DispatchTable(message -> handled = -1)
+                .on(SensorEvent.class, message -> handled = 1)
+                .on(PowerControl.class, message -> handled = 1)
+                .on(VelocityMessage.class, message -> handled = 1)
+                .on(RoundTimeMessage.class, message -> handled = 1)
+                .on(PenaltyMessage.class, message -> handled = 2)
+                .on(RaceStartMessage.class, message -> handled = 1)
+                .on(RaceStopMessage.class, message -> handled = 1)
+                .on(StartReplayCommand.class, message -> handled = 3)
+                .on(NextEventCommand.class, message -> handled = 4);
+    }
+
+    // the chain of JavaPilotActor.onReceive before the DispatchTable, with the message types added since
+    private static int pilotChain(Object message) {
+        if (message instanceof StartReplayCommand) {
+            return 1;
+        } else if (message instanceof StopReplayCommand) {
+            return 2;
+        } else if (message instanceof RaceStartMessage) {
+            return 3;
+        } else if (message instanceof RaceStopMessage) {
+            return 4;
+        } else if (message instanceof SensorEvent) {
+            return 5;
+        } else if (message instanceof VelocityMessage) {
+            return 6;
+        } else if (message instanceof PilotToRelayConnection) {
+            return 7;
+        } else if (message instanceof EndpointAnnouncement) {
+            return 8;
+        } else if (message instanceof TracedPowerAction) {
+            return 13;
+        } else if (message instanceof PowerAction) {
+            return 9;
+        } else if (message instanceof PenaltyMessage) {
+            return 10;
+        } else if (message instanceof RoundTimeMessage) {
+            return 11;
+        } else if (message instanceof String) {
+            return 12;
+        } else if (message instanceof FlushPowerCommand) {
+            return 14;
+        }
+        return -1;
+    }
+
+    // the chain of PowerUpUntilPenalty.onReceive
+    private static int strategyChain(Object message) {
+        if (message instanceof SensorEvent) {
+            return 1;
+        } else if (message instanceof PenaltyMessage) {
+            return 2;
+        } else if (message instanceof RaceStartMessage) {
+            return 3;
+        }
+        return -1;
+    }
+
+    // the chain of RaceRecorderActor.onReceive while recording
+    private static int recorderChain(Object message) {
+        if (message instanceof SensorEvent || message instanceof PowerControl
+                || message instanceof VelocityMessage || message instanceof RaceStartMessage
+                || message instanceof RoundTimeMessage || message instanceof RaceStopMessage) {
+            return 1;
+        } else if (message instanceof PenaltyMessage) {
+            return 2;
+        } else if (message instanceof StartReplayCommand) {
+            return 3;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,111 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import com.typesafe.config.ConfigFactory;
+import com.zuehlke.carrera.javapilot.akka.JavaPilotActor;
+import com.zuehlke.carrera.javapilot.akka.PilotDispatchers;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
+import com.zuehlke.carrera.javapilot.services.PilotToRelayConnection;
+import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.HdrHistogram.Histogram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes a race through JavaPilotActor as fast as possible and waits for the power control answering the
+ * last of its sensor events and penalties to be sent to the relay. No race start is sent, so the pilot
+ * doesn't record the race, and the egress shaping is disabled, so that every event is answered. The pilot
+ * runs on akka's default dispatcher or on the pilot's own dispatchers.
+ * Besides the time per race, the trial prints the latency of every stage of the decision path as measured by
+ * the LatencyTracker, the sensor events entering the pilot when they are sent to it.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PilotEndToEndBenchmark {
+
+    @Param({"10"})
+    public int minutes;
+
+    @Param({"default", "pilot"})
+    public String dispatchers;
+
+    private ActorSystem system;
+    private ActorRef pilot;
+    private List<Object> race;
+    private int powerControls;
+    private volatile CountDownLatch sent;
+    private LatencyTracker latency;
+
+    @Setup(Level.Trial)
+    public void createPilot() {
+        race = BenchmarkRace.messages(TimeUnit.MINUTES.toMillis(minutes));
+        for (Object message : race) {
+            if (message instanceof SensorEvent || message instanceof PenaltyMessage) {
+                powerControls++;
+            }
+        }
+
+        latency = new LatencyTracker(LatencyTracker.CAPACITY);
+        PilotProperties properties = new PilotProperties();
+        properties.setName("benchmark");
+        properties.setAccessCode("benchmark");
+        properties.getEgress().setEnabled(false);
+        if (dispatchers.equals("pilot")) {
+            system = ActorSystem.create("end-to-end-benchmark",
+                    PilotDispatchers.config(properties.getDispatchers()).withFallback(ConfigFactory.load()));
+        } else {
+            system = ActorSystem.create("end-to-end-benchmark");
+        }
+        pilot = system.actorOf(PilotDispatchers.on(system, JavaPilotActor.props(properties, latency),
+                PilotDispatchers.PILOT));
+        pilot.tell(new PilotToRelayConnection() {
+            @Override
+            public void announce(String optionalUrl) {
+            }
+
+            @Override
+            public void send(PowerControl powerControl) {
+                sent.countDown();
+            }
+
+            @Override
+            public void ensureConnection() {
+            }
+        }, ActorRef.noSender());
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        system.shutdown();
+        system.awaitTermination();
+        for (LatencyTracker.Stage stage : LatencyTracker.Stage.values()) {
+            Histogram histogram = latency.histogram(stage);
+            System.out.printf("%n%s latency (us, %s dispatchers): p50 %d, p99 %d, p99.9 %d, max %d%n", stage,
+                    dispatchers, histogram.getValueAtPercentile(50.0), histogram.getValueAtPercentile(99.0),
+                    histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+        }
+    }
+
+    @Benchmark
+    public boolean race() throws InterruptedException {
+        sent = new CountDownLatch(powerControls);
+        for (Object message : race) {
+            if (message instanceof SensorEvent) {
+                latency.ingress(((SensorEvent) message).getTimeStamp());
+            }
+            pilot.tell(message, ActorRef.noSender());
+        }
+        return sent.await(1, TimeUnit.MINUTES);
+    }
+}
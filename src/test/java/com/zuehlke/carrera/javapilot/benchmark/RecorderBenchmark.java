@@ -0,0 +1,65 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of the race recorder for the two high-volume messages. Replay throughput is measured by
+ * {@link ReplayMergeBenchmark}.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecorderBenchmark {
+
+    private File dataDirectory;
+    private RaceRecorderPlayer player;
+    private SensorEvent event;
+    private PowerControl control;
+
+    @Setup(Level.Trial)
+    public void createMessages() throws IOException {
+        dataDirectory = Files.createTempDirectory("recorder-benchmark").toFile();
+        event = BenchmarkRace.sensorEvent(1000);
+        control = new PowerControl(120, BenchmarkRace.TRACK, BenchmarkRace.TRACK, 1001);
+    }
+
+    @Setup(Level.Iteration)
+    public void startRecording() throws InterruptedException {
+        // recordings are named by the second they start in
+        Thread.sleep(1000);
+        player = new RaceRecorderPlayer(dataDirectory.getAbsolutePath());
+        player.record(BenchmarkRace.start());
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopRecording() {
+        player.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void removeRecordings() throws IOException {
+        FileUtils.forceDelete(dataDirectory);
+    }
+
+    @Benchmark
+    public void recordSensorEvent() {
+        player.record(event);
+    }
+
+    @Benchmark
+    public void recordPowerControl() {
+        player.record(control);
+    }
+}
@@ -0,0 +1,79 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.zuehlke.carrera.javapilot.io.EndOfStreamException;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Replay throughput of multi-hour recordings of the {@link BenchmarkRace}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ReplayMergeBenchmark {
+
+    @Param({"1", "3"})
+    public int hours;
+
+    private File dataDirectory;
+    private RaceRecorderPlayer player;
+    private String tag;
+    private Supplier<Object> supplier;
+
+    @Setup(Level.Trial)
+    public void recordRace() throws IOException {
+        dataDirectory = Files.createTempDirectory("replay-benchmark").toFile();
+        player = new RaceRecorderPlayer(dataDirectory.getAbsolutePath());
+        tag = BenchmarkRace.record(player, TimeUnit.HOURS.toMillis(hours));
+    }
+
+    @TearDown(Level.Trial)
+    public void removeRace() throws IOException {
+        FileUtils.forceDelete(dataDirectory);
+    }
+
+    /**
+     * @return the number of messages of the complete race
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long replayCompleteRace() throws IOException {
+        Supplier<Object> race = player.getSupplier(tag);
+        long count = 0;
+        try {
+            while (race.get() != null) {
+                count++;
+            }
+        } catch (EndOfStreamException eose) {
+            // end of the race
+        }
+        return count;
+    }
+
+    /**
+     * @return the next message of an endless replay of the race
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object nextMessage() throws IOException {
+        try {
+            if (supplier != null) {
+                return supplier.get();
+            }
+        } catch (EndOfStreamException eose) {
+            // start over
+        }
+        supplier = player.getSupplier(tag);
+        return supplier.get();
+    }
+}
@@ -0,0 +1,70 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+import com.zuehlke.carrera.javapilot.io.CompactRelaySerializer;
+import com.zuehlke.carrera.javapilot.io.RaceRecordCodec;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a SensorEvent into its wire representation and back: JSON as sent through the relay,
+ * compared to the compact layout of the rabbitmq queues and the binary records of the race recorder.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializerBenchmark {
+
+    private final JacksonSerializer serializer = new JacksonSerializer();
+    private final RaceRecordCodec codec = new RaceRecordCodec();
+    private final CompactRelaySerializer compact = new CompactRelaySerializer();
+    private final ByteBuffer buffer = ByteBuffer.allocate(RaceRecordCodec.SENSOR_RECORD_SIZE);
+
+    private SensorEvent event;
+    private String json;
+
+    @Setup
+    public void createEvent() {
+        event = BenchmarkRace.sensorEvent(1000);
+        json = serializer.serialize(event);
+    }
+
+    @Benchmark
+    public String serializeJson() {
+        return serializer.serialize(event);
+    }
+
+    @Benchmark
+    public SensorEvent deserializeJson() {
+        return serializer.deserialize(json, SensorEvent.class);
+    }
+
+    @Benchmark
+    public SensorEvent roundTripJson() {
+        return serializer.deserialize(serializer.serialize(event), SensorEvent.class);
+    }
+
+    @Benchmark
+    public SensorEvent roundTripCompact() {
+        ByteBuffer body = compact.encode(event);
+        try {
+            return compact.deserialize(body.array(), CompactRelaySerializer.COMPACT_CONTENT_TYPE, SensorEvent.class);
+        } finally {
+            compact.release(body);
+        }
+    }
+
+    @Benchmark
+    public Object roundTripBinary() {
+        buffer.clear();
+        codec.encodeSensorEvent(event, buffer);
+        buffer.flip();
+        return codec.decode(buffer);
+    }
+}
@@ -0,0 +1,102 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * just enough of a channel in confirm mode: publishing assigns sequence numbers, the confirms follow on
+ * another thread after ackDelay microseconds, or, with a negative ackDelay, only when {@link #ack} or {@link #nack}
+ * is called.
+ */
+public class StandInBroker {
+
+    private final long ackDelay;
+    private final ScheduledExecutorService confirms = Executors.newSingleThreadScheduledExecutor();
+    private final Channel channel;
+    private final Object lock = new Object();
+    private ConfirmListener listener;
+    private long nextSequenceNumber = 1;
+    private long confirmed;
+
+    public StandInBroker(long ackDelay) {
+        this.ackDelay = ackDelay;
+        channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "addConfirmListener":
+                            listener = (ConfirmListener) args[0];
+                            return null;
+                        case "getNextPublishSeqNo":
+                            synchronized (lock) {
+                                return nextSequenceNumber;
+                            }
+                        case "basicPublish":
+                            publish();
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    public Channel channel() {
+        return channel;
+    }
+
+    /**
+     * @return the sequence number the next message will be published with
+     */
+    public long nextSequenceNumber() {
+        synchronized (lock) {
+            return nextSequenceNumber;
+        }
+    }
+
+    private void publish() {
+        long sequenceNumber;
+        synchronized (lock) {
+            sequenceNumber = nextSequenceNumber++;
+        }
+        if (ackDelay >= 0) {
+            confirms.schedule(() -> ack(sequenceNumber, false), ackDelay, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    public void ack(long sequenceNumber, boolean multiple) {
+        try {
+            listener.handleAck(sequenceNumber, multiple);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        synchronized (lock) {
+            confirmed = Math.max(confirmed, sequenceNumber);
+            lock.notifyAll();
+        }
+    }
+
+    public void nack(long sequenceNumber, boolean multiple) {
+        try {
+            listener.handleNack(sequenceNumber, multiple);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void awaitConfirm(long sequenceNumber) throws InterruptedException {
+        synchronized (lock) {
+            while (confirmed < sequenceNumber) {
+                lock.wait();
+            }
+        }
+    }
+
+    public void close() {
+        confirms.shutdownNow();
+    }
+}
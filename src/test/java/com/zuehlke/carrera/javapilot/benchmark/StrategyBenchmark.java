@@ -0,0 +1,63 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.testkit.TestActorRef;
+import com.zuehlke.carrera.javapilot.akka.PowerUpUntilPenalty;
+import com.zuehlke.carrera.javapilot.config.StrategyProperties;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of PowerUpUntilPenalty.handleSensorEvent: the sensor events of a race are passed to the strategy on
+ * the calling thread, its power actions go to an actor that drops them.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StrategyBenchmark {
+
+    private static final int EVENTS = 30000; // ten minutes at 50 Hz
+
+    private ActorSystem system;
+    private TestActorRef<PowerUpUntilPenalty> strategy;
+    private SensorEvent[] events;
+    private int next;
+
+    public static class Sink extends UntypedActor {
+        @Override
+        public void onReceive(Object message) {
+        }
+    }
+
+    @Setup
+    public void createStrategy() {
+        system = ActorSystem.create("strategy-benchmark");
+        ActorRef pilot = system.actorOf(Props.create(Sink.class));
+        strategy = TestActorRef.create(system, PowerUpUntilPenalty.props(pilot, new StrategyProperties()));
+
+        events = new SensorEvent[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            events[i] = BenchmarkRace.sensorEvent(20L * i);
+        }
+    }
+
+    @TearDown
+    public void shutdown() {
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    public void handleSensorEvent() {
+        strategy.receive(events[next]);
+        next = (next + 1) % EVENTS;
+    }
+}
@@ -0,0 +1,59 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.zuehlke.carrera.javapilot.akka.TrackPattern;
+import com.zuehlke.carrera.javapilot.akka.TrackPatternRecognizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lap recognition during discovery: a track of the given number of sections is discovered one section at a
+ * time, until its lap has been driven twice.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrackPatternBenchmark {
+
+    @Param({"8", "32", "128"})
+    public int sections;
+
+    private String track;
+
+    @Setup
+    public void createTrack() {
+        Random random = new Random(42);
+        StringBuilder lap = new StringBuilder();
+        for (int i = 0; i < sections; i++) {
+            lap.append(i % 2 == 0 ? 'S' : random.nextBoolean() ? 'L' : 'R');
+        }
+        track = lap.toString() + lap;
+    }
+
+    /**
+     * the string is extended and searched from the beginning for every section, as discovery used to do it
+     */
+    @Benchmark
+    public String recognizeEverySection() {
+        String lap = "";
+        for (int i = 1; i <= track.length() && lap.isEmpty(); i++) {
+            lap = TrackPattern.recognize(track.substring(0, i));
+        }
+        return lap;
+    }
+
+    @Benchmark
+    public String recognizeIncrementally() {
+        TrackPatternRecognizer recognizer = new TrackPatternRecognizer();
+        for (int i = 0; i < track.length(); i++) {
+            if (recognizer.accept(track.charAt(i))) {
+                break;
+            }
+        }
+        return recognizer.lap();
+    }
+}
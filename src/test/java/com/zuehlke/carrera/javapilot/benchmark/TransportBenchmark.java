@@ -0,0 +1,146 @@
+package com.zuehlke.carrera.javapilot.benchmark;
+
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+import com.zuehlke.carrera.javapilot.io.PilotLinkCodec;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one sensor-to-power exchange between simulator and pilot on the two remote transports: the rabbit
+ * path turns both messages into JSON message bodies and back, the WebSocket link into binary frames of
+ * {@link PilotLinkCodec}. The plain variants only encode and decode. The loopback variants also send the
+ * sensor event over a TCP connection on the loopback interface to a thread playing the pilot, which decodes
+ * it and answers with a power control, so they include the round trip of the payloads. The broker hops of
+ * rabbitmq and the WebSocket framing aren't part of either.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransportBenchmark {
+
+    private final JacksonSerializer serializer = new JacksonSerializer();
+    private final PilotLinkCodec simulatorEncoder = new PilotLinkCodec();
+    private final PilotLinkCodec pilotDecoder = new PilotLinkCodec();
+    private final PilotLinkCodec pilotEncoder = new PilotLinkCodec();
+    private final PilotLinkCodec simulatorDecoder = new PilotLinkCodec();
+
+    private static final byte JSON = 1;
+    private static final byte BINARY = 2;
+
+    private SensorEvent event;
+    private PowerControl control;
+
+    private ServerSocket server;
+    private Socket simulator;
+    private DataInputStream fromPilot;
+    private DataOutputStream toPilot;
+
+    @Setup
+    public void createMessages() {
+        event = BenchmarkRace.sensorEvent(1000);
+        control = new PowerControl(120, BenchmarkRace.TRACK, BenchmarkRace.TRACK, 1001);
+    }
+
+    @Benchmark
+    public void rabbitJson(Blackhole blackhole) {
+        byte[] sensorBody = serializer.serialize(event).getBytes(StandardCharsets.UTF_8);
+        blackhole.consume(serializer.deserialize(new String(sensorBody, StandardCharsets.UTF_8), SensorEvent.class));
+        byte[] powerBody = serializer.serialize(control).getBytes(StandardCharsets.UTF_8);
+        blackhole.consume(serializer.deserialize(new String(powerBody, StandardCharsets.UTF_8), PowerControl.class));
+    }
+
+    @Benchmark
+    public void webSocketBinary(Blackhole blackhole) {
+        ByteBuffer sensorFrame = simulatorEncoder.encode(event);
+        pilotDecoder.decode(sensorFrame, blackhole::consume);
+        ByteBuffer powerFrame = pilotEncoder.encode(control);
+        simulatorDecoder.decode(powerFrame, blackhole::consume);
+    }
+
+    @Setup(Level.Trial)
+    public void connect() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread pilot = new Thread(this::answer, "loopback-pilot");
+        pilot.setDaemon(true);
+        pilot.start();
+        simulator = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        simulator.setTcpNoDelay(true);
+        fromPilot = new DataInputStream(new BufferedInputStream(simulator.getInputStream()));
+        toPilot = new DataOutputStream(new BufferedOutputStream(simulator.getOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws IOException {
+        simulator.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Object rabbitJsonLoopback() throws IOException {
+        byte[] sensorBody = serializer.serialize(event).getBytes(StandardCharsets.UTF_8);
+        byte[] powerBody = exchange(JSON, sensorBody, 0, sensorBody.length);
+        return serializer.deserialize(new String(powerBody, StandardCharsets.UTF_8), PowerControl.class);
+    }
+
+    @Benchmark
+    public void webSocketBinaryLoopback(Blackhole blackhole) throws IOException {
+        ByteBuffer sensorFrame = simulatorEncoder.encode(event);
+        byte[] powerFrame = exchange(BINARY, sensorFrame.array(), sensorFrame.position(), sensorFrame.remaining());
+        simulatorDecoder.decode(ByteBuffer.wrap(powerFrame), blackhole::consume);
+    }
+
+    private byte[] exchange(byte transport, byte[] body, int offset, int length) throws IOException {
+        toPilot.writeByte(transport);
+        toPilot.writeInt(length);
+        toPilot.write(body, offset, length);
+        toPilot.flush();
+        byte[] answer = new byte[fromPilot.readInt()];
+        fromPilot.readFully(answer);
+        return answer;
+    }
+
+    // the pilot's end of the loopback connection, with codecs of its own
+    private void answer() {
+        JacksonSerializer json = new JacksonSerializer();
+        PilotLinkCodec decoder = new PilotLinkCodec();
+        PilotLinkCodec encoder = new PilotLinkCodec();
+        PowerControl answer = new PowerControl(120, BenchmarkRace.TRACK, BenchmarkRace.TRACK, 1001);
+        try (Socket socket = server.accept()) {
+            socket.setTcpNoDelay(true);
+            DataInputStream fromSimulator = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream toSimulator = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                byte transport = fromSimulator.readByte();
+                byte[] body = new byte[fromSimulator.readInt()];
+                fromSimulator.readFully(body);
+                byte[] reply;
+                if (transport == JSON) {
+                    json.deserialize(new String(body, StandardCharsets.UTF_8), SensorEvent.class);
+                    reply = json.serialize(answer).getBytes(StandardCharsets.UTF_8);
+                } else {
+                    decoder.decode(ByteBuffer.wrap(body), message -> {
+                    });
+                    reply = encoder.encode(answer).array();
+                }
+                toSimulator.writeInt(reply.length);
+                toSimulator.write(reply);
+                toSimulator.flush();
+            }
+        } catch (IOException e) {
+            // the benchmark closed the connection
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class CompactRelaySerializerTest {
+
+    private final CompactRelaySerializer encoder = new CompactRelaySerializer();
+    private final CompactRelaySerializer decoder = new CompactRelaySerializer();
+
+    @Test
+    public void testSensorEventRoundTrip() {
+        SensorEvent event = new SensorEvent("Berlin", new int[]{1, -2, 3}, new int[]{4, 5, -600},
+                new int[]{7, 8, Integer.MAX_VALUE}, 123456789L);
+        SensorEvent decoded = roundTrip(event, SensorEvent.class);
+        Assert.assertEquals("Berlin", decoded.getRaceTrackId());
+        Assert.assertEquals(123456789L, decoded.getTimeStamp());
+        Assert.assertArrayEquals(event.getA(), decoded.getA());
+        Assert.assertArrayEquals(event.getG(), decoded.getG());
+        Assert.assertArrayEquals(event.getM(), decoded.getM());
+    }
+
+    @Test
+    public void testPowerControlRoundTrip() {
+        PowerControl decoded = roundTrip(new PowerControl(180, "kobayashi", "secret", 42L), PowerControl.class);
+        Assert.assertEquals(180, decoded.getP());
+        Assert.assertEquals("kobayashi", decoded.getTeamId());
+        Assert.assertEquals("secret", decoded.getAccessCode());
+        Assert.assertEquals(42L, decoded.getTimeStamp());
+    }
+
+    @Test
+    public void testNullStrings() {
+        PowerControl decoded = roundTrip(new PowerControl(180, null, "secret", 42L), PowerControl.class);
+        Assert.assertNull(decoded.getTeamId());
+        Assert.assertEquals("secret", decoded.getAccessCode());
+        Assert.assertNull(roundTrip(sensorEvent(null, 1), SensorEvent.class).getRaceTrackId());
+    }
+
+    @Test
+    public void testChangingStrings() {
+        // the cached strings of both sides are replaced, and the pooled buffers grow with the track id
+        String[] tracks = {"Dubai", "Dubai", "Oerlikon-with-a-long-name", "Budapest", "Dubai", "Z\u00fcrich"};
+        for (int i = 0; i < tracks.length; i++) {
+            ByteBuffer buffer = encoder.encode(sensorEvent(tracks[i], i));
+            int size = CompactRelaySerializer.SENSOR_SIZE + 2 + tracks[i].getBytes(StandardCharsets.UTF_8).length;
+            Assert.assertEquals(size, buffer.remaining());
+            Assert.assertEquals(size, buffer.array().length);
+            SensorEvent decoded = decoder.decode(ByteBuffer.wrap(buffer.array()), SensorEvent.class);
+            encoder.release(buffer);
+            Assert.assertEquals(tracks[i], decoded.getRaceTrackId());
+            Assert.assertEquals(i, decoded.getTimeStamp());
+        }
+    }
+
+    @Test
+    public void testDeserializeByContentType() {
+        SensorEvent event = sensorEvent("Berlin", 7);
+        ByteBuffer compact = encoder.encode(event);
+        Assert.assertEquals(7, decoder.deserialize(compact.array(), CompactRelaySerializer.COMPACT_CONTENT_TYPE,
+                SensorEvent.class).getTimeStamp());
+        byte[] json = encoder.serialize(event).getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(7, decoder.deserialize(json, CompactRelaySerializer.JSON_CONTENT_TYPE,
+                SensorEvent.class).getTimeStamp());
+        Assert.assertEquals(7, decoder.deserialize(json, null, SensorEvent.class).getTimeStamp());
+    }
+
+    @Test
+    public void testSupports() {
+        Assert.assertTrue(encoder.supports(sensorEvent("Berlin", 1)));
+        Assert.assertTrue(encoder.supports(new PowerControl(180, "kobayashi", "secret", 42L)));
+        Assert.assertFalse(encoder.supports(new VelocityMessage("Berlin", 1L, 230.0, "1FDB")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeUnsupportedType() {
+        encoder.encode(new VelocityMessage("Berlin", 1L, 230.0, "1FDB"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDecodeUnknownType() {
+        ByteBuffer buffer = ByteBuffer.allocate(CompactRelaySerializer.POWER_SIZE);
+        buffer.put(RaceRecordCodec.VELOCITY).putLong(1L).putInt(0).flip();
+        decoder.decode(buffer, PowerControl.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeOtherTypeThanExpected() {
+        ByteBuffer buffer = encoder.encode(sensorEvent("Berlin", 1));
+        decoder.decode(buffer, PowerControl.class);
+    }
+
+    @Test
+    public void testPoolReusesReleasedBuffers() {
+        BufferPool pool = new BufferPool(2);
+        ByteBuffer buffer = pool.acquire(16);
+        buffer.putInt(1);
+        pool.release(buffer);
+        ByteBuffer reused = pool.acquire(16);
+        Assert.assertSame(buffer, reused);
+        Assert.assertEquals(0, reused.position());
+        Assert.assertEquals(16, reused.limit());
+        // another size is a new buffer of exactly that size
+        ByteBuffer other = pool.acquire(17);
+        Assert.assertNotSame(buffer, other);
+        Assert.assertEquals(17, other.capacity());
+    }
+
+    @Test
+    public void testPoolKeepsFewBuffersPerSize() {
+        BufferPool pool = new BufferPool(2);
+        ByteBuffer first = pool.acquire(16);
+        ByteBuffer second = pool.acquire(16);
+        ByteBuffer third = pool.acquire(16);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        Assert.assertSame(first, pool.acquire(16));
+        Assert.assertSame(second, pool.acquire(16));
+        Assert.assertNotSame(third, pool.acquire(16));
+    }
+
+    @Test
+    public void testPoolKeepsFewSizes() {
+        BufferPool pool = new BufferPool(2);
+        for (int size = 1; size <= 16; size++) {
+            pool.release(pool.acquire(size));
+        }
+        ByteBuffer buffer = pool.acquire(100);
+        pool.release(buffer);
+        Assert.assertNotSame(buffer, pool.acquire(100));
+        ByteBuffer pooled = pool.acquire(16);
+        pool.release(pooled);
+        Assert.assertSame(pooled, pool.acquire(16));
+    }
+
+    private <T> T roundTrip(Object message, Class<T> type) {
+        ByteBuffer buffer = encoder.encode(message);
+        try {
+            return decoder.decode(ByteBuffer.wrap(buffer.array()), type);
+        } finally {
+            encoder.release(buffer);
+        }
+    }
+
+    private static SensorEvent sensorEvent(String track, long timestamp) {
+        return new SensorEvent(track, new int[]{1, 2, 3}, new int[]{4, 5, 6}, new int[]{7, 8, 9}, timestamp);
+    }
+}
@@ -0,0 +1,102 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class MappedRecordSourceTest {
+
+    private static final int EVENTS = 5 * RaceRecordIndex.INTERVAL + 17;
+
+    private Path directory;
+    private Path recording;
+
+    @Before
+    public void writeRecording() throws IOException {
+        directory = Files.createTempDirectory("mapped-record-source");
+        recording = directory.resolve("events");
+        try (RaceRecordWriter writer = new RaceRecordWriter(recording)) {
+            for (int i = 0; i < EVENTS; i++) {
+                // pairs of equal timestamps, some of them across index entries, and a new track every 100 events
+                writer.write(new SensorEvent("track" + i / 100, new int[3], new int[]{0, 0, i}, new int[3], i / 2));
+            }
+        }
+    }
+
+    @After
+    public void removeRecording() throws IOException {
+        FileUtils.forceDelete(directory.toFile());
+    }
+
+    @Test
+    public void testIndexIsWrittenOnClose() throws IOException {
+        RaceRecordIndex index = RaceRecordIndex.read(RaceRecordIndex.of(recording), Files.size(recording));
+        Assert.assertNotNull(index);
+        Assert.assertEquals(EVENTS, index.records());
+    }
+
+    @Test
+    public void testSeekFindsFirstRecordNotBefore() throws IOException {
+        MappedRecordSource source = new MappedRecordSource(recording);
+        Assert.assertEquals(EVENTS, source.size());
+        assertSeeks(source);
+    }
+
+    @Test
+    public void testSeekWithoutIndex() throws IOException {
+        Files.delete(RaceRecordIndex.of(recording));
+        assertSeeks(new MappedRecordSource(recording));
+    }
+
+    @Test
+    public void testStaleIndexIsIgnored() throws IOException {
+        // a record appended after the index was written: the index doesn't cover the recording anymore
+        ByteBuffer record = ByteBuffer.allocate(RaceRecordCodec.SENSOR_RECORD_SIZE);
+        record.put(RaceRecordCodec.SENSOR).putLong(10000);
+        Files.write(recording, record.array(), StandardOpenOption.APPEND);
+        MappedRecordSource source = new MappedRecordSource(recording);
+        Assert.assertEquals(EVENTS + 1, source.size());
+        source.seek(3);
+        Assert.assertEquals(6, ((SensorEvent) source.next()).getG()[2]);
+        source.seek(EVENTS);
+        Assert.assertNotNull(source.next());
+        Assert.assertEquals(10000, source.timestamp());
+    }
+
+    @Test
+    public void testSeekRecord() throws IOException {
+        MappedRecordSource source = new MappedRecordSource(recording);
+        for (int n : new int[]{0, 1, RaceRecordIndex.INTERVAL - 1, RaceRecordIndex.INTERVAL, 300, EVENTS - 1}) {
+            source.seekRecord(n);
+            SensorEvent event = (SensorEvent) source.next();
+            Assert.assertEquals(n, event.getG()[2]);
+            Assert.assertEquals("track" + n / 100, event.getRaceTrackId());
+        }
+        source.seekRecord(EVENTS);
+        Assert.assertNull(source.next());
+    }
+
+    private void assertSeeks(MappedRecordSource source) {
+        for (long timestamp = -1; timestamp <= EVENTS / 2 + 1; timestamp++) {
+            source.seek(timestamp);
+            SensorEvent event = (SensorEvent) source.next();
+            if (timestamp > (EVENTS - 1) / 2) {
+                Assert.assertNull(event);
+                continue;
+            }
+            int expected = (int) Math.max(0, 2 * timestamp);
+            Assert.assertEquals(expected, event.getG()[2]);
+            Assert.assertEquals(Math.max(0, timestamp), source.timestamp());
+            Assert.assertEquals("track" + expected / 100, event.getRaceTrackId());
+        }
+    }
+}
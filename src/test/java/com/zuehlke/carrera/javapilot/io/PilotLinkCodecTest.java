@@ -0,0 +1,78 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PilotLinkCodecTest {
+
+    @Test
+    public void testPowerControlsBelongToThePilotOfTheLink() {
+        PilotLinkCodec encoder = new PilotLinkCodec();
+        PilotLinkCodec decoder = new PilotLinkCodec("kobayashi", "secret");
+        PowerControl control = (PowerControl) decodeOne(decoder, encoder.encode(
+                new PowerControl(140, "someone", "else", 1234L)));
+        Assert.assertEquals(140, control.getP());
+        Assert.assertEquals(1234L, control.getTimeStamp());
+        Assert.assertEquals("kobayashi", control.getTeamId());
+        Assert.assertEquals("secret", control.getAccessCode());
+    }
+
+    @Test
+    public void testPowerControlsWithoutPilotBelongToTheRecordedOne() {
+        PowerControl control = (PowerControl) decodeOne(new PilotLinkCodec(), new PilotLinkCodec().encode(
+                new PowerControl(140, "someone", "else", 1234L)));
+        Assert.assertEquals(RaceRecordCodec.RECORDED_PILOT, control.getTeamId());
+        Assert.assertEquals(RaceRecordCodec.RECORDED_ACCESS_CODE, control.getAccessCode());
+    }
+
+    @Test
+    public void testTrackIdIsSentOnceUntilReset() {
+        PilotLinkCodec encoder = new PilotLinkCodec();
+        ByteBuffer first = encoder.encode(sensorEvent(1));
+        ByteBuffer second = encoder.encode(sensorEvent(2));
+        Assert.assertTrue(first.remaining() > RaceRecordCodec.SENSOR_RECORD_SIZE);
+        Assert.assertEquals(RaceRecordCodec.SENSOR_RECORD_SIZE, second.remaining());
+
+        PilotLinkCodec decoder = new PilotLinkCodec();
+        Assert.assertEquals("track", ((SensorEvent) decodeOne(decoder, first)).getRaceTrackId());
+        SensorEvent event = (SensorEvent) decodeOne(decoder, second);
+        Assert.assertEquals("track", event.getRaceTrackId());
+        Assert.assertEquals(2, event.getTimeStamp());
+        Assert.assertEquals(7, event.getG()[2]);
+
+        // a new pilot needs the track id again
+        encoder.resetTrack();
+        Assert.assertEquals("track", ((SensorEvent) decodeOne(new PilotLinkCodec(),
+                encoder.encode(sensorEvent(3)))).getRaceTrackId());
+    }
+
+    @Test
+    public void testPenaltiesArriveAsPenaltyMessages() {
+        PenaltyMessage penalty = (PenaltyMessage) decodeOne(new PilotLinkCodec(),
+                new PilotLinkCodec().encode(new PenaltyMessage("track", "1FDB", 280, 250, 1000)));
+        Assert.assertEquals(280, penalty.getActualSpeed(), 0);
+    }
+
+    @Test
+    public void testUnsupportedMessages() {
+        Assert.assertNull(new PilotLinkCodec().encode("ENSURE_CONNECTION"));
+    }
+
+    private static SensorEvent sensorEvent(long timestamp) {
+        return new SensorEvent("track", new int[]{1, 2, 3}, new int[]{4, 5, 7}, new int[]{8, 9, 10}, timestamp);
+    }
+
+    private static Object decodeOne(PilotLinkCodec decoder, ByteBuffer frame) {
+        List<Object> messages = new ArrayList<>();
+        decoder.decode(frame, messages::add);
+        Assert.assertEquals(1, messages.size());
+        return messages.get(0);
+    }
+}
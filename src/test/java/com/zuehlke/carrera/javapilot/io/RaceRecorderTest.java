@@ -9,6 +9,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
@@ -76,6 +77,7 @@ public class RaceRecorderTest {
         recorder.record(new VelocityMessage("sim02", 22, 22, "1FDB"));
         recorder.record(new PenaltyMessage("sim02", "1FDB", 23, 20, 2000), 23L);
         recorder.record(new PenaltyMessage("sim02", "1FDB", 26, 20, 2000), 26L);
+        recorder.record(new RoundTimeMessage("sim02", "kobayashi", 24, 5000));
 
         recorder.close();
         Stream<Object> objectStream = recorder.replay(tag);
@@ -96,10 +98,98 @@ public class RaceRecorderTest {
         Assert.assertEquals(objectList.get(4).getClass(), VelocityMessage.class);
         Assert.assertEquals(objectList.get(5).getClass(), VelocityMessage.class);
         Assert.assertEquals(objectList.get(6).getClass(), PenaltyMessage.class);
-        Assert.assertEquals(objectList.get(7).getClass(), PowerControl.class);
-        Assert.assertEquals(objectList.get(8).getClass(), PenaltyMessage.class);
+        Assert.assertEquals(objectList.get(7).getClass(), RoundTimeMessage.class);
+        Assert.assertEquals(objectList.get(8).getClass(), PowerControl.class);
+        Assert.assertEquals(objectList.get(9).getClass(), PenaltyMessage.class);
     }
 
+    @Test
+    public void testReplayWindow() throws IOException {
+        RaceRecorderPlayer recorder = new RaceRecorderPlayer("testdata");
+        String tag = recorder.record(new RaceStartMessage("sim02", "training", "kobayashi", System.currentTimeMillis(), "description", true));
+        for (int i = 1; i <= 10; i++) {
+            recorder.record(createEvent(i, i * 10));
+        }
+        recorder.close();
+
+        RaceReplay replay = recorder.getSupplier(tag, ReplayWindow.ofTime(20, 40));
+        List<Object> objectList = new ArrayList<>();
+        try {
+            while (true) {
+                objectList.add(replay.get());
+            }
+        } catch (EndOfStreamException eose) {
+            // ignore: We use this to end the otherwise infinite stream;
+        }
+        Assert.assertEquals(4, objectList.size());
+        Assert.assertEquals(RaceStartMessage.class, objectList.get(0).getClass());
+        Assert.assertEquals(30, ((SensorEvent) objectList.get(1)).getTimeStamp());
+        Assert.assertEquals(50, ((SensorEvent) objectList.get(3)).getTimeStamp());
+    }
+
+    @Test
+    public void testReplayLaps() throws IOException {
+        RaceRecorderPlayer recorder = new RaceRecorderPlayer("testdata");
+        String tag = recorder.record(new RaceStartMessage("sim02", "training", "kobayashi", System.currentTimeMillis(), "description", true));
+        for (int i = 1; i <= 10; i++) {
+            recorder.record(createEvent(i, i * 10));
+            if (i % 4 == 0) {
+                recorder.record(new RoundTimeMessage("sim02", "kobayashi", i * 10 + 5, 40));
+            }
+        }
+        recorder.close();
+
+        List<Object> objectList = replayAll(recorder.getSupplier(tag, ReplayWindow.ofLaps(2, 2)));
+        Assert.assertEquals(RaceStartMessage.class, objectList.get(0).getClass());
+        Assert.assertEquals(RoundTimeMessage.class, objectList.get(1).getClass());
+        Assert.assertEquals(50, ((SensorEvent) objectList.get(2)).getTimeStamp());
+        Assert.assertEquals(80, ((SensorEvent) objectList.get(5)).getTimeStamp());
+        Assert.assertEquals(RoundTimeMessage.class, objectList.get(6).getClass());
+        Assert.assertEquals(7, objectList.size());
+
+        objectList = replayAll(recorder.getSupplier(tag, ReplayWindow.ofLaps(3, 5)));
+        Assert.assertEquals(90, ((SensorEvent) objectList.get(2)).getTimeStamp());
+        Assert.assertEquals(4, objectList.size());
+    }
+
+    @Test
+    public void testReplayWindowOfEmptyRace() throws IOException {
+        RaceRecorderPlayer recorder = new RaceRecorderPlayer("testdata");
+        String tag = recorder.record(new RaceStartMessage("sim02", "training", "kobayashi", System.currentTimeMillis(), "description", true));
+        recorder.close();
+
+        List<Object> objectList = replayAll(recorder.getSupplier(tag, ReplayWindow.ofTime(20, 40)));
+        Assert.assertEquals(1, objectList.size());
+        Assert.assertEquals(RaceStartMessage.class, objectList.get(0).getClass());
+    }
+
+    private List<Object> replayAll(RaceReplay replay) {
+        List<Object> objectList = new ArrayList<>();
+        try {
+            while (true) {
+                objectList.add(replay.get());
+            }
+        } catch (EndOfStreamException eose) {
+            // ignore: We use this to end the otherwise infinite stream;
+        }
+        return objectList;
+    }
+
+    @Test
+    public void testExportJson() throws IOException {
+        RaceRecorderPlayer recorder = new RaceRecorderPlayer("testdata");
+        String tag = recorder.record(new RaceStartMessage("sim02", "training", "kobayashi", System.currentTimeMillis(), "description", true));
+        recorder.record(createEvent(10, 10));
+        recorder.record(createEvent(20, 20));
+        recorder.record(new PowerControl(15, "koba", "pwd", 15));
+        recorder.close();
+
+        File exported = recorder.exportJson(tag);
+        Assert.assertEquals(1, Files.readAllLines(new File(exported, "start.json").toPath()).size());
+        Assert.assertEquals(2, Files.readAllLines(new File(exported, "events.json").toPath()).size());
+        Assert.assertEquals(1, Files.readAllLines(new File(exported, "power.json").toPath()).size());
+        Assert.assertEquals(0, Files.readAllLines(new File(exported, "penalties.json").toPath()).size());
+    }
 
     private SensorEvent createEvent(int g2, long t) {
         return new SensorEvent("track", new int[]{1, 2, 4}, new int[]{0, 0, g2}, new int[]{6, 7, 8}, t);
@@ -0,0 +1,165 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import com.zuehlke.carrera.javapilot.akka.RaceRecorderActor;
+import com.zuehlke.carrera.javapilot.config.RecorderProperties;
+import com.zuehlke.carrera.javapilot.metrics.RecorderCounters;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindRecorderTest {
+
+    @Before
+    public void createTestDataDirectory() throws Exception {
+        File testDataDirectory = new File("testdata");
+        if (!testDataDirectory.mkdir()) {
+            throw new RuntimeException("Could not create " + testDataDirectory.getAbsolutePath());
+        }
+    }
+
+    @After
+    public void removeTestDataDirectory() throws IOException {
+        FileUtils.forceDelete(new File("testdata"));
+    }
+
+    @Test
+    public void testDropsWhenQueueIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RaceRecorderPlayer player = new RaceRecorderPlayer("testdata") {
+            @Override
+            public boolean recordMessage(Object message) {
+                if (message instanceof SensorEvent && ((SensorEvent) message).getTimeStamp() == 0) {
+                    blocked.countDown();
+                    await(release);
+                }
+                return super.recordMessage(message);
+            }
+        };
+        RecorderCounters counters = new RecorderCounters();
+        WriteBehindRecorder recorder = new WriteBehindRecorder(player, properties(4), counters);
+
+        recorder.record(createStart());
+        recorder.record(createEvent(0));
+        await(blocked);
+        // the writer is stuck in the first event: 4 of these fit into the queue
+        for (int i = 1; i <= 10; i++) {
+            recorder.record(createEvent(i));
+        }
+        Assert.assertEquals(6, recorder.getDropped());
+        Assert.assertEquals(6, counters.getDropped());
+
+        release.countDown();
+        recorder.close();
+        Assert.assertEquals(6, recorder.getRecorded());
+        Assert.assertEquals(6, counters.getRecorded());
+        Assert.assertEquals(0, counters.getFailed());
+        Assert.assertEquals(5, recordedEvents().size());
+    }
+
+    @Test
+    public void testFailedMessageOnlyCostsItself() throws Exception {
+        RaceRecorderPlayer player = new RaceRecorderPlayer("testdata") {
+            @Override
+            public boolean recordMessage(Object message) {
+                if (message instanceof SensorEvent && ((SensorEvent) message).getTimeStamp() == 2) {
+                    throw new RuntimeException("disk full");
+                }
+                return super.recordMessage(message);
+            }
+        };
+        RecorderCounters counters = new RecorderCounters();
+        WriteBehindRecorder recorder = new WriteBehindRecorder(player, properties(64), counters);
+
+        recorder.record(createStart());
+        for (int i = 1; i <= 4; i++) {
+            recorder.record(createEvent(i));
+        }
+        recorder.close();
+
+        Assert.assertEquals(1, recorder.getDropped());
+        Assert.assertEquals(1, counters.getFailed());
+        Assert.assertEquals(1, counters.getDropped());
+        Assert.assertEquals(4, recorder.getRecorded());
+        List<Object> events = recordedEvents();
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(3, ((SensorEvent) events.get(1)).getTimeStamp());
+    }
+
+    @Test
+    public void testRecorderActorWritesPendingMessagesOnStop() throws Exception {
+        RecorderProperties properties = properties(64);
+        // no periodic flush: only stopping the actor gets the events to disk
+        properties.setFlushInterval(60000);
+        ActorSystem system = ActorSystem.create("write-behind-test");
+        RaceRecorderPlayer player = new RaceRecorderPlayer("testdata");
+        RecorderCounters counters = new RecorderCounters();
+        TestActorRef<RaceRecorderActor> actor = TestActorRef.create(system, Props.create(RaceRecorderActor.class,
+                () -> new RaceRecorderActor(null, properties, counters, player)));
+
+        actor.tell(createStart(), null);
+        for (int i = 1; i <= 3; i++) {
+            actor.tell(createEvent(i), null);
+        }
+        system.shutdown();
+        system.awaitTermination();
+
+        Assert.assertEquals(3, recordedEvents().size());
+        // the start and the events, counted by the actor's own counters
+        Assert.assertEquals(4, counters.getRecorded());
+    }
+
+    private RecorderProperties properties(int queueSize) {
+        RecorderProperties properties = new RecorderProperties();
+        properties.setWriteBehind(true);
+        properties.setQueueSize(queueSize);
+        properties.setFlushSize(2);
+        properties.setOverflowPolicy(RecorderProperties.OverflowPolicy.DROP);
+        return properties;
+    }
+
+    private List<Object> recordedEvents() {
+        RaceRecorderPlayer player = new RaceRecorderPlayer("testdata");
+        List<Object> events = new ArrayList<>();
+        try {
+            player.replay(player.races().get(0)).forEach(o -> {
+                if (o instanceof SensorEvent) {
+                    events.add(o);
+                }
+            });
+        } catch (EndOfStreamException eose) {
+            // ignore: We use this to end the otherwise infinite stream;
+        }
+        return events;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private RaceStartMessage createStart() {
+        return new RaceStartMessage("sim02", "training", "kobayashi", System.currentTimeMillis(), "description", true);
+    }
+
+    private SensorEvent createEvent(long t) {
+        return new SensorEvent("track", new int[]{1, 2, 4}, new int[]{0, 0, 7}, new int[]{6, 7, 8}, t);
+    }
+}
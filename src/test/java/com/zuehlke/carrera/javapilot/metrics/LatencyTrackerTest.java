@@ -0,0 +1,49 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker.Stage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyTrackerTest {
+
+    @Test
+    public void testRecordsStagesOfTrackedEvents() {
+        LatencyTracker tracker = new LatencyTracker(4);
+        tracker.ingress(100);
+        tracker.record(Stage.PILOT, 100);
+        tracker.record(Stage.EGRESS, 100);
+        // never arrived
+        tracker.record(Stage.EGRESS, 101);
+        Assert.assertEquals(1, tracker.histogram(Stage.PILOT).getTotalCount());
+        Assert.assertEquals(1, tracker.histogram(Stage.EGRESS).getTotalCount());
+        Assert.assertEquals(0, tracker.histogram(Stage.STRATEGY).getTotalCount());
+    }
+
+    @Test
+    public void testDropsOverwrittenEvents() {
+        LatencyTracker tracker = new LatencyTracker(4);
+        tracker.ingress(100);
+        // same slot of the ring
+        tracker.ingress(104);
+        tracker.record(Stage.PILOT, 100);
+        Assert.assertEquals(0, tracker.histogram(Stage.PILOT).getTotalCount());
+        tracker.record(Stage.PILOT, 104);
+        Assert.assertEquals(1, tracker.histogram(Stage.PILOT).getTotalCount());
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        LatencyTracker.DISABLED.ingress(100);
+        LatencyTracker.DISABLED.record(Stage.PILOT, 100);
+        Assert.assertEquals(0, LatencyTracker.DISABLED.histogram(Stage.PILOT).getTotalCount());
+    }
+
+    @Test
+    public void testReset() {
+        LatencyTracker tracker = new LatencyTracker(4);
+        tracker.ingress(1);
+        tracker.record(Stage.STRATEGY, 1);
+        tracker.reset();
+        Assert.assertEquals(0, tracker.histogram(Stage.STRATEGY).getTotalCount());
+    }
+}
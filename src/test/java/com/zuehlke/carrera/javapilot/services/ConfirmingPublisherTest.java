@@ -0,0 +1,149 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.javapilot.benchmark.StandInBroker;
+import com.zuehlke.carrera.javapilot.metrics.ConfirmCounters;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+public class ConfirmingPublisherTest {
+
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private final List<Integer> published = new CopyOnWriteArrayList<>();
+    private final ConfirmCounters counters = new ConfirmCounters();
+    private StandInBroker broker;
+    private ConfirmingPublisher<Integer> publisher;
+
+    @Before
+    public void connect() throws IOException {
+        // confirms only when the test says so
+        broker = new StandInBroker(-1);
+        publisher = new ConfirmingPublisher<>(broker.channel(), MAX_IN_FLIGHT, (channel, message) -> {
+            channel.basicPublish("", "power", null, null);
+            published.add(message);
+        }, counters);
+    }
+
+    @After
+    public void disconnect() {
+        publisher.close();
+        broker.close();
+    }
+
+    @Test
+    public void testPublishesUpToTheWindow() {
+        publisher.publish(1);
+        publisher.publish(2);
+        publisher.publish(3);
+        Assert.assertEquals(2, publisher.inFlight());
+        Assert.assertEquals(2, counters.getPublished());
+        Assert.assertEquals(0, counters.getSuperseded());
+    }
+
+    @Test
+    public void testSupersedesWhileTheWindowIsFull() {
+        for (int message = 1; message <= 5; message++) {
+            publisher.publish(message);
+        }
+        // 3 and 4 were replaced by 5 before the window had room
+        Assert.assertEquals(2, counters.getSuperseded());
+        broker.ack(1, false);
+        await(() -> published.size() == 3);
+        Assert.assertEquals(5, (int) published.get(2));
+        Assert.assertEquals(2, publisher.inFlight());
+        Assert.assertEquals(1, counters.getConfirmed());
+        Assert.assertEquals(3, counters.getPublished());
+    }
+
+    @Test
+    public void testMultipleAcks() {
+        publisher.publish(1);
+        publisher.publish(2);
+        broker.ack(2, true);
+        Assert.assertEquals(0, publisher.inFlight());
+        Assert.assertEquals(2, counters.getConfirmed());
+        publisher.publish(3);
+        Assert.assertEquals(3, (int) published.get(2));
+    }
+
+    @Test
+    public void testRepublishesTheLatestNack() {
+        publisher.publish(1);
+        publisher.publish(2);
+        broker.nack(2, true);
+        // 1 is outdated by 2, which goes out again
+        await(() -> published.size() == 3);
+        Assert.assertEquals(2, (int) published.get(2));
+        Assert.assertEquals(2, counters.getNacked());
+        Assert.assertEquals(1, counters.getSuperseded());
+        Assert.assertEquals(1, publisher.inFlight());
+    }
+
+    @Test
+    public void testDropsANackSupersededByANewerMessage() {
+        publisher.publish(1);
+        publisher.publish(2);
+        // waits for the window
+        publisher.publish(3);
+        broker.nack(2, false);
+        await(() -> published.size() == 3);
+        Assert.assertEquals(3, (int) published.get(2));
+        Assert.assertEquals(1, counters.getNacked());
+        Assert.assertEquals(1, counters.getSuperseded());
+    }
+
+    @Test
+    public void testDropsANackOlderThanTheLatestPublished() {
+        publisher.publish(1);
+        publisher.publish(2);
+        broker.nack(1, false);
+        Assert.assertEquals(1, publisher.inFlight());
+        Assert.assertEquals(1, counters.getSuperseded());
+        publisher.publish(3);
+        Assert.assertEquals(3, published.size());
+    }
+
+    @Test
+    public void testConfirmsDontWaitForAPublish() throws IOException, InterruptedException {
+        // a publish blocked in the channel must not keep the confirms from getting through
+        CountDownLatch blocked = new CountDownLatch(1);
+        broker.close();
+        publisher.close();
+        broker = new StandInBroker(-1);
+        publisher = new ConfirmingPublisher<>(broker.channel(), MAX_IN_FLIGHT, (channel, message) -> {
+            channel.basicPublish("", "power", null, null);
+            if (message == 2) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, counters);
+        publisher.publish(1);
+        Thread stuck = new Thread(() -> publisher.publish(2));
+        stuck.start();
+        await(() -> publisher.inFlight() == 2);
+        broker.ack(1, false);
+        Assert.assertEquals(1, counters.getConfirmed());
+        blocked.countDown();
+        stuck.join(1000);
+        Assert.assertFalse(stuck.isAlive());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+}
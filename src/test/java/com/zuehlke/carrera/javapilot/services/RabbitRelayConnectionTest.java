@@ -0,0 +1,263 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.testkit.TestActorRef;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.zuehlke.carrera.api.channel.PilotToRelayChannelNames;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.config.RabbitProperties;
+import com.zuehlke.carrera.javapilot.io.CompactRelaySerializer;
+import com.zuehlke.carrera.javapilot.metrics.ConfirmCounters;
+import com.zuehlke.carrera.javapilot.metrics.LatencyTracker;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class RabbitRelayConnectionTest {
+
+    private static final String NAME = "pilot";
+
+    private final PilotToRelayChannelNames channelNames = new PilotToRelayChannelNames(NAME);
+    private final CompactRelaySerializer serializer = new CompactRelaySerializer();
+    private final StandInRelay relay = new StandInRelay();
+    private final ConfirmCounters counters = new ConfirmCounters();
+    private ActorSystem system;
+    private TestActorRef<Collector> pilot;
+    private RabbitRelayConnection connection;
+
+    @Before
+    public void createPilot() {
+        system = ActorSystem.create("RabbitRelayConnectionTest");
+        pilot = TestActorRef.create(system, Props.create(Collector.class));
+        // the relay has declared all queues but the sensor queue
+        relay.existing.add(channelNames.powerControl());
+        relay.existing.add(channelNames.raceStart());
+        relay.existing.add(channelNames.raceStop());
+        relay.existing.add(channelNames.velocity());
+        relay.existing.add(channelNames.penalty());
+        relay.existing.add(channelNames.roundPassed());
+    }
+
+    private void connect(RabbitProperties.SerializerType serializerType) {
+        PilotProperties settings = new PilotProperties();
+        settings.setName(NAME);
+        settings.setAccessCode("secret");
+        settings.setRabbitUrl("localhost");
+        settings.getRabbit().setSerializer(serializerType);
+        connection = new RabbitRelayConnection(pilot, LatencyTracker.DISABLED, counters, settings, serializer) {
+            @Override
+            RabbitChannels connect() {
+                return new RabbitChannels(relay.connection);
+            }
+        };
+        connection.ensureConnection();
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        if (connection != null) {
+            connection.close();
+        }
+        system.shutdown();
+    }
+
+    @Test
+    public void testUsesTheRelaysQueuesAsDeclared() {
+        connect(RabbitProperties.SerializerType.compact);
+        Assert.assertTrue(relay.passive.contains(channelNames.powerControl()));
+        Assert.assertTrue(relay.passive.contains(channelNames.raceStart()));
+        Assert.assertEquals(6, relay.passive.size());
+        // only the missing queue is declared, like the relay does
+        Assert.assertEquals(1, relay.declared.size());
+        Assert.assertEquals(Boolean.FALSE, relay.declared.get(channelNames.sensor()));
+    }
+
+    @Test
+    public void testSendsJsonBeforeAnySensorEvent() {
+        connect(RabbitProperties.SerializerType.compact);
+        connection.send(new PowerControl(120, NAME, "secret", 1));
+        Published power = relay.last(channelNames.powerControl());
+        Assert.assertEquals(CompactRelaySerializer.JSON_CONTENT_TYPE, power.properties.getContentType());
+    }
+
+    @Test
+    public void testAnswersJsonWithJson() throws Exception {
+        connect(RabbitProperties.SerializerType.compact);
+        SensorEvent event = new SensorEvent("track", new int[3], new int[3], new int[3], 7);
+        relay.deliver(channelNames.sensor(), CompactRelaySerializer.JSON_CONTENT_TYPE,
+                serializer.serialize(event).getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(7, ((SensorEvent) pilot.underlyingActor().received.get(0)).getTimeStamp());
+
+        connection.send(new PowerControl(120, NAME, "secret", 7));
+        Published power = relay.last(channelNames.powerControl());
+        Assert.assertEquals(CompactRelaySerializer.JSON_CONTENT_TYPE, power.properties.getContentType());
+        PowerControl sent = serializer.deserialize(new String(power.body, StandardCharsets.UTF_8), PowerControl.class);
+        Assert.assertEquals(120, sent.getP());
+    }
+
+    @Test
+    public void testAnswersCompactWithCompact() throws Exception {
+        connect(RabbitProperties.SerializerType.compact);
+        relay.deliver(channelNames.sensor(), CompactRelaySerializer.COMPACT_CONTENT_TYPE, compactSensorEvent(7));
+        Assert.assertEquals(7, ((SensorEvent) pilot.underlyingActor().received.get(0)).getTimeStamp());
+
+        connection.send(new PowerControl(120, NAME, "secret", 7));
+        Published power = relay.last(channelNames.powerControl());
+        Assert.assertEquals(CompactRelaySerializer.COMPACT_CONTENT_TYPE, power.properties.getContentType());
+        PowerControl sent = serializer.decode(ByteBuffer.wrap(power.body), PowerControl.class);
+        Assert.assertEquals(120, sent.getP());
+    }
+
+    @Test
+    public void testAnnouncesCompactOnlyWithTheCompactSerializer() throws IOException {
+        connect(RabbitProperties.SerializerType.compact);
+        connection.announce(null);
+        Assert.assertEquals(CompactRelaySerializer.COMPACT_CONTENT_TYPE, relay.last(channelNames.announce())
+                .properties.getHeaders().get(CompactRelaySerializer.ACCEPT_HEADER));
+        connection.close();
+
+        connect(RabbitProperties.SerializerType.json);
+        connection.announce(null);
+        Published announcement = relay.last(channelNames.announce());
+        Assert.assertEquals(CompactRelaySerializer.JSON_CONTENT_TYPE, announcement.properties.getContentType());
+        Assert.assertNull(announcement.properties.getHeaders());
+    }
+
+    @Test
+    public void testJsonSerializerSendsJsonWithConfirms() throws Exception {
+        connect(RabbitProperties.SerializerType.json);
+        // even a peer sending compact gets JSON
+        relay.deliver(channelNames.sensor(), CompactRelaySerializer.COMPACT_CONTENT_TYPE, compactSensorEvent(7));
+        Assert.assertEquals(7, ((SensorEvent) pilot.underlyingActor().received.get(0)).getTimeStamp());
+
+        connection.send(new PowerControl(120, NAME, "secret", 7));
+        Published power = relay.last(channelNames.powerControl());
+        Assert.assertEquals(CompactRelaySerializer.JSON_CONTENT_TYPE, power.properties.getContentType());
+        Assert.assertEquals(1, counters.getPublished());
+        Assert.assertTrue(relay.confirmSelected.contains(channelNames.powerControl()));
+    }
+
+    private byte[] compactSensorEvent(long timeStamp) {
+        ByteBuffer encoded = serializer.encode(new SensorEvent("track", new int[3], new int[3], new int[3], timeStamp));
+        byte[] body = new byte[encoded.remaining()];
+        encoded.get(body);
+        serializer.release(encoded);
+        return body;
+    }
+
+    public static class Collector extends UntypedActor {
+
+        final List<Object> received = new ArrayList<>();
+
+        @Override
+        public void onReceive(Object message) {
+            received.add(message);
+        }
+    }
+
+    private static class Published {
+
+        final AMQP.BasicProperties properties;
+        final byte[] body;
+
+        Published(AMQP.BasicProperties properties, byte[] body) {
+            this.properties = properties;
+            this.body = body;
+        }
+    }
+
+    /**
+     * just enough of a broker with the queues of a relay: a passive declaration of a missing queue fails,
+     * publishes are recorded per queue.
+     */
+    private static class StandInRelay {
+
+        final Set<String> existing = new HashSet<>();
+        final Set<String> passive = new HashSet<>();
+        final Set<String> confirmSelected = new HashSet<>();
+        final Map<String, Boolean> declared = new HashMap<>();
+        final Map<String, Consumer> consumers = new HashMap<>();
+        final Map<String, List<Published>> published = new HashMap<>();
+        final Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createChannel":
+                            return channel();
+                        case "isOpen":
+                            return true;
+                        default:
+                            return null;
+                    }
+                });
+
+        private Channel channel() {
+            long[] nextSequenceNumber = {1};
+            String[] queue = {null};
+            return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "queueDeclarePassive":
+                                if (!existing.contains(args[0])) {
+                                    throw new IOException("NOT_FOUND - no queue '" + args[0] + "'");
+                                }
+                                passive.add((String) args[0]);
+                                queue[0] = (String) args[0];
+                                return null;
+                            case "queueDeclare":
+                                declared.put((String) args[0], (Boolean) args[1]);
+                                existing.add((String) args[0]);
+                                queue[0] = (String) args[0];
+                                return null;
+                            case "confirmSelect":
+                                confirmSelected.add(queue[0]);
+                                return null;
+                            case "basicConsume":
+                                consumers.put((String) args[0], (Consumer) args[2]);
+                                return "consumer";
+                            case "basicPublish":
+                                nextSequenceNumber[0]++;
+                                published.computeIfAbsent((String) args[1], name -> new ArrayList<>())
+                                        .add(new Published((AMQP.BasicProperties) args[2], (byte[]) args[3]));
+                                return null;
+                            case "getNextPublishSeqNo":
+                                return nextSequenceNumber[0];
+                            case "isOpen":
+                                return true;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        void deliver(String queue, String contentType, byte[] body) throws IOException {
+            AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().contentType(contentType).build();
+            consumers.get(queue).handleDelivery("consumer", new Envelope(1, false, "", queue), properties, body);
+        }
+
+        Published last(String queue) {
+            List<Published> messages = published.get(queue);
+            Assert.assertNotNull("nothing published to " + queue, messages);
+            return messages.get(messages.size() - 1);
+        }
+    }
+}